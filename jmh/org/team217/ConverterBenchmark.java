@@ -0,0 +1,27 @@
+package org.team217;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks {@code Converter.partialAngle}, whose cost grows with the number of revolutions to unwind.
+ * 
+ * @author ThunderChickens 217
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConverterBenchmark {
+    @Param({"90", "540", "7290", "-36090"})
+    public double angle;
+
+    @Benchmark
+    public double partialAngleDegrees() {
+        return Converter.partialAngle(angle, 360);
+    }
+
+    @Benchmark
+    public double partialAngleTicks() {
+        return Converter.partialAngle(angle, 1024);
+    }
+}
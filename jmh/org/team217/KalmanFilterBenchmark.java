@@ -0,0 +1,70 @@
+package org.team217;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the {@code KalmanFilter} predict and update steps for a pose of x, y, and heading.
+ * 
+ * @author ThunderChickens 217
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KalmanFilterBenchmark {
+    private KalmanFilter filter;
+    private double[] jacobian, processNoise;
+    private double[] observation;
+    private double t = 0;
+
+    @Setup
+    public void setup() {
+        filter = new KalmanFilter(3);
+        filter.setVariance(0, 1);
+        filter.setVariance(1, 1);
+        filter.setVariance(2, 100);
+        jacobian = new double[] {
+            1, 0, -0.01,
+            0, 1, 0.02,
+            0, 0, 1
+        };
+        processNoise = new double[] {
+            1e-4, 0, 0,
+            0, 1e-4, 0,
+            0, 0, 1e-2
+        };
+        observation = new double[] {0.6, 0.8, 0};
+    }
+
+    @Benchmark
+    public double predict() {
+        filter.predict(jacobian, processNoise);
+        return filter.getCovariance(0, 2);
+    }
+
+    @Benchmark
+    public double updateState() {
+        t += 0.01;
+        filter.predict(processNoise); // keeps the covariance from collapsing over the run
+        filter.update(0, Math.sin(t), 0.01);
+        return filter.getState(0);
+    }
+
+    @Benchmark
+    public double updateRow() {
+        t += 0.01;
+        filter.predict(processNoise);
+        filter.update(observation, Math.cos(t), 0.01);
+        return filter.getState(1);
+    }
+
+    @Benchmark
+    public double visionPose() {
+        t += 0.01;
+        filter.predict(jacobian, processNoise);
+        filter.update(0, Math.sin(t), 0.05);
+        filter.update(1, Math.cos(t), 0.05);
+        filter.updateAngle(2, t * 10, 4, 360);
+        return filter.getState(2);
+    }
+}
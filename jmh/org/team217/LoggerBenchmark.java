@@ -0,0 +1,44 @@
+package org.team217;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks {@code Logger.log} against a temporary file.
+ * 
+ * @author ThunderChickens 217
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoggerBenchmark {
+    @Param({"16", "256"})
+    public int dataLength;
+
+    private File file;
+    private Logger logger;
+    private String data;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("team217-logger", ".log");
+        logger = new Logger(file);
+
+        StringBuilder builder = new StringBuilder(dataLength);
+        for (int i = 0; i < dataLength; i++) {
+            builder.append((char)('a' + i % 26));
+        }
+        data = builder.toString();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void log() throws IOException {
+        logger.log(data);
+    }
+}
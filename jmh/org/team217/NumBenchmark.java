@@ -0,0 +1,84 @@
+package org.team217;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the {@code Num} distance and batch operations.
+ * 
+ * @author ThunderChickens 217
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NumBenchmark {
+    @Param({"0.5", "3.0", "-12.25"})
+    public double x;
+
+    private double y, z;
+
+    @Setup
+    public void setup() {
+        y = x * 1.5 + 1;
+        z = x - 2;
+    }
+
+    /**
+     * The arrays for the batch operations, which work in place.
+     * Each batch benchmark copies the original values back in first, since a per-invocation setup would cost
+     * more than the operations being measured; {@link NumBenchmark#copyBaseline(Batch)} measures the copy alone.
+     * 
+     * @author ThunderChickens 217
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+        @Param({"64"})
+        public int length;
+
+        double[] original, values;
+
+        @Setup
+        public void setup() {
+            original = new double[length];
+            values = new double[length];
+            for (int i = 0; i < length; i++) {
+                original[i] = (i - length / 2) * 3.0 / length;
+            }
+        }
+    }
+
+    @Benchmark
+    public double distanceVarargs() {
+        return Num.distance(x, y, z, x);
+    }
+
+    @Benchmark
+    public double distance2() {
+        return Num.distance(x, y);
+    }
+
+    @Benchmark
+    public double distance3() {
+        return Num.distance(x, y, z);
+    }
+
+    @Benchmark
+    public double[] copyBaseline(Batch batch) {
+        System.arraycopy(batch.original, 0, batch.values, 0, batch.length);
+        return batch.values;
+    }
+
+    @Benchmark
+    public double[] deadbandBatch(Batch batch) {
+        System.arraycopy(batch.original, 0, batch.values, 0, batch.length);
+        Num.deadband(batch.values, 0, batch.length, 0.1);
+        return batch.values;
+    }
+
+    @Benchmark
+    public double[] inRangeBatch(Batch batch) {
+        System.arraycopy(batch.original, 0, batch.values, 0, batch.length);
+        Num.inRange(batch.values, 0, batch.length, 0.75);
+        return batch.values;
+    }
+}
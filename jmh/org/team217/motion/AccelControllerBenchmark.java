@@ -0,0 +1,37 @@
+package org.team217.motion;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks {@code AccelController.getOutput} against a square-wave velocity command.
+ * 
+ * @author ThunderChickens 217
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AccelControllerBenchmark {
+    @Param({"0.5", "4"})
+    public double targetAccel;
+
+    @Param({"false", "true"})
+    public boolean canSlowDown;
+
+    private AccelController controller;
+    private int cycle;
+
+    @Setup
+    public void setup() {
+        controller = new AccelController(targetAccel, 1);
+        controller.setCanSlowDown(canSlowDown);
+        cycle = 0;
+    }
+
+    @Benchmark
+    public double getOutput() {
+        // flip between full forward and full reverse every 50 cycles
+        double velocity = (cycle++ / 50 & 1) == 0 ? 1 : -1;
+        return controller.getOutput(velocity);
+    }
+}
@@ -0,0 +1,53 @@
+package org.team217.motion;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks construction, sampling, and inverse lookup of {@code GeometricProfiler}.
+ * 
+ * @author ThunderChickens 217
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeometricProfilerBenchmark {
+    /** The goal position; short goals never reach full velocity. */
+    @Param({"0.5", "10", "-10"})
+    public double goalPosition;
+
+    /** The fraction of the profile at which to sample. */
+    @Param({"0.1", "0.5", "0.9"})
+    public double fraction;
+
+    private GeometricProfiler.Constraints constraints;
+    private GeometricProfiler.State initial, goal;
+    private GeometricProfiler profiler;
+    private double t, target;
+
+    @Setup
+    public void setup() {
+        constraints = new GeometricProfiler.Constraints(3, 2);
+        initial = new GeometricProfiler.State(0, 0);
+        goal = new GeometricProfiler.State(0, goalPosition);
+        profiler = new GeometricProfiler(constraints, initial, goal);
+
+        t = fraction * profiler.totalTime();
+        target = fraction * goalPosition;
+    }
+
+    @Benchmark
+    public GeometricProfiler construct() {
+        return new GeometricProfiler(constraints, initial, goal);
+    }
+
+    @Benchmark
+    public GeometricProfiler.State getOutput() {
+        return profiler.getOutput(t);
+    }
+
+    @Benchmark
+    public double timeLeftUntil() {
+        return profiler.timeLeftUntil(target);
+    }
+}
@@ -0,0 +1,35 @@
+package org.team217.motion;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks {@code MotionController.getOutput} against a square-wave velocity command.
+ * 
+ * @author ThunderChickens 217
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MotionControllerBenchmark {
+    @Param({"2"})
+    public double targetAccel;
+
+    @Param({"5", "40"})
+    public double targetJerk;
+
+    private MotionController controller;
+    private int cycle;
+
+    @Setup
+    public void setup() {
+        controller = new MotionController(targetAccel, targetJerk, 1);
+        cycle = 0;
+    }
+
+    @Benchmark
+    public double getOutput() {
+        double velocity = (cycle++ / 50 & 1) == 0 ? 1 : -1;
+        return controller.getOutput(velocity);
+    }
+}
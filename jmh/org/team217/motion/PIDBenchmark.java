@@ -0,0 +1,45 @@
+package org.team217.motion;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks {@code PID.getOutput} following a moving position.
+ * 
+ * @author ThunderChickens 217
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PIDBenchmark {
+    /** The integrator range; 0 disables it. */
+    @Param({"0", "5"})
+    public double integratorRange;
+
+    /** The maximum integrator output; 0 disables it. */
+    @Param({"0", "0.3"})
+    public double maxIntegrator;
+
+    private PID pid;
+    private double position;
+
+    @Setup
+    public void setup() {
+        pid = new PID(0.8, 0.05, 0.01);
+        pid.setIntegratorRange(integratorRange);
+        pid.setMaxIntegrator(maxIntegrator);
+        pid.setTarget(10);
+        position = 0;
+    }
+
+    @Benchmark
+    public double getOutput() {
+        double output = pid.getOutput(position);
+        // crude plant so the error keeps changing
+        position += output * 0.02;
+        if (position > 20) {
+            position = 0;
+        }
+        return output;
+    }
+}
@@ -0,0 +1,21 @@
+package org.team217;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * A source of time for timed components.
+ * Components take a clock instead of reading the FPGA time themselves, so the same control code can run
+ * against the robot's clock, a desktop clock, or a {@link SteppedClock} that runs faster than real time.
+ * 
+ * @author ThunderChickens 217
+ */
+@FunctionalInterface
+public interface Clock {
+    /** The FPGA time. This is the default clock on the robot. */
+    public static final Clock FPGA = Timer::getFPGATimestamp;
+    /** The JVM's monotonic time, from {@link System#nanoTime()}. This needs no WPILib native libraries. */
+    public static final Clock SYSTEM = () -> System.nanoTime() / 1e9;
+
+    /** Returns the current time, in seconds. Only differences between times are meaningful. */
+    double getTime();
+}
@@ -0,0 +1,430 @@
+package org.team217;
+
+import java.lang.invoke.VarHandle;
+import java.util.function.DoubleSupplier;
+import edu.wpi.first.wpilibj.Notifier;
+import org.team217.can.FrameDevice;
+import org.team217.ctre.PigeonIMU;
+
+/**
+ * Tracks the pose of a differential drive by integrating encoder distances and a gyro heading,
+ * and keeps a fixed-size, timestamped history of poses.
+ * Sampling on its own thread, faster than the main loop, keeps fast turns from being cut into a few coarse steps.
+ * The history lets a late measurement, such as a vision frame, correct the pose at the time it was taken;
+ * the correction is carried forward through the newer poses without re-reading any sensors.
+ * The heading is continuous, counting past a full turn instead of wrapping, even if the gyro reading wraps.
+ * Sampling, resetting, and correcting may come from any thread, while any number of threads look poses up without locking.
+ * 
+ * @author ThunderChickens 217
+ */
+public class DriveOdometry implements AutoCloseable {
+    private final DoubleSupplier left, right, heading;
+    private final Clock clock;
+    private final double[] times, xs, ys, headings;
+
+    /** The index the next sample will be written to. */
+    private int head = 0;
+    /** The number of samples in the history. */
+    private int size = 0;
+    /** Odd while the history is being written, so readers know to retry. */
+    private volatile long sequence = 0;
+
+    /** The pose at the last sample, in distance units and degrees */
+    private double x = 0, y = 0, theta = 0;
+    /** The sensor readings at the last sample, or {@code NaN} if the encoders need a new baseline */
+    private double lastLeft = Double.NaN, lastRight = Double.NaN;
+    /** Added to the gyro heading to get the pose heading, in degrees */
+    private double headingOffset = 0;
+    /** The heading to set at the next sample, or {@code NaN} if the heading was not reset */
+    private double resetHeading = Double.NaN;
+    private final double[] correctionPose = new double[3];
+
+    /** Guards the pose; separate from the notifier's lock so closing the notifier cannot wait on a sample that waits on it */
+    private final Object poseLock = new Object();
+    private Notifier notifier;
+
+    /**
+     * Creates a new odometry that reads two drive motor controllers and a {@code PigeonIMU}.
+     * The sensors are read directly from the devices, not from a {@code SensorFrame}, so each sample is fresh.
+     * 
+     * @param left
+     *        The left drive motor controller
+     * @param leftDistancePerUnit
+     *        The distance the left side travels per sensor unit; negative if the sensor counts down going forward
+     * @param right
+     *        The right drive motor controller
+     * @param rightDistancePerUnit
+     *        The distance the right side travels per sensor unit; negative if the sensor counts down going forward
+     * @param pigeon
+     *        The {@code PigeonIMU} to read the heading from
+     * @param capacity
+     *        The number of poses to keep
+     * 
+     * @exception IllegalArgumentException if {@code capacity} is less than 2
+     */
+    public static DriveOdometry of(FrameDevice left, double leftDistancePerUnit, FrameDevice right, double rightDistancePerUnit, PigeonIMU pigeon, int capacity) {
+        double[] ypr = new double[3];
+        return new DriveOdometry(() -> left.readPosition() * leftDistancePerUnit, () -> right.readPosition() * rightDistancePerUnit, () -> {
+            pigeon.getYawPitchRoll(ypr);
+            return ypr[0]; // counterclockwise positive, unlike PigeonIMU.getAngle()
+        }, capacity);
+    }
+
+    /**
+     * Creates a new odometry timed by the FPGA time.
+     * 
+     * @param left
+     *        The distance the left side has traveled; called from the sampling thread
+     * @param right
+     *        The distance the right side has traveled; called from the sampling thread
+     * @param heading
+     *        The heading, in degrees, counterclockwise positive; called from the sampling thread
+     * @param capacity
+     *        The number of poses to keep
+     * 
+     * @exception IllegalArgumentException if {@code capacity} is less than 2
+     */
+    public DriveOdometry(DoubleSupplier left, DoubleSupplier right, DoubleSupplier heading, int capacity) {
+        this(left, right, heading, capacity, Clock.FPGA);
+    }
+
+    /**
+     * Creates a new odometry timed by the given clock.
+     * 
+     * @param left
+     *        The distance the left side has traveled; called from the sampling thread
+     * @param right
+     *        The distance the right side has traveled; called from the sampling thread
+     * @param heading
+     *        The heading, in degrees, counterclockwise positive; called from the sampling thread
+     * @param capacity
+     *        The number of poses to keep
+     * @param clock
+     *        The clock to timestamp poses with
+     * 
+     * @exception IllegalArgumentException if {@code capacity} is less than 2
+     */
+    public DriveOdometry(DoubleSupplier left, DoubleSupplier right, DoubleSupplier heading, int capacity, Clock clock) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Illegal capacity value: " + capacity + "\nValue must be at least 2");
+        }
+        this.left = left;
+        this.right = right;
+        this.heading = heading;
+        this.clock = clock;
+        times = new double[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        headings = new double[capacity];
+    }
+
+    /**
+     * Starts sampling in the background.
+     * 
+     * @param period
+     *        The time between samples, in seconds, such as 0.005
+     * @return
+     *        {@code false} if the period is not positive
+     */
+    public synchronized boolean start(double period) {
+        if (period <= 0) {
+            return false;
+        }
+        if (notifier == null) {
+            notifier = new Notifier(this::sample);
+        }
+        notifier.startPeriodic(period);
+        return true;
+    }
+
+    /** Stops sampling in the background. */
+    public synchronized void stop() {
+        if (notifier != null) {
+            notifier.stop();
+        }
+    }
+
+    /** Stops sampling and frees the background notifier. */
+    @Override
+    public synchronized void close() {
+        if (notifier != null) {
+            notifier.close();
+            notifier = null;
+        }
+    }
+
+    /** Reads the sensors now, integrates the distance traveled since the last sample, and adds the pose to the history. */
+    public void sample() {
+        double l = left.getAsDouble();
+        double r = right.getAsDouble();
+        double h = heading.getAsDouble();
+        double timestamp = clock.getTime();
+
+        synchronized (poseLock) {
+            if (!Double.isNaN(resetHeading)) {
+                headingOffset = resetHeading - h;
+                resetHeading = Double.NaN;
+            }
+            h += headingOffset;
+            if (!Double.isNaN(lastLeft)) {
+                // the gyro may wrap between samples, so take the shortest turn and keep the heading continuous
+                double turn = Converter.partialAngle(h - theta, 360);
+                // drive along the average of the old and new headings
+                double distance = (l - lastLeft + r - lastRight) / 2;
+                double mid = Math.toRadians(theta + turn / 2);
+                x += distance * Math.cos(mid);
+                y += distance * Math.sin(mid);
+                theta += turn;
+            }
+            else {
+                theta = h;
+            }
+            lastLeft = l;
+            lastRight = r;
+            add(timestamp, x, y, theta);
+        }
+    }
+
+    /**
+     * Sets the pose and clears the history.
+     * The sensors are not read here; the next sample starts counting from their readings then.
+     * 
+     * @param x
+     *        The x position
+     * @param y
+     *        The y position
+     * @param heading
+     *        The heading, in degrees, counterclockwise positive
+     */
+    public void reset(double x, double y, double heading) {
+        synchronized (poseLock) {
+            this.x = x;
+            this.y = y;
+            theta = heading;
+            resetHeading = heading;
+            lastLeft = Double.NaN;
+            lastRight = Double.NaN;
+
+            long seq = sequence;
+            sequence = seq + 1;
+            VarHandle.storeStoreFence();
+            size = 0;
+            sequence = seq + 2;
+        }
+    }
+
+    /**
+     * Moves the pose at a past time to a measured position and carries the correction forward to the current pose.
+     * 
+     * @param timestamp
+     *        The time the measurement was taken, in seconds, on the odometry's clock
+     * @param x
+     *        The measured x position
+     * @param y
+     *        The measured y position
+     * @return
+     *        {@code false} if the timestamp is older than the history
+     */
+    public boolean correct(double timestamp, double x, double y) {
+        return correct(timestamp, x, y, Double.NaN, 1);
+    }
+
+    /**
+     * Moves the pose at a past time toward a measured pose and carries the correction forward to the current pose.
+     * Correcting the heading turns every newer pose around the corrected one.
+     * 
+     * @param timestamp
+     *        The time the measurement was taken, in seconds, on the odometry's clock
+     * @param x
+     *        The measured x position
+     * @param y
+     *        The measured y position
+     * @param heading
+     *        The measured heading, in degrees, counterclockwise positive, or {@code NaN} to keep the heading
+     * @param weight
+     *        How far to move toward the measurement, from 0 (not at all) to 1 (all the way)
+     * @return
+     *        {@code false} if the timestamp is older than the history or the weight is not from 0 to 1
+     */
+    public boolean correct(double timestamp, double x, double y, double heading, double weight) {
+        synchronized (poseLock) {
+            if (weight < 0 || weight > 1) {
+                return false;
+            }
+            int capacity = times.length;
+            int oldest = (head - size + capacity) % capacity;
+            if (size == 0 || timestamp < times[oldest]) {
+                return false;
+            }
+
+            double[] pose = correctionPose;
+            interpolate(timestamp, head, size, pose);
+            double px = pose[0], py = pose[1];
+            double dx = weight * (x - px);
+            double dy = weight * (y - py);
+            double turn = Double.isNaN(heading) ? 0 : weight * Converter.partialAngle(heading - pose[2], 360);
+            double cos = Math.cos(Math.toRadians(turn));
+            double sin = Math.sin(Math.toRadians(turn));
+
+            long seq = sequence;
+            sequence = seq + 1;
+            VarHandle.storeStoreFence();
+
+            // every pose after the measurement moves with the corrected pose, and so does the last one before it
+            // so that looking up the measurement's time returns the corrected pose
+            for (int i = 0; i < size; i++) {
+                int index = (head - 1 - i + capacity) % capacity;
+                double rx = xs[index] - px, ry = ys[index] - py;
+                xs[index] = px + dx + rx * cos - ry * sin;
+                ys[index] = py + dy + rx * sin + ry * cos;
+                headings[index] += turn;
+                if (times[index] <= timestamp) {
+                    break;
+                }
+            }
+            double rx = this.x - px, ry = this.y - py;
+            this.x = px + dx + rx * cos - ry * sin;
+            this.y = py + dy + rx * sin + ry * cos;
+            theta += turn;
+            headingOffset += turn;
+
+            sequence = seq + 2;
+            return true;
+        }
+    }
+
+    /**
+     * Adds a pose to the history. Only called while holding the pose lock.
+     * 
+     * @param timestamp
+     *        The time of the pose, in seconds
+     * @param x
+     *        The x position
+     * @param y
+     *        The y position
+     * @param heading
+     *        The heading, in degrees
+     */
+    private void add(double timestamp, double x, double y, double heading) {
+        long seq = sequence;
+        sequence = seq + 1;
+        VarHandle.storeStoreFence(); // keep the writes below after the odd sequence
+
+        times[head] = timestamp;
+        xs[head] = x;
+        ys[head] = y;
+        headings[head] = heading;
+        head = (head + 1) % times.length;
+        if (size < times.length) {
+            size++;
+        }
+
+        sequence = seq + 2;
+    }
+
+    /** Returns the number of poses the history keeps. */
+    public int getCapacity() {
+        return times.length;
+    }
+
+    /**
+     * Copies the pose at a given time into an array, interpolated between the two nearest samples.
+     * Times outside the history return the oldest or newest pose.
+     * 
+     * @param timestamp
+     *        The time, in seconds, on the odometry's clock
+     * @param out
+     *        The array to copy the x position, y position, and continuous heading in degrees into
+     * @return
+     *        {@code false} if there are no samples
+     */
+    public boolean getPose(double timestamp, double[] out) {
+        while (true) {
+            long seq = sequence;
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait(); // the history is being written
+                continue;
+            }
+
+            boolean hasPose = interpolate(timestamp, head, size, out);
+
+            VarHandle.acquireFence(); // keep the reads above before the check below
+            if (sequence == seq) {
+                return hasPose;
+            }
+        }
+    }
+
+    /**
+     * Copies the newest pose into an array.
+     * 
+     * @param out
+     *        The array to copy the x position, y position, and continuous heading in degrees into
+     * @return
+     *        {@code false} if there are no samples
+     */
+    public boolean getPose(double[] out) {
+        return getPose(Double.POSITIVE_INFINITY, out);
+    }
+
+    /**
+     * Interpolates the pose at a given time using binary search over the samples.
+     * 
+     * @param timestamp
+     *        The time, in seconds
+     * @param head
+     *        The index the next sample will be written to
+     * @param size
+     *        The number of samples
+     * @param out
+     *        The array to copy the pose into
+     */
+    private boolean interpolate(double timestamp, int head, int size, double[] out) {
+        if (size <= 0 || size > times.length) {
+            return false;
+        }
+        int capacity = times.length;
+        int oldest = (head - size + capacity) % capacity;
+        int newest = (head - 1 + capacity) % capacity;
+        if (timestamp <= times[oldest]) {
+            copy(oldest, out);
+            return true;
+        }
+        if (timestamp >= times[newest]) {
+            copy(newest, out);
+            return true;
+        }
+
+        // find the last sample at or before the timestamp, counting from the oldest sample
+        int low = 0, high = size - 1;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (times[(oldest + mid) % capacity] <= timestamp) {
+                low = mid;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        int before = (oldest + low) % capacity;
+        int after = (oldest + high) % capacity;
+        double dt = times[after] - times[before];
+        if (dt <= 0) {
+            copy(after, out);
+            return true;
+        }
+        double t = (timestamp - times[before]) / dt;
+        out[0] = xs[before] + (xs[after] - xs[before]) * t;
+        out[1] = ys[before] + (ys[after] - ys[before]) * t;
+        out[2] = headings[before] + Converter.partialAngle(headings[after] - headings[before], 360) * t;
+        return true;
+    }
+
+    /** Copies one sample into an array. */
+    private void copy(int index, double[] out) {
+        out[0] = xs[index];
+        out[1] = ys[index];
+        out[2] = headings[index];
+    }
+}
@@ -0,0 +1,241 @@
+package org.team217;
+
+import java.lang.invoke.VarHandle;
+import java.util.function.DoubleSupplier;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import org.team217.ctre.PigeonIMU;
+import org.team217.wpi.AnalogGyro;
+
+/**
+ * Keeps a fixed-size, timestamped history of headings so that late measurements, such as vision
+ * frames, can use the heading from when they were taken.
+ * One thread may add samples while any number of threads look them up.
+ * 
+ * @author ThunderChickens 217
+ */
+public class HeadingHistory implements AutoCloseable {
+    private final DoubleSupplier heading;
+    private final double[] times, headings;
+
+    /** The index the next sample will be written to. */
+    private int head = 0;
+    /** The number of samples in the history. */
+    private int size = 0;
+    /** Odd while a sample is being written, so readers know to retry. */
+    private volatile long sequence = 0;
+
+    private Notifier notifier;
+
+    /**
+     * Creates a new heading history that samples a {@code PigeonIMU}.
+     * The samples are read separately from the {@code PigeonIMU} snapshot, so sampling in the background
+     * does not interfere with the getters on the main thread.
+     * 
+     * @param pigeon
+     *        The {@code PigeonIMU} to sample
+     * @param capacity
+     *        The number of samples to keep
+     * 
+     * @exception IllegalArgumentException if {@code capacity} is less than 2
+     */
+    public static HeadingHistory of(PigeonIMU pigeon, int capacity) {
+        double[] ypr = new double[3];
+        return new HeadingHistory(() -> {
+            pigeon.getYawPitchRoll(ypr);
+            return -ypr[0]; // same direction as PigeonIMU.getAngle()
+        }, capacity);
+    }
+
+    /**
+     * Creates a new heading history that samples an {@code AnalogGyro}.
+     * 
+     * @param gyro
+     *        The gyro to sample
+     * @param capacity
+     *        The number of samples to keep
+     * 
+     * @exception IllegalArgumentException if {@code capacity} is less than 2
+     */
+    public static HeadingHistory of(AnalogGyro gyro, int capacity) {
+        return new HeadingHistory(gyro::getAngle, capacity);
+    }
+
+    /**
+     * Creates a new heading history.
+     * 
+     * @param heading
+     *        The source of the heading, in degrees; called from the sampling thread
+     * @param capacity
+     *        The number of samples to keep
+     * 
+     * @exception IllegalArgumentException if {@code capacity} is less than 2
+     */
+    public HeadingHistory(DoubleSupplier heading, int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Illegal capacity value: " + capacity + "\nValue must be at least 2");
+        }
+        this.heading = heading;
+        times = new double[capacity];
+        headings = new double[capacity];
+    }
+
+    /**
+     * Starts sampling the heading in the background.
+     * 
+     * @param period
+     *        The time between samples, in seconds
+     * @return
+     *        {@code false} if the period is not positive
+     */
+    public synchronized boolean start(double period) {
+        if (period <= 0) {
+            return false;
+        }
+        if (notifier == null) {
+            notifier = new Notifier(this::sample);
+        }
+        notifier.startPeriodic(period);
+        return true;
+    }
+
+    /** Stops sampling the heading in the background. */
+    public synchronized void stop() {
+        if (notifier != null) {
+            notifier.stop();
+        }
+    }
+
+    /** Stops sampling and frees the background notifier. */
+    @Override
+    public synchronized void close() {
+        if (notifier != null) {
+            notifier.close();
+            notifier = null;
+        }
+    }
+
+    /** Reads the heading now and adds it to the history. Only one thread may add samples. */
+    public void sample() {
+        double value = heading.getAsDouble();
+        add(Timer.getFPGATimestamp(), value);
+    }
+
+    /**
+     * Adds a heading to the history. Only one thread may add samples, and timestamps must not go backwards.
+     * 
+     * @param timestamp
+     *        The FPGA time of the heading, in seconds
+     * @param heading
+     *        The heading, in degrees
+     */
+    public void add(double timestamp, double heading) {
+        long seq = sequence;
+        sequence = seq + 1;
+        VarHandle.storeStoreFence(); // keep the writes below after the odd sequence
+
+        times[head] = timestamp;
+        headings[head] = heading;
+        head = (head + 1) % times.length;
+        if (size < times.length) {
+            size++;
+        }
+
+        sequence = seq + 2;
+    }
+
+    /** Removes every sample from the history. Only the thread that adds samples may call this. */
+    public void clear() {
+        long seq = sequence;
+        sequence = seq + 1;
+        VarHandle.storeStoreFence();
+        size = 0;
+        sequence = seq + 2;
+    }
+
+    /** Returns the number of samples the history keeps. */
+    public int getCapacity() {
+        return times.length;
+    }
+
+    /**
+     * Returns the heading at a given time, interpolated between the two nearest samples.
+     * Times outside the history return the oldest or newest heading.
+     * 
+     * @param timestamp
+     *        The FPGA time, in seconds
+     * @return
+     *        The heading in degrees, or {@code NaN} if there are no samples
+     */
+    public double getHeading(double timestamp) {
+        while (true) {
+            long seq = sequence;
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait(); // a sample is being written
+                continue;
+            }
+
+            double result = interpolate(timestamp, head, size);
+
+            VarHandle.acquireFence(); // keep the reads above before the check below
+            if (sequence == seq) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns the newest heading in the history.
+     * 
+     * @return
+     *        The heading in degrees, or {@code NaN} if there are no samples
+     */
+    public double getLatest() {
+        return getHeading(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Interpolates the heading at a given time using binary search over the samples.
+     * 
+     * @param timestamp
+     *        The FPGA time, in seconds
+     * @param head
+     *        The index the next sample will be written to
+     * @param size
+     *        The number of samples
+     */
+    private double interpolate(double timestamp, int head, int size) {
+        if (size <= 0 || size > times.length) {
+            return Double.NaN;
+        }
+        int capacity = times.length;
+        int oldest = (head - size + capacity) % capacity;
+        if (timestamp <= times[oldest]) {
+            return headings[oldest];
+        }
+        int newest = (head - 1 + capacity) % capacity;
+        if (timestamp >= times[newest]) {
+            return headings[newest];
+        }
+
+        // find the last sample at or before the timestamp, counting from the oldest sample
+        int low = 0, high = size - 1;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (times[(oldest + mid) % capacity] <= timestamp) {
+                low = mid;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        int before = (oldest + low) % capacity;
+        int after = (oldest + high) % capacity;
+        double dt = times[after] - times[before];
+        if (dt <= 0) {
+            return headings[after];
+        }
+        return headings[before] + (headings[after] - headings[before]) * (timestamp - times[before]) / dt;
+    }
+}
@@ -0,0 +1,306 @@
+package org.team217;
+
+/**
+ * A Kalman filter with a fixed number of states, for fusing sensors such as encoders, gyros, and vision.
+ * Matrices are row-major {@code double} arrays, and every step works in place on storage allocated when the filter is
+ * created, so predicting and updating never allocate.
+ * Measurements are applied one at a time, which needs no matrix inversion; a measurement of several values with
+ * independent noise, such as a vision pose, is the same as updating with each value in turn.
+ * For an extended Kalman filter, advance the state with the nonlinear model through {@link #setState(int, double)}
+ * and then call {@link #predictCovariance(double[], double[])} with its Jacobian.
+ * 
+ * @author ThunderChickens 217
+ */
+public class KalmanFilter {
+    private final int n;
+    private final double[] state;
+    private final double[] covariance;
+
+    /** Scratch storage for the predict and update steps */
+    private final double[] scratchMatrix, scratchVector;
+
+    private double outlierGate = 0;
+
+    /**
+     * Creates a new Kalman filter with every state at 0 and a covariance of 0.
+     * 
+     * @param states
+     *        The number of states
+     * 
+     * @exception IllegalArgumentException if {@code states} is not positive
+     * 
+     * @author ThunderChickens 217
+     */
+    public KalmanFilter(int states) {
+        if (states <= 0) {
+            throw new IllegalArgumentException("Illegal states value: " + states + "\nValue must be positive");
+        }
+        n = states;
+        state = new double[n];
+        covariance = new double[n * n];
+        scratchMatrix = new double[n * n];
+        scratchVector = new double[n];
+    }
+
+    /** Returns the number of states. */
+    public int getStateCount() {
+        return n;
+    }
+
+    /**
+     * Returns one value of the state estimate.
+     * 
+     * @param index
+     *        The index of the state
+     */
+    public double getState(int index) {
+        return state[index];
+    }
+
+    /**
+     * Copies the state estimate into an array.
+     * 
+     * @param out
+     *        The array to copy into, at least as long as the number of states
+     * @return
+     *        {@code out}
+     */
+    public double[] getState(double[] out) {
+        System.arraycopy(state, 0, out, 0, n);
+        return out;
+    }
+
+    /**
+     * Sets one value of the state estimate.
+     * 
+     * @param index
+     *        The index of the state
+     * @param value
+     *        The new value
+     */
+    public void setState(int index, double value) {
+        state[index] = value;
+    }
+
+    /**
+     * Returns one value of the covariance.
+     * 
+     * @param row
+     *        The row of the covariance
+     * @param column
+     *        The column of the covariance
+     */
+    public double getCovariance(int row, int column) {
+        return covariance[row * n + column];
+    }
+
+    /**
+     * Sets the variance of one state, clearing its covariance with the other states.
+     * 
+     * @param index
+     *        The index of the state
+     * @param variance
+     *        The variance, in the state's units squared
+     * @return
+     *        {@code false} if the variance is negative
+     */
+    public boolean setVariance(int index, double variance) {
+        if (variance < 0) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            covariance[index * n + i] = 0;
+            covariance[i * n + index] = 0;
+        }
+        covariance[index * n + index] = variance;
+        return true;
+    }
+
+    /**
+     * Sets how far a measurement may be from its prediction before it is rejected as an outlier.
+     * 
+     * @param standardDeviations
+     *        The largest allowed difference, in standard deviations of the predicted measurement; 0 disables the gate
+     * @return
+     *        {@code false} if the gate is negative
+     */
+    public boolean setOutlierGate(double standardDeviations) {
+        if (standardDeviations < 0) {
+            return false;
+        }
+        outlierGate = standardDeviations;
+        return true;
+    }
+
+    /**
+     * Advances the state and covariance with a linear model: {@code x = F * x} and {@code P = F * P * F' + Q}.
+     * 
+     * @param transition
+     *        The state transition matrix {@code F}, n by n
+     * @param processNoise
+     *        The process noise covariance {@code Q}, n by n
+     */
+    public void predict(double[] transition, double[] processNoise) {
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int j = 0; j < n; j++) {
+                sum += transition[i * n + j] * state[j];
+            }
+            scratchVector[i] = sum;
+        }
+        System.arraycopy(scratchVector, 0, state, 0, n);
+        predictCovariance(transition, processNoise);
+    }
+
+    /**
+     * Advances only the covariance: {@code P = F * P * F' + Q}.
+     * For an extended Kalman filter, {@code F} is the Jacobian of the model at the previous state.
+     * 
+     * @param jacobian
+     *        The state transition matrix or its Jacobian {@code F}, n by n
+     * @param processNoise
+     *        The process noise covariance {@code Q}, n by n
+     */
+    public void predictCovariance(double[] jacobian, double[] processNoise) {
+        // scratch = F * P
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double sum = 0;
+                for (int k = 0; k < n; k++) {
+                    sum += jacobian[i * n + k] * covariance[k * n + j];
+                }
+                scratchMatrix[i * n + j] = sum;
+            }
+        }
+        // P = scratch * F' + Q, only computing the upper triangle since P is symmetric
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                double sum = 0;
+                for (int k = 0; k < n; k++) {
+                    sum += scratchMatrix[i * n + k] * jacobian[j * n + k];
+                }
+                double value = sum + (processNoise[i * n + j] + processNoise[j * n + i]) / 2;
+                covariance[i * n + j] = value;
+                covariance[j * n + i] = value;
+            }
+        }
+    }
+
+    /**
+     * Adds process noise to the covariance without changing the state, for states that only drift: {@code P = P + Q}.
+     * 
+     * @param processNoise
+     *        The process noise covariance {@code Q}, n by n
+     */
+    public void predict(double[] processNoise) {
+        for (int i = 0; i < n * n; i++) {
+            covariance[i] += processNoise[i];
+        }
+    }
+
+    /**
+     * Corrects the estimate with one measurement that is a linear combination of the states: {@code z = H * x}.
+     * For an extended Kalman filter, {@code H} is the Jacobian of the measurement at the current state.
+     * 
+     * @param observation
+     *        The observation row {@code H}, 1 by n
+     * @param measurement
+     *        The measurement {@code z}
+     * @param variance
+     *        The variance of the measurement noise
+     * @return
+     *        {@code false} if the variance is negative or the measurement was rejected as an outlier
+     */
+    public boolean update(double[] observation, double measurement, double variance) {
+        double prediction = 0;
+        for (int i = 0; i < n; i++) {
+            prediction += observation[i] * state[i];
+        }
+        return correct(observation, measurement - prediction, variance);
+    }
+
+    /**
+     * Corrects the estimate with a direct measurement of one state.
+     * 
+     * @param index
+     *        The index of the measured state
+     * @param measurement
+     *        The measurement, in the state's units
+     * @param variance
+     *        The variance of the measurement noise
+     * @return
+     *        {@code false} if the variance is negative or the measurement was rejected as an outlier
+     */
+    public boolean update(int index, double measurement, double variance) {
+        return correct(index, measurement - state[index], variance);
+    }
+
+    /**
+     * Corrects the estimate with a direct measurement of an angle state, taking the shortest way around to the measurement.
+     * 
+     * @param index
+     *        The index of the measured state
+     * @param measurement
+     *        The measured angle
+     * @param variance
+     *        The variance of the measurement noise
+     * @param unitsPerRev
+     *        Number of units per one revolution, such as 360 for degrees
+     * @return
+     *        {@code false} if the variance is negative or the measurement was rejected as an outlier
+     */
+    public boolean updateAngle(int index, double measurement, double variance, double unitsPerRev) {
+        return correct(index, Converter.partialAngle(measurement - state[index], unitsPerRev), variance);
+    }
+
+    /** Applies a correction for the observation row {@code H} and innovation {@code y}. */
+    private boolean correct(double[] observation, double innovation, double variance) {
+        if (variance < 0) {
+            return false;
+        }
+        // scratch = P * H'
+        double s = variance;
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int j = 0; j < n; j++) {
+                sum += covariance[i * n + j] * observation[j];
+            }
+            scratchVector[i] = sum;
+            s += observation[i] * sum;
+        }
+        return apply(innovation, s);
+    }
+
+    /** Applies a correction for a direct measurement of one state and innovation {@code y}. */
+    private boolean correct(int index, double innovation, double variance) {
+        if (variance < 0) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            scratchVector[i] = covariance[i * n + index];
+        }
+        return apply(innovation, covariance[index * n + index] + variance);
+    }
+
+    /** Updates the state and covariance from {@code P * H'}, held in the scratch vector, and the innovation variance {@code s}. */
+    private boolean apply(double innovation, double s) {
+        if (s <= 0) {
+            return false;
+        }
+        if (outlierGate > 0 && innovation * innovation > outlierGate * outlierGate * s) {
+            return false;
+        }
+        // K = P * H' / s; x = x + K * y; P = P - K * H * P
+        for (int i = 0; i < n; i++) {
+            state[i] += scratchVector[i] * innovation / s;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                double value = covariance[i * n + j] - scratchVector[i] * scratchVector[j] / s;
+                covariance[i * n + j] = value;
+                covariance[j * n + i] = value;
+            }
+        }
+        return true;
+    }
+}
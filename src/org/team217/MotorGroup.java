@@ -0,0 +1,225 @@
+package org.team217;
+
+import com.ctre.phoenix.motorcontrol.InvertType;
+import com.ctre.phoenix.motorcontrol.can.BaseMotorController;
+import edu.wpi.first.wpilibj.SpeedController;
+import java.util.Arrays;
+import org.team217.ctre.WPI_TalonFX;
+import org.team217.ctre.WPI_TalonSRX;
+import org.team217.rev.CANSparkMax;
+
+/**
+ * A group of motor controllers driven as one, with one leader and any number of followers.
+ * Followers that can follow the leader in hardware are set up to do so, so each {@link #set(double)}
+ * sends one command for the whole group instead of one per motor. Followers that can't, such as a Talon
+ * following a Spark MAX, are sent the same speed in software.
+ * 
+ * @author ThunderChickens 217
+ */
+public class MotorGroup implements SpeedController {
+    private final SpeedController leader;
+    private SpeedController[] followers = new SpeedController[0];
+    private boolean[] isOpposed = new boolean[0];
+    private boolean[] isHardware = new boolean[0];
+    private int softwareCount = 0;
+
+    private boolean isInverted = false;
+    private int invertEnc = 1;
+
+    /**
+     * Creates a new motor group. Every follower turns the same direction as the leader.
+     * 
+     * @param leader
+     *        The motor controller that receives the commands
+     * @param followers
+     *        The motor controllers that follow the leader
+     */
+    public MotorGroup(SpeedController leader, SpeedController... followers) {
+        this.leader = leader;
+        for (SpeedController follower : followers) {
+            addFollower(follower, false);
+        }
+    }
+
+    /**
+     * Adds a follower to the group, following the leader in hardware if possible.
+     * 
+     * @param follower
+     *        The motor controller to add
+     * @param isOpposed
+     *        {@code true} if the follower turns the opposite direction of the leader
+     * @return
+     *        {@code true} if the follower follows the leader in hardware, {@code false} if it is sent commands in software
+     */
+    public synchronized boolean addFollower(SpeedController follower, boolean isOpposed) {
+        boolean isHardware = follow(follower, isOpposed);
+
+        int count = followers.length;
+        followers = Arrays.copyOf(followers, count + 1);
+        this.isOpposed = Arrays.copyOf(this.isOpposed, count + 1);
+        this.isHardware = Arrays.copyOf(this.isHardware, count + 1);
+        followers[count] = follower;
+        this.isOpposed[count] = isOpposed;
+        this.isHardware[count] = isHardware;
+        if (!isHardware) {
+            softwareCount++;
+        }
+        return isHardware;
+    }
+
+    /**
+     * Sets a follower to follow the leader in hardware, if both motor controllers support it.
+     * 
+     * @param follower
+     *        The follower
+     * @param isOpposed
+     *        {@code true} if the follower turns the opposite direction of the leader
+     * @return
+     *        {@code true} if the follower follows the leader in hardware
+     */
+    private boolean follow(SpeedController follower, boolean isOpposed) {
+        if (follower instanceof BaseMotorController && leader instanceof BaseMotorController) {
+            BaseMotorController talon = (BaseMotorController)follower;
+            talon.follow((BaseMotorController)leader);
+            talon.setInverted(isOpposed ? InvertType.OpposeMaster : InvertType.FollowMaster);
+            return true;
+        }
+        if (follower instanceof CANSparkMax && leader instanceof CANSparkMax) {
+            ((CANSparkMax)follower).follow((CANSparkMax)leader, isOpposed);
+            return true;
+        }
+        if (follower instanceof CANSparkMax && leader instanceof BaseMotorController) {
+            int leaderID = ((BaseMotorController)leader).getDeviceID();
+            ((CANSparkMax)follower).follow(CANSparkMax.ExternalFollower.kFollowerPhoenix, leaderID, isOpposed);
+            return true;
+        }
+        return false;
+    }
+
+    /** Returns the leader of the group. */
+    public SpeedController getLeader() {
+        return leader;
+    }
+
+    /** Returns the number of followers. */
+    public synchronized int getFollowerCount() {
+        return followers.length;
+    }
+
+    /** Returns the number of followers that are sent commands in software instead of following in hardware. */
+    public synchronized int getSoftwareFollowerCount() {
+        return softwareCount;
+    }
+
+    /**
+     * Sets the speed of the group. Hardware followers follow the leader on their own; software followers are sent the same speed.
+     * 
+     * @param speed
+     *        The speed to set, from -1 to 1
+     */
+    @Override
+    public synchronized void set(double speed) {
+        speed = isInverted ? -speed : speed;
+        leader.set(speed);
+        for (int i = 0; i < followers.length; i++) {
+            if (!isHardware[i]) {
+                followers[i].set(isOpposed[i] ? -speed : speed);
+            }
+        }
+    }
+
+    /** Returns the speed last set to the group. */
+    @Override
+    public double get() {
+        double speed = leader.get();
+        return isInverted ? -speed : speed;
+    }
+
+    /**
+     * Inverts the direction of the whole group. Only the speeds sent to the group are flipped; the motor controllers themselves are not changed.
+     * 
+     * @param isInverted
+     *        {@code true} if the speeds should be multiplied by -1
+     */
+    @Override
+    public synchronized void setInverted(boolean isInverted) {
+        this.isInverted = isInverted;
+    }
+
+    @Override
+    public boolean getInverted() {
+        return isInverted;
+    }
+
+    /** Disables the leader and the software followers; hardware followers follow the leader. */
+    @Override
+    public synchronized void disable() {
+        leader.disable();
+        for (int i = 0; i < followers.length; i++) {
+            if (!isHardware[i]) {
+                followers[i].disable();
+            }
+        }
+    }
+
+    /** Stops the leader and the software followers; hardware followers follow the leader. */
+    @Override
+    public synchronized void stopMotor() {
+        leader.stopMotor();
+        for (int i = 0; i < followers.length; i++) {
+            if (!isHardware[i]) {
+                followers[i].stopMotor();
+            }
+        }
+    }
+
+    /**
+     * Sets the speed of the group.
+     * 
+     * @param output
+     *        The speed to set, from -1 to 1
+     */
+    public void pidWrite(double output) {
+        set(output);
+    }
+
+    /**
+     * Inverts the direction of the group's encoder readings.
+     * The group reads the leader's raw sensor, so this is the only inversion that applies; {@code invertEncoder()}
+     * and {@code setEncoder()} on the leader itself do not affect the group's readings, whichever vendor the leader is.
+     * 
+     * @param isInverted
+     *        {@code true} if the encoder value should be multiplied by -1
+     */
+    public void invertEncoder(boolean isInverted) {
+        invertEnc = isInverted ? -1 : 1;
+    }
+
+    /** Returns the raw position of the leader's selected sensor, or 0 if the leader is not one of the wrapped motor controllers. */
+    public double getPosition() {
+        if (leader instanceof WPI_TalonSRX) {
+            return invertEnc * ((WPI_TalonSRX)leader).getPosition();
+        }
+        if (leader instanceof WPI_TalonFX) {
+            return invertEnc * ((WPI_TalonFX)leader).getPosition();
+        }
+        if (leader instanceof CANSparkMax) {
+            return invertEnc * ((CANSparkMax)leader).getPositionRaw();
+        }
+        return 0;
+    }
+
+    /** Returns the raw velocity of the leader's selected sensor, or 0 if the leader is not one of the wrapped motor controllers. */
+    public double getVelocity() {
+        if (leader instanceof WPI_TalonSRX) {
+            return invertEnc * ((WPI_TalonSRX)leader).getVelocity();
+        }
+        if (leader instanceof WPI_TalonFX) {
+            return invertEnc * ((WPI_TalonFX)leader).getVelocity();
+        }
+        if (leader instanceof CANSparkMax) {
+            return invertEnc * ((CANSparkMax)leader).getVelocityRaw();
+        }
+        return 0;
+    }
+}
@@ -1,5 +1,7 @@
 package org.team217;
 
+import java.util.Objects;
+
 /**
  * Contains operations for managing and checking numerical data.
  * 
@@ -221,6 +223,323 @@ public class Num {
         return inRange(value, target - range, target + range);
     }
 
+    /**
+     * Applies an inclusive deadband to a section of an array, in place.
+     * 
+     * @param values
+     *        The values to be tested
+     * @param offset
+     *        The index of the first value
+     * @param length
+     *        The number of values
+     * @param deadband
+     *        The deadband size
+     * 
+     * @exception IllegalArgumentException if {@code deadband} is negative
+     * @exception IndexOutOfBoundsException if the section is out of the array's bounds
+     */
+    public static void deadband(double[] values, int offset, int length, double deadband) {
+        deadband(values, offset, length, deadband, true);
+    }
+
+    /**
+     * Applies a deadband to a section of an array, in place.
+     * 
+     * @param values
+     *        The values to be tested
+     * @param offset
+     *        The index of the first value
+     * @param length
+     *        The number of values
+     * @param deadband
+     *        The deadband size
+     * @param isInclusive
+     *        {@code true} if the deadband is inclusive
+     * 
+     * @exception IllegalArgumentException if {@code deadband} is negative
+     * @exception IndexOutOfBoundsException if the section is out of the array's bounds
+     */
+    public static void deadband(double[] values, int offset, int length, double deadband, boolean isInclusive) {
+        if (deadband < 0) {
+            throw new IllegalArgumentException("Illegal deadband value: " + deadband + "\nValue cannot be negative");
+        }
+        Objects.checkFromIndexSize(offset, length, values.length);
+
+        int end = offset + length;
+        if (isInclusive) {
+            for (int i = offset; i < end; i++) {
+                double value = values[i];
+                values[i] = value >= -deadband && value <= deadband ? 0 : value;
+            }
+        }
+        else {
+            for (int i = offset; i < end; i++) {
+                double value = values[i];
+                values[i] = value > -deadband && value < deadband ? 0 : value;
+            }
+        }
+    }
+
+    /**
+     * Checks if each value in a section of an array is within a range.
+     * 
+     * @param values
+     *        The values to be tested
+     * @param offset
+     *        The index of the first value
+     * @param length
+     *        The number of values
+     * @param lower
+     *        The lower range
+     * @param upper
+     *        The upper range
+     * @param isInclusive
+     *        {@code true} if the range is inclusive
+     * @param results
+     *        The array to store the results in; {@code true} if the value is within the range
+     * @param resultOffset
+     *        The index of the first result
+     * 
+     * @exception IllegalArgumentException if {@code lower} &gt; {@code upper}
+     * @exception IndexOutOfBoundsException if either section is out of its array's bounds
+     */
+    public static void isWithinRange(double[] values, int offset, int length, double lower, double upper, boolean isInclusive, boolean[] results, int resultOffset) {
+        if (lower > upper) {
+            throw new IllegalArgumentException("Illegal lower/upper value: " + lower + "/" + upper + "\nUpper must be greater than lower");
+        }
+        Objects.checkFromIndexSize(offset, length, values.length);
+        Objects.checkFromIndexSize(resultOffset, length, results.length);
+
+        if (isInclusive) {
+            for (int i = 0; i < length; i++) {
+                double value = values[offset + i];
+                results[resultOffset + i] = value >= lower & value <= upper;
+            }
+        }
+        else {
+            for (int i = 0; i < length; i++) {
+                double value = values[offset + i];
+                results[resultOffset + i] = value > lower & value < upper;
+            }
+        }
+    }
+
+    /**
+     * Checks if each value in a section of an array is within a two-sided range.
+     * 
+     * @param values
+     *        The values to be tested
+     * @param offset
+     *        The index of the first value
+     * @param length
+     *        The number of values
+     * @param range
+     *        The two-sided range [-range, range]
+     * @param isInclusive
+     *        {@code true} if the range is inclusive
+     * @param results
+     *        The array to store the results in; {@code true} if the value is within the range
+     * @param resultOffset
+     *        The index of the first result
+     * 
+     * @exception IllegalArgumentException if {@code range} is negative
+     * @exception IndexOutOfBoundsException if either section is out of its array's bounds
+     */
+    public static void isWithinRange(double[] values, int offset, int length, double range, boolean isInclusive, boolean[] results, int resultOffset) {
+        if (range < 0) {
+            throw new IllegalArgumentException("Illegal range value: " + range + "\nValue cannot be negative");
+        }
+        isWithinRange(values, offset, length, -range, range, isInclusive, results, resultOffset);
+    }
+
+    /**
+     * Checks if each value in a section of an array is within an inclusive range of a target value.
+     * 
+     * @param values
+     *        The values to be tested
+     * @param offset
+     *        The index of the first value
+     * @param length
+     *        The number of values
+     * @param target
+     *        The target value
+     * @param range
+     *        The target range
+     * @param results
+     *        The array to store the results in; {@code true} if the value is within the range of the target
+     * @param resultOffset
+     *        The index of the first result
+     * 
+     * @exception IllegalArgumentException if {@code range} is negative
+     * @exception IndexOutOfBoundsException if either section is out of its array's bounds
+     */
+    public static void isWithinTarget(double[] values, int offset, int length, double target, double range, boolean[] results, int resultOffset) {
+        isWithinTarget(values, offset, length, target, range, true, results, resultOffset);
+    }
+
+    /**
+     * Checks if each value in a section of an array is within a range of a target value.
+     * 
+     * @param values
+     *        The values to be tested
+     * @param offset
+     *        The index of the first value
+     * @param length
+     *        The number of values
+     * @param target
+     *        The target value
+     * @param range
+     *        The target range
+     * @param isInclusive
+     *        {@code true} if the range is inclusive
+     * @param results
+     *        The array to store the results in; {@code true} if the value is within the range of the target
+     * @param resultOffset
+     *        The index of the first result
+     * 
+     * @exception IllegalArgumentException if {@code range} is negative
+     * @exception IndexOutOfBoundsException if either section is out of its array's bounds
+     */
+    public static void isWithinTarget(double[] values, int offset, int length, double target, double range, boolean isInclusive, boolean[] results, int resultOffset) {
+        if (range < 0) {
+            throw new IllegalArgumentException("Illegal range value: " + range + "\nValue cannot be negative");
+        }
+        isWithinRange(values, offset, length, target - range, target + range, isInclusive, results, resultOffset);
+    }
+
+    /**
+     * Keeps each value in a section of an array within a range, in place.
+     * 
+     * @param values
+     *        The values to be modified
+     * @param offset
+     *        The index of the first value
+     * @param length
+     *        The number of values
+     * @param lower
+     *        The lower range
+     * @param upper
+     *        The upper range
+     * 
+     * @exception IllegalArgumentException if {@code lower} &gt; {@code upper}
+     * @exception IndexOutOfBoundsException if the section is out of the array's bounds
+     */
+    public static void inRange(double[] values, int offset, int length, double lower, double upper) {
+        if (lower > upper) {
+            throw new IllegalArgumentException("Illegal lower/upper value: " + lower + "/" + upper + "\nUpper must be greater than lower");
+        }
+        Objects.checkFromIndexSize(offset, length, values.length);
+
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            // same comparisons as inRange(double, double, double) so -0.0 and NaN are kept the same way
+            double value = values[i];
+            values[i] = value > upper ? upper : value < lower ? lower : value;
+        }
+    }
+
+    /**
+     * Keeps each value in a section of an array within a two-sided range, in place.
+     * 
+     * @param values
+     *        The values to be modified
+     * @param offset
+     *        The index of the first value
+     * @param length
+     *        The number of values
+     * @param range
+     *        The two-sided range [-range, range]
+     * 
+     * @exception IllegalArgumentException if {@code range} is negative
+     * @exception IndexOutOfBoundsException if the section is out of the array's bounds
+     */
+    public static void inRange(double[] values, int offset, int length, double range) {
+        if (range < 0) {
+            throw new IllegalArgumentException("Illegal range value: " + range + "\nValue cannot be negative");
+        }
+        inRange(values, offset, length, -range, range);
+    }
+
+    /**
+     * Keeps each value in a section of an array within a range of a target value, in place.
+     * 
+     * @param values
+     *        The values to be modified
+     * @param offset
+     *        The index of the first value
+     * @param length
+     *        The number of values
+     * @param target
+     *        The target value
+     * @param range
+     *        The target range
+     * 
+     * @exception IllegalArgumentException if {@code range} is negative
+     * @exception IndexOutOfBoundsException if the section is out of the array's bounds
+     */
+    public static void inTarget(double[] values, int offset, int length, double target, double range) {
+        if (range < 0) {
+            throw new IllegalArgumentException("Illegal range value: " + range + "\nValue cannot be negative");
+        }
+        inRange(values, offset, length, target - range, target + range);
+    }
+
+    /**
+     * Returns the distance between two points given the change in distance along two component axes.
+     * Unlike {@link #distance(double...)}, this does not allocate an array.
+     * 
+     * @param x
+     *        The change in distance along the first axis
+     * @param y
+     *        The change in distance along the second axis
+     */
+    public static double distance(double x, double y) {
+        return Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Returns the distance between two points given the change in distance along three component axes.
+     * Unlike {@link #distance(double...)}, this does not allocate an array.
+     * 
+     * @param x
+     *        The change in distance along the first axis
+     * @param y
+     *        The change in distance along the second axis
+     * @param z
+     *        The change in distance along the third axis
+     */
+    public static double distance(double x, double y, double z) {
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+
+    /**
+     * Returns the missing component axis given the distance between two points and one other component axis.
+     * Unlike {@link #componentAxis(double, double...)}, this does not allocate an array.
+     * 
+     * @param dist
+     *        The distance between the two points
+     * @param x
+     *        The change in distance along the other axis
+     */
+    public static double componentAxis(double dist, double x) {
+        return Math.sqrt(dist * dist - x * x);
+    }
+
+    /**
+     * Returns the missing component axis given the distance between two points and two other component axes.
+     * Unlike {@link #componentAxis(double, double...)}, this does not allocate an array.
+     * 
+     * @param dist
+     *        The distance between the two points
+     * @param x
+     *        The change in distance along the first other axis
+     * @param y
+     *        The change in distance along the second other axis
+     */
+    public static double componentAxis(double dist, double x, double y) {
+        return Math.sqrt(dist * dist - (x * x + y * y));
+    }
+
     /**
      * Returns the distance between two points given the change in distance along component axes.
      * 
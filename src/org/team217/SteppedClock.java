@@ -0,0 +1,63 @@
+package org.team217;
+
+/**
+ * A clock that only moves when it is stepped.
+ * Timed components driven by a stepped clock behave the same on every run, however fast the JVM runs them,
+ * so a whole match of control logic can be replayed in milliseconds.
+ * 
+ * @author ThunderChickens 217
+ */
+public class SteppedClock implements Clock {
+    private volatile double time;
+
+    /**
+     * Creates a new stepped clock starting at 0 seconds.
+     * 
+     * @author ThunderChickens 217
+     */
+    public SteppedClock() {
+        this(0);
+    }
+
+    /**
+     * Creates a new stepped clock starting at the given time.
+     * 
+     * @param time
+     *        The starting time, in seconds
+     * 
+     * @author ThunderChickens 217
+     */
+    public SteppedClock(double time) {
+        this.time = time;
+    }
+
+    /**
+     * Advances the clock.
+     * 
+     * @param dt
+     *        The time to advance by, in seconds
+     * 
+     * @exception IllegalArgumentException if {@code dt} is negative
+     */
+    public synchronized void step(double dt) {
+        if (dt < 0) {
+            throw new IllegalArgumentException("Illegal dt value: " + dt + "\nValue must be non-negative");
+        }
+        time += dt;
+    }
+
+    /**
+     * Sets the time.
+     * 
+     * @param time
+     *        The new time, in seconds
+     */
+    public synchronized void setTime(double time) {
+        this.time = time;
+    }
+
+    @Override
+    public double getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,189 @@
+package org.team217;
+
+import org.team217.ctre.WPI_TalonSRX;
+
+/**
+ * Converts between the motion of a swerve drive and the speeds and angles of its modules.
+ * Every method works on primitive arrays holding one value per module and handles all of the modules in one pass,
+ * writing into arrays the caller keeps, so a drive loop that reuses its arrays creates no garbage.
+ * Positions are relative to the center of rotation, with x forward and y to the left. Module angles are measured
+ * counterclockwise from forward in steering sensor units, such as the 1024 units per revolution of
+ * {@link WPI_TalonSRX#getSwerveAnalog()}.
+ * 
+ * @author ThunderChickens 217
+ */
+public class SwerveKinematics {
+    private final double[] moduleX, moduleY;
+    /** The inverse of the forward kinematics normal matrix, row-major 3 by 3 */
+    private final double[] inverse = new double[9];
+
+    /**
+     * Creates new swerve kinematics.
+     * 
+     * @param moduleX
+     *        The x position of each module, forward of the center
+     * @param moduleY
+     *        The y position of each module, left of the center
+     * 
+     * @exception IllegalArgumentException if the arrays are different lengths or there are not two modules in different places
+     */
+    public SwerveKinematics(double[] moduleX, double[] moduleY) {
+        if (moduleX.length != moduleY.length) {
+            throw new IllegalArgumentException("Illegal module positions\nThere must be an x and y position for each module");
+        }
+        this.moduleX = moduleX.clone();
+        this.moduleY = moduleY.clone();
+
+        // normal matrix of the forward kinematics: [[n, 0, -sum(y)], [0, n, sum(x)], [-sum(y), sum(x), sum(x^2 + y^2)]]
+        double n = moduleX.length, sumX = 0, sumY = 0, sumR2 = 0;
+        for (int i = 0; i < moduleX.length; i++) {
+            sumX += moduleX[i];
+            sumY += moduleY[i];
+            sumR2 += moduleX[i] * moduleX[i] + moduleY[i] * moduleY[i];
+        }
+        double det = n * (n * sumR2 - sumX * sumX) - sumY * sumY * n;
+        if (n < 2 || Math.abs(det) < 1e-12) {
+            throw new IllegalArgumentException("Illegal module positions\nThere must be at least two modules in different places");
+        }
+        inverse[0] = (n * sumR2 - sumX * sumX) / det;
+        inverse[1] = -sumY * sumX / det;
+        inverse[2] = n * sumY / det;
+        inverse[3] = inverse[1];
+        inverse[4] = (n * sumR2 - sumY * sumY) / det;
+        inverse[5] = -n * sumX / det;
+        inverse[6] = inverse[2];
+        inverse[7] = inverse[5];
+        inverse[8] = n * n / det;
+    }
+
+    /** Returns the number of modules. */
+    public int getModuleCount() {
+        return moduleX.length;
+    }
+
+    /**
+     * Calculates the speed and angle of each module for a motion of the drive.
+     * 
+     * @param vx
+     *        The forward speed of the drive
+     * @param vy
+     *        The leftward speed of the drive
+     * @param omega
+     *        The counterclockwise turn rate of the drive, in radians/second
+     * @param unitsPerRev
+     *        Number of steering sensor units per one revolution
+     * @param speeds
+     *        The array to write each module's speed into
+     * @param angles
+     *        The array to write each module's angle into, within half a revolution of 0
+     */
+    public void toModuleStates(double vx, double vy, double omega, double unitsPerRev, double[] speeds, double[] angles) {
+        double unitsPerRadian = unitsPerRev / (2 * Math.PI);
+        for (int i = 0; i < moduleX.length; i++) {
+            double x = vx - omega * moduleY[i];
+            double y = vy + omega * moduleX[i];
+            speeds[i] = Math.sqrt(x * x + y * y);
+            angles[i] = Math.atan2(y, x) * unitsPerRadian;
+        }
+    }
+
+    /**
+     * Calculates the motion of the drive from the speed and angle of each module, by least squares.
+     * 
+     * @param speeds
+     *        The speed of each module
+     * @param angles
+     *        The angle of each module
+     * @param unitsPerRev
+     *        Number of steering sensor units per one revolution
+     * @param out
+     *        The array to write the forward speed, leftward speed, and counterclockwise turn rate in radians/second into
+     */
+    public void toChassisSpeeds(double[] speeds, double[] angles, double unitsPerRev, double[] out) {
+        double radiansPerUnit = 2 * Math.PI / unitsPerRev;
+        double sumVx = 0, sumVy = 0, sumMoment = 0;
+        for (int i = 0; i < moduleX.length; i++) {
+            double angle = angles[i] * radiansPerUnit;
+            double x = speeds[i] * Math.cos(angle);
+            double y = speeds[i] * Math.sin(angle);
+            sumVx += x;
+            sumVy += y;
+            sumMoment += moduleX[i] * y - moduleY[i] * x;
+        }
+        out[0] = inverse[0] * sumVx + inverse[1] * sumVy + inverse[2] * sumMoment;
+        out[1] = inverse[3] * sumVx + inverse[4] * sumVy + inverse[5] * sumMoment;
+        out[2] = inverse[6] * sumVx + inverse[7] * sumVy + inverse[8] * sumMoment;
+    }
+
+    /**
+     * Scales every module speed down by the same amount so none is faster than the maximum, keeping the drive's direction of motion.
+     * 
+     * @param speeds
+     *        The module speeds to scale in place
+     * @param maxSpeed
+     *        The fastest a module can go
+     * @return
+     *        The scale applied to the speeds, at most 1
+     */
+    public static double desaturate(double[] speeds, double maxSpeed) {
+        double fastest = 0;
+        for (double speed : speeds) {
+            fastest = Math.max(fastest, Math.abs(speed));
+        }
+        if (fastest <= maxSpeed) {
+            return 1;
+        }
+        double scale = maxSpeed / fastest;
+        for (int i = 0; i < speeds.length; i++) {
+            speeds[i] *= scale;
+        }
+        return scale;
+    }
+
+    /**
+     * Turns each module the shortest way to its target.
+     * A module never turns more than a quarter revolution; if the target is further away, the module turns to the
+     * opposite angle and drives in reverse instead. A module with a speed of 0 holds its current angle.
+     * The new angles are within half a revolution of 0, like the reading of {@link WPI_TalonSRX#getSwerveAnalog()}, so a
+     * target near the wraparound can be on the other side of it from the current angle. A steering loop must take the
+     * shortest way around, such as by wrapping its error with {@link Converter#partialAngle(double, double)}.
+     * 
+     * @param speeds
+     *        The module speeds, negated in place where a module drives in reverse
+     * @param angles
+     *        The target module angles, replaced in place with the angles to turn to, within half a revolution of 0
+     * @param currentAngles
+     *        The current module angles
+     * @param unitsPerRev
+     *        Number of steering sensor units per one revolution
+     */
+    public static void optimize(double[] speeds, double[] angles, double[] currentAngles, double unitsPerRev) {
+        double quarterRev = unitsPerRev / 4;
+        for (int i = 0; i < speeds.length; i++) {
+            if (speeds[i] == 0) {
+                angles[i] = Converter.partialAngle(currentAngles[i], unitsPerRev);
+                continue;
+            }
+            double turn = Converter.partialAngle(angles[i] - currentAngles[i], unitsPerRev);
+            if (Math.abs(turn) > quarterRev) {
+                turn = Converter.partialAngle(turn + 2 * quarterRev, unitsPerRev);
+                speeds[i] = -speeds[i];
+            }
+            angles[i] = Converter.partialAngle(currentAngles[i] + turn, unitsPerRev);
+        }
+    }
+
+    /**
+     * Reads the angle of each module from its steering motor controller's analog encoder.
+     * 
+     * @param steering
+     *        The steering motor controller of each module
+     * @param out
+     *        The array to write each module's angle into, from -512 to 512
+     */
+    public static void readAngles(WPI_TalonSRX[] steering, double[] out) {
+        for (int i = 0; i < steering.length; i++) {
+            out[i] = steering[i].getSwerveAnalog();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.team217.can;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Configures many devices at once instead of one after another, then verifies each one and retries the
+ * failures, so startup takes about as long as the slowest device rather than the sum of all of them.
+ * 
+ * @author ThunderChickens 217
+ */
+public class BulkConfigurator {
+    /**
+     * A configuration or verification step for one device.
+     * 
+     * @author ThunderChickens 217
+     */
+    @FunctionalInterface
+    public interface Step {
+        /**
+         * Runs the step.
+         * 
+         * @return
+         *        {@code true} if the step succeeded
+         */
+        boolean run();
+    }
+
+    /**
+     * The outcome of configuring one device.
+     * 
+     * @author ThunderChickens 217
+     */
+    public static class Result {
+        /** The name of the device. */
+        public final String name;
+        /** {@code true} if the device was configured, and verified if it has a verification step. */
+        public final boolean isSuccess;
+        /** {@code true} if the device has a verification step, so a success was read back from the device. */
+        public final boolean isVerified;
+        /** The number of attempts made. */
+        public final int attempts;
+        /** The time taken by every attempt together, in seconds. */
+        public final double elapsed;
+        /** The exception thrown by the last attempt, or {@code null} if there was none. */
+        public final RuntimeException error;
+
+        /**
+         * Creates a new configuration result.
+         * 
+         * @param name
+         *        The name of the device
+         * @param isSuccess
+         *        {@code true} if the device was configured, and verified if it has a verification step
+         * @param isVerified
+         *        {@code true} if the device has a verification step
+         * @param attempts
+         *        The number of attempts made
+         * @param elapsed
+         *        The time taken by every attempt together, in seconds
+         * @param error
+         *        The exception thrown by the last attempt, or {@code null} if there was none
+         */
+        public Result(String name, boolean isSuccess, boolean isVerified, int attempts, double elapsed, RuntimeException error) {
+            this.name = name;
+            this.isSuccess = isSuccess;
+            this.isVerified = isVerified;
+            this.attempts = attempts;
+            this.elapsed = elapsed;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s after %d attempt(s) in %.3f s%s", name,
+                !isSuccess ? "FAILED" : isVerified ? "configured" : "configured (unverified)", attempts, elapsed, error == null ? "" : " (" + error + ")");
+        }
+    }
+
+    private final int threads, maxAttempts;
+    private final List<String> names = new ArrayList<>();
+    private final List<Step> configures = new ArrayList<>();
+    private final List<Step> verifies = new ArrayList<>();
+
+    /**
+     * Creates a new bulk configurator.
+     * 
+     * @param threads
+     *        The number of devices to configure at the same time
+     * @param maxAttempts
+     *        The number of times to try each device before giving up
+     * 
+     * @exception IllegalArgumentException if {@code threads} or {@code maxAttempts} is not positive
+     */
+    public BulkConfigurator(int threads, int maxAttempts) {
+        if (threads <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("Illegal threads/maxAttempts value: " + threads + "/" + maxAttempts + "\nValues must be positive");
+        }
+        this.threads = threads;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Adds a device without a verification step. Its result is marked unverified, since an acknowledged setting
+     * is not read back; pair {@code WPI_TalonSRX.trySetup()} with {@code WPI_TalonSRX.verifySetup()} to verify it.
+     * 
+     * @param name
+     *        The name of the device, used in the results
+     * @param configure
+     *        The configuration step; returns {@code true} if the device acknowledged every setting
+     */
+    public synchronized void add(String name, Step configure) {
+        add(name, configure, null);
+    }
+
+    /**
+     * Adds a device with a separate verification step, such as reading the settings back.
+     * 
+     * @param name
+     *        The name of the device, used in the results
+     * @param configure
+     *        The configuration step; returns {@code true} if it succeeded
+     * @param verify
+     *        The verification step, run after a successful configuration; returns {@code true} if the device is configured,
+     *        or {@code null} to leave the device unverified
+     */
+    public synchronized void add(String name, Step configure, Step verify) {
+        names.add(name);
+        configures.add(configure);
+        verifies.add(verify);
+    }
+
+    /**
+     * Configures every added device concurrently.
+     * 
+     * @return
+     *        One future per device, in the order the devices were added
+     */
+    public synchronized List<CompletableFuture<Result>> run() {
+        int count = names.size();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, count)), runnable -> {
+            Thread thread = new Thread(runnable, "BulkConfigurator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<CompletableFuture<Result>> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = names.get(i);
+            Step configure = configures.get(i);
+            Step verify = verifies.get(i);
+            results.add(CompletableFuture.supplyAsync(() -> configure(name, configure, verify), pool));
+        }
+
+        // let the threads end once every device is done
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, e) -> pool.shutdown());
+        return results;
+    }
+
+    /**
+     * Configures every added device concurrently and waits for all of them.
+     * 
+     * @return
+     *        The results, in the order the devices were added
+     */
+    public List<Result> runAndWait() {
+        List<CompletableFuture<Result>> futures = run();
+        List<Result> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<Result> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * Configures and verifies one device, retrying until it succeeds or runs out of attempts.
+     * 
+     * @param name
+     *        The name of the device
+     * @param configure
+     *        The configuration step
+     * @param verify
+     *        The verification step, or {@code null} if there is none
+     */
+    private Result configure(String name, Step configure, Step verify) {
+        long start = System.nanoTime();
+        boolean isVerified = verify != null;
+        RuntimeException error = null;
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                error = null;
+                if (configure.run() && (!isVerified || verify.run())) {
+                    return new Result(name, true, isVerified, attempt, (System.nanoTime() - start) / 1e9, null);
+                }
+            }
+            catch (RuntimeException e) {
+                error = e;
+            }
+        }
+        return new Result(name, false, isVerified, maxAttempts, (System.nanoTime() - start) / 1e9, error);
+    }
+}
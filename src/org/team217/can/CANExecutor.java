@@ -0,0 +1,293 @@
+package org.team217.can;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+
+/**
+ * Owns the JNI calls to the wrapped motor controllers on its own thread, so a slow or timing-out CAN call
+ * does not stall the main loop.
+ * The main loop stages commands with {@link #set(int, Object, double)} and hands them over with
+ * {@link #publish()}; each cycle, the executor thread sends the latest published commands, refreshes the
+ * sensor frame, and then runs queued tasks such as configuration while the cycle's task budget lasts.
+ * Time a task runs past the budget is taken from the budgets of the following cycles, so tasks average at most
+ * the budget per cycle and only the cycle right after a long task starts late. Blocking calls in tasks should
+ * use short timeouts.
+ * 
+ * @author ThunderChickens 217
+ */
+public class CANExecutor implements AutoCloseable {
+    /**
+     * One copy of the commands of every device.
+     * 
+     * @author ThunderChickens 217
+     */
+    private static class Commands {
+        /** Odd while the commands are being written, so the executor knows to retry. */
+        volatile long version = 0;
+        final Object[] modes;
+        final double[] values;
+
+        Commands(int capacity) {
+            modes = new Object[capacity];
+            values = new double[capacity];
+        }
+    }
+
+    private final CommandDevice[] devices;
+    private volatile int deviceCount = 0;
+    private final SensorFrame frame;
+
+    /** The commands being staged by the main loop; only the main loop touches these. */
+    private final Object[] stagedModes;
+    private final double[] stagedValues;
+    private volatile Commands front;
+    private Commands back;
+
+    /** The commands last read by the executor thread; only the executor thread touches these. */
+    private final Object[] modes;
+    private final double[] values;
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    /** The time each cycle may spend running queued tasks, in nanoseconds */
+    private volatile long taskBudget = 2_000_000;
+    /** The task time used past the budget by earlier cycles, in nanoseconds; only the executor thread touches this. */
+    private long taskDebt = 0;
+    private Notifier notifier;
+
+    /**
+     * Creates a new CAN executor that only sends commands.
+     * 
+     * @param capacity
+     *        The maximum number of devices
+     * 
+     * @exception IllegalArgumentException if {@code capacity} is not positive
+     */
+    public CANExecutor(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Creates a new CAN executor that sends commands and refreshes a sensor frame.
+     * 
+     * @param capacity
+     *        The maximum number of devices
+     * @param frame
+     *        The sensor frame to refresh after sending commands, or {@code null}
+     * 
+     * @exception IllegalArgumentException if {@code capacity} is not positive
+     */
+    public CANExecutor(int capacity, SensorFrame frame) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity value: " + capacity + "\nValue must be positive");
+        }
+        this.frame = frame;
+        devices = new CommandDevice[capacity];
+        stagedModes = new Object[capacity];
+        stagedValues = new double[capacity];
+        modes = new Object[capacity];
+        values = new double[capacity];
+        front = new Commands(capacity);
+        back = new Commands(capacity);
+    }
+
+    /**
+     * Adds a device to the executor. The device receives no commands until one is staged and published.
+     * 
+     * @param device
+     *        The device to add
+     * @return
+     *        The device's slot, used to stage its commands
+     * 
+     * @exception IllegalStateException if the executor is full
+     */
+    public synchronized int register(CommandDevice device) {
+        int slot = deviceCount;
+        if (slot >= devices.length) {
+            throw new IllegalStateException("CAN executor is full: " + devices.length + " devices");
+        }
+        devices[slot] = device;
+        deviceCount = slot + 1;
+        return slot;
+    }
+
+    /** Returns the sensor frame the executor refreshes, or {@code null} if there is none. */
+    public SensorFrame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Stages a command for a device. It is not sent until {@link #publish()} is called.
+     * Only the main loop may stage commands.
+     * 
+     * @param slot
+     *        The device's slot
+     * @param mode
+     *        The vendor control mode, such as a CTRE {@code ControlMode} or a REV {@code ControlType},
+     *        or {@code null} to stop sending commands to the device
+     * @param value
+     *        The setpoint in that mode
+     * 
+     * @exception IllegalArgumentException if {@code slot} is not a registered slot or the device does not support the mode
+     */
+    public void set(int slot, Object mode, double value) {
+        if (slot < 0 || slot >= deviceCount) {
+            throw new IllegalArgumentException("Illegal slot value: " + slot + "\nValue must be a registered slot from 0 to " + (deviceCount - 1));
+        }
+        // check here so a bad mode fails in the caller instead of on the executor thread
+        if (mode != null && !devices[slot].isSupported(mode)) {
+            throw new IllegalArgumentException("Illegal mode: " + mode + "\nThe device in slot " + slot + " does not support it");
+        }
+        stagedModes[slot] = mode;
+        stagedValues[slot] = value;
+    }
+
+    /** Hands every staged command to the executor thread at once. Only the main loop may publish. */
+    public void publish() {
+        Commands commands = back;
+        commands.version++;
+        VarHandle.storeStoreFence(); // keep the writes below after the odd version
+
+        int count = deviceCount;
+        System.arraycopy(stagedModes, 0, commands.modes, 0, count);
+        System.arraycopy(stagedValues, 0, commands.values, 0, count);
+
+        commands.version++;
+        back = front;
+        front = commands;
+    }
+
+    /**
+     * Queues a task, such as a blocking configuration call, to run on the executor thread after the next commands are sent.
+     * 
+     * @param task
+     *        The task to run
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Sets how long each cycle may spend running queued tasks. A task is only started while the budget lasts,
+     * after taking off the time earlier tasks ran past their cycles' budgets.
+     * 
+     * @param seconds
+     *        The task budget, in seconds
+     * @return
+     *        {@code false} if the budget is not positive
+     */
+    public boolean setTaskBudget(double seconds) {
+        if (seconds <= 0) {
+            return false;
+        }
+        taskBudget = (long)(seconds * 1e9);
+        return true;
+    }
+
+    /** Returns how long each cycle may spend running queued tasks, in seconds. */
+    public double getTaskBudget() {
+        return taskBudget / 1e9;
+    }
+
+    /**
+     * Starts the executor thread.
+     * 
+     * @param period
+     *        The time between cycles, in seconds
+     * @return
+     *        {@code false} if the period is not positive
+     */
+    public synchronized boolean start(double period) {
+        if (period <= 0) {
+            return false;
+        }
+        if (notifier == null) {
+            notifier = new Notifier(this::cycle);
+        }
+        notifier.startPeriodic(period);
+        return true;
+    }
+
+    /** Stops the executor thread. Queued tasks stay queued until it is started again. */
+    public synchronized void stop() {
+        if (notifier != null) {
+            notifier.stop();
+        }
+    }
+
+    /** Stops and frees the executor thread. */
+    @Override
+    public synchronized void close() {
+        if (notifier != null) {
+            notifier.close();
+            notifier = null;
+        }
+    }
+
+    /**
+     * Runs one executor cycle: the latest published commands, then the sensor frame, then queued tasks within the task budget.
+     * This is called by the executor thread, but can be called directly instead of starting it.
+     */
+    public void cycle() {
+        int count = readCommands();
+        for (int slot = 0; slot < count; slot++) {
+            if (modes[slot] != null) {
+                try {
+                    devices[slot].applyCommand(modes[slot], values[slot]);
+                }
+                catch (RuntimeException e) {
+                    // one failing device must not stop the commands of the others
+                    DriverStation.reportError("CANExecutor command failed: " + e, e.getStackTrace());
+                }
+            }
+        }
+
+        if (frame != null) {
+            frame.refresh();
+        }
+
+        // check the budget before starting each task, and pay back any time earlier tasks ran over
+        long available = taskBudget - taskDebt;
+        long start = System.nanoTime();
+        long used = 0;
+        while (used < available) {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                break;
+            }
+            try {
+                task.run();
+            }
+            catch (RuntimeException e) {
+                DriverStation.reportError("CANExecutor task failed: " + e, e.getStackTrace());
+            }
+            used = System.nanoTime() - start;
+        }
+        taskDebt = Math.max(0, used - available);
+    }
+
+    /**
+     * Copies the latest published commands into the executor thread's arrays.
+     * 
+     * @return
+     *        The number of devices
+     */
+    private int readCommands() {
+        int count = deviceCount;
+        while (true) {
+            Commands commands = front;
+            long version = commands.version;
+            if ((version & 1) == 0) {
+                System.arraycopy(commands.modes, 0, modes, 0, count);
+                System.arraycopy(commands.values, 0, values, 0, count);
+
+                VarHandle.acquireFence(); // keep the copies above before the check below
+                if (commands.version == version) {
+                    return count;
+                }
+            }
+            Thread.onSpinWait(); // published while copying, try again
+        }
+    }
+}
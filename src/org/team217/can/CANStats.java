@@ -0,0 +1,252 @@
+package org.team217.can;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the JNI calls a wrapped motor controller makes and the time spent in them, split into sensor
+ * reads, output commands, and configuration. Every wrapped motor controller registers its own counters,
+ * so {@link #report()} shows which devices use the most CAN bandwidth and JNI time.
+ * Call {@link #updateAll()} about once a second to get per-second rates.
+ * Only calls made through the wrappers' own methods are counted. Vendor methods the wrappers inherit without
+ * overriding, such as {@code getSelectedSensorPosition()} or {@code getBusVoltage()} called directly, go straight
+ * to the vendor library, so the counts are a lower bound unless code sticks to the wrapper methods.
+ * A wrapper's counters stay registered until the wrapper is closed.
+ * 
+ * @author ThunderChickens 217
+ */
+public class CANStats {
+    /**
+     * The kinds of calls that are counted.
+     * 
+     * @author ThunderChickens 217
+     */
+    public enum Category {
+        /** Sensor and status reads. */
+        Get,
+        /** Output commands. */
+        Set,
+        /** Configuration calls. */
+        Config
+    }
+
+    private static final Category[] categories = Category.values();
+    private static final List<CANStats> devices = new CopyOnWriteArrayList<>();
+    private static volatile boolean isEnabled = true;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(categories.length);
+    private final AtomicLongArray nanos = new AtomicLongArray(categories.length);
+
+    /** The totals and time at the last update, and the rates since the update before it; guarded by the class lock. */
+    private final long[] lastCounts = new long[categories.length];
+    private final long[] lastNanos = new long[categories.length];
+    private final double[] countRates = new double[categories.length];
+    private final double[] timeRates = new double[categories.length];
+    private long lastUpdate;
+
+    /**
+     * Creates new counters.
+     * 
+     * @param name
+     *        The name of the device
+     */
+    private CANStats(String name) {
+        this.name = name;
+        lastUpdate = System.nanoTime();
+    }
+
+    /**
+     * Creates counters for a device and adds them to the registry.
+     * 
+     * @param name
+     *        The name of the device, such as {@code "TalonSRX 3"}
+     * @return
+     *        The device's counters
+     */
+    public static CANStats register(String name) {
+        CANStats stats = new CANStats(name);
+        devices.add(stats);
+        return stats;
+    }
+
+    /**
+     * Removes a device's counters from the registry.
+     * 
+     * @param stats
+     *        The device's counters
+     */
+    public static void unregister(CANStats stats) {
+        devices.remove(stats);
+    }
+
+    /** Returns the counters of every registered device. */
+    public static List<CANStats> getDevices() {
+        return devices;
+    }
+
+    /**
+     * Turns counting on or off for every device. Counting is on by default.
+     * 
+     * @param isEnabled
+     *        {@code true} if calls should be counted
+     */
+    public static void setEnabled(boolean isEnabled) {
+        CANStats.isEnabled = isEnabled;
+    }
+
+    /** Returns {@code true} if calls are being counted. */
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /** Returns the start time of a call, to pass to {@link #record(Category, long)} after it. */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Counts one call.
+     * 
+     * @param category
+     *        The kind of call
+     * @param start
+     *        The start time of the call, from {@link #start()}
+     */
+    public void record(Category category, long start) {
+        record(category, start, 1);
+    }
+
+    /**
+     * Counts a group of calls made together.
+     * 
+     * @param category
+     *        The kind of calls
+     * @param start
+     *        The start time of the first call, from {@link #start()}
+     * @param calls
+     *        The number of calls
+     */
+    public void record(Category category, long start, int calls) {
+        if (isEnabled) {
+            int index = category.ordinal();
+            nanos.addAndGet(index, System.nanoTime() - start);
+            counts.addAndGet(index, calls);
+        }
+    }
+
+    /** Returns the name of the device. */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the total number of calls.
+     * 
+     * @param category
+     *        The kind of call
+     */
+    public long getCount(Category category) {
+        return counts.get(category.ordinal());
+    }
+
+    /**
+     * Returns the total time spent in calls, in seconds.
+     * 
+     * @param category
+     *        The kind of call
+     */
+    public double getTime(Category category) {
+        return nanos.get(category.ordinal()) / 1e9;
+    }
+
+    /**
+     * Returns the number of calls per second between the last two updates.
+     * 
+     * @param category
+     *        The kind of call
+     */
+    public double getCountRate(Category category) {
+        synchronized (CANStats.class) {
+            return countRates[category.ordinal()];
+        }
+    }
+
+    /**
+     * Returns the fraction of each second spent in calls between the last two updates.
+     * 
+     * @param category
+     *        The kind of call
+     */
+    public double getTimeRate(Category category) {
+        synchronized (CANStats.class) {
+            return timeRates[category.ordinal()];
+        }
+    }
+
+    /** Resets the totals and rates to 0. */
+    public void reset() {
+        synchronized (CANStats.class) {
+            for (int i = 0; i < categories.length; i++) {
+                counts.set(i, 0);
+                nanos.set(i, 0);
+                lastCounts[i] = 0;
+                lastNanos[i] = 0;
+                countRates[i] = 0;
+                timeRates[i] = 0;
+            }
+            lastUpdate = System.nanoTime();
+        }
+    }
+
+    /** Recalculates the per-second rates of every registered device from the calls since the last update. */
+    public static synchronized void updateAll() {
+        long now = System.nanoTime();
+        for (CANStats stats : devices) {
+            stats.update(now);
+        }
+    }
+
+    /**
+     * Recalculates the per-second rates from the calls since the last update.
+     * 
+     * @param now
+     *        The current time, from {@link System#nanoTime()}
+     */
+    private void update(long now) {
+        double elapsed = (now - lastUpdate) / 1e9;
+        if (elapsed <= 0) {
+            return;
+        }
+        for (int i = 0; i < categories.length; i++) {
+            long count = counts.get(i);
+            long time = nanos.get(i);
+            countRates[i] = (count - lastCounts[i]) / elapsed;
+            timeRates[i] = (time - lastNanos[i]) / 1e9 / elapsed;
+            lastCounts[i] = count;
+            lastNanos[i] = time;
+        }
+        lastUpdate = now;
+    }
+
+    /** Returns one line per registered device with its per-second rates, for printing or logging. */
+    public static synchronized String report() {
+        StringBuilder builder = new StringBuilder();
+        for (CANStats stats : devices) {
+            builder.append(stats).append('\n');
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(name).append(':');
+        synchronized (CANStats.class) {
+            for (int i = 0; i < categories.length; i++) {
+                builder.append(String.format(" %s %.0f/s %.2f ms/s", categories[i], countRates[i], timeRates[i] * 1e3));
+            }
+        }
+        return builder.toString();
+    }
+}
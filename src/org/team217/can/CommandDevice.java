@@ -0,0 +1,31 @@
+package org.team217.can;
+
+/**
+ * A motor controller that can be commanded from a {@link CANExecutor}.
+ * 
+ * @author ThunderChickens 217
+ */
+public interface CommandDevice {
+    /**
+     * Sends a command to the device. Called from the {@code CANExecutor} thread.
+     * 
+     * @param mode
+     *        The vendor control mode, such as a CTRE {@code ControlMode} or a REV {@code ControlType}
+     * @param value
+     *        The setpoint in that mode
+     * 
+     * @exception IllegalArgumentException if the device does not support the mode
+     */
+    void applyCommand(Object mode, double value);
+
+    /**
+     * Checks if the device can be sent commands in a mode, so a {@code CANExecutor} can reject an unsupported
+     * mode when it is staged instead of failing on its own thread.
+     * 
+     * @param mode
+     *        The vendor control mode
+     * @return
+     *        {@code true} if {@link #applyCommand(Object, double)} accepts the mode
+     */
+    boolean isSupported(Object mode);
+}
@@ -0,0 +1,34 @@
+package org.team217.can;
+
+/**
+ * A motor controller whose sensors can be read once per cycle into a {@link SensorFrame}.
+ * The {@code read} methods always go to the device; the wrapper getters read from the frame once attached.
+ * 
+ * @author ThunderChickens 217
+ */
+public interface FrameDevice {
+    /** Reads the raw position of the selected sensor from the device. */
+    double readPosition();
+
+    /** Reads the raw velocity of the selected sensor from the device. */
+    double readVelocity();
+
+    /** Reads the raw analog input from the device, or 0 if the device has none. */
+    int readAnalogRaw();
+
+    /** Reads the forward limit switch from the device, or {@code false} if the device has none. */
+    boolean readLimitFwd();
+
+    /** Reads the reverse limit switch from the device, or {@code false} if the device has none. */
+    boolean readLimitRev();
+
+    /**
+     * Makes the device's getters read from a frame. Called by {@link SensorFrame#register(FrameDevice, int)}.
+     * 
+     * @param frame
+     *        The frame to read from, or {@code null} to read from the device again
+     * @param slot
+     *        The device's slot in the frame
+     */
+    void attach(SensorFrame frame, int slot);
+}
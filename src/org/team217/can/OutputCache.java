@@ -0,0 +1,145 @@
+package org.team217.can;
+
+import org.team217.Clock;
+
+/**
+ * Remembers the last command sent to a motor controller so that repeated identical commands can skip the
+ * JNI call and CAN transmit. A matching command is still sent once the keep-alive interval has passed,
+ * so the controller and the motor safety watchdog do not time out.
+ * The keep-alive is timed with {@link Clock#SYSTEM} by default, since reading the FPGA time is itself a JNI call.
+ * 
+ * @author ThunderChickens 217
+ */
+public class OutputCache {
+    private final Clock clock;
+    private double tolerance;
+    private double keepAlive;
+
+    private Object lastMode = null;
+    private double lastValue = 0;
+    private double lastSent = 0;
+
+    private long sent = 0;
+    private long suppressed = 0;
+
+    /**
+     * Creates a new output cache.
+     * 
+     * @param tolerance
+     *        The largest change in value that still counts as the same command
+     * @param keepAlive
+     *        The longest time between sends of the same command, in seconds
+     * 
+     * @exception IllegalArgumentException if {@code tolerance} is negative or {@code keepAlive} is not positive
+     */
+    public OutputCache(double tolerance, double keepAlive) {
+        this(tolerance, keepAlive, Clock.SYSTEM);
+    }
+
+    /**
+     * Creates a new output cache.
+     * 
+     * @param tolerance
+     *        The largest change in value that still counts as the same command
+     * @param keepAlive
+     *        The longest time between sends of the same command, in seconds
+     * @param clock
+     *        The clock the keep-alive is timed with
+     * 
+     * @exception IllegalArgumentException if {@code tolerance} is negative or {@code keepAlive} is not positive
+     */
+    public OutputCache(double tolerance, double keepAlive, Clock clock) {
+        this.clock = clock;
+        if (!setTolerance(tolerance)) {
+            throw new IllegalArgumentException("Illegal tolerance value: " + tolerance + "\nValue cannot be negative");
+        }
+        if (!setKeepAlive(keepAlive)) {
+            throw new IllegalArgumentException("Illegal keepAlive value: " + keepAlive + "\nValue must be positive");
+        }
+    }
+
+    /**
+     * Sets the largest change in value that still counts as the same command.
+     * 
+     * @param tolerance
+     *        The tolerance
+     * @return
+     *        {@code false} if the tolerance is negative
+     */
+    public boolean setTolerance(double tolerance) {
+        if (tolerance < 0) {
+            return false;
+        }
+        this.tolerance = tolerance;
+        return true;
+    }
+
+    /**
+     * Sets the longest time between sends of the same command.
+     * 
+     * @param keepAlive
+     *        The keep-alive interval, in seconds
+     * @return
+     *        {@code false} if the interval is not positive
+     */
+    public boolean setKeepAlive(double keepAlive) {
+        if (keepAlive <= 0) {
+            return false;
+        }
+        this.keepAlive = keepAlive;
+        return true;
+    }
+
+    /** Returns the largest change in value that still counts as the same command. */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /** Returns the longest time between sends of the same command, in seconds. */
+    public double getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Returns {@code true} if a command should be sent, and records it as sent if so.
+     * 
+     * @param mode
+     *        The control mode of the command
+     * @param value
+     *        The value of the command
+     */
+    public synchronized boolean shouldSend(Object mode, double value) {
+        double now = clock.getTime();
+        if (mode == lastMode && Math.abs(value - lastValue) <= tolerance && now - lastSent < keepAlive) {
+            suppressed++;
+            return false;
+        }
+
+        lastMode = mode;
+        lastValue = value;
+        lastSent = now;
+        sent++;
+        return true;
+    }
+
+    /** Forgets the last command, so the next command is always sent. */
+    public synchronized void invalidate() {
+        lastMode = null;
+    }
+
+    /** Returns the number of commands sent. */
+    public synchronized long getSentCount() {
+        return sent;
+    }
+
+    /** Returns the number of commands skipped because they matched the last command. */
+    public synchronized long getSuppressedCount() {
+        return suppressed;
+    }
+
+    /** Resets the sent and suppressed counts to 0. */
+    public synchronized void resetCounts() {
+        sent = 0;
+        suppressed = 0;
+    }
+}
@@ -0,0 +1,366 @@
+package org.team217.can;
+
+import java.lang.invoke.VarHandle;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Reads the sensors of every registered motor controller once per cycle into primitive arrays, so the
+ * wrapper getters can be called any number of times without going through JNI and CAN again.
+ * The frame is double-buffered: {@link #refresh()} fills the back buffer and then publishes it, so it
+ * can run on a background thread while the main loop reads.
+ * Each device registers the values it needs, and only those are read per refresh; getters for the other
+ * values read from the device.
+ * 
+ * @author ThunderChickens 217
+ */
+public class SensorFrame implements AutoCloseable {
+    /** The raw position of the selected sensor. */
+    public static final int POSITION = 1;
+    /** The raw velocity of the selected sensor. */
+    public static final int VELOCITY = 1 << 1;
+    /** The raw analog input. */
+    public static final int ANALOG = 1 << 2;
+    /** The forward limit switch. */
+    public static final int LIMIT_FWD = 1 << 3;
+    /** The reverse limit switch. */
+    public static final int LIMIT_REV = 1 << 4;
+    /** Every value the frame can read. */
+    public static final int ALL = POSITION | VELOCITY | ANALOG | LIMIT_FWD | LIMIT_REV;
+
+    /**
+     * One copy of the sensor values of every device.
+     * 
+     * @author ThunderChickens 217
+     */
+    private static class Buffer {
+        /** Odd while the buffer is being written, so readers know to retry. */
+        volatile long version = 0;
+        double timestamp = -1;
+        final double[] position, velocity;
+        final int[] analogRaw;
+        final boolean[] limitFwd, limitRev;
+
+        Buffer(int capacity) {
+            position = new double[capacity];
+            velocity = new double[capacity];
+            analogRaw = new int[capacity];
+            limitFwd = new boolean[capacity];
+            limitRev = new boolean[capacity];
+        }
+    }
+
+    private final FrameDevice[] devices;
+    private final int[] fields;
+    private volatile int deviceCount = 0;
+
+    private volatile Buffer front;
+    private Buffer back;
+
+    private Notifier notifier;
+
+    /**
+     * Creates a new sensor frame.
+     * 
+     * @param capacity
+     *        The maximum number of devices
+     * 
+     * @exception IllegalArgumentException if {@code capacity} is not positive
+     */
+    public SensorFrame(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity value: " + capacity + "\nValue must be positive");
+        }
+        devices = new FrameDevice[capacity];
+        fields = new int[capacity];
+        front = new Buffer(capacity);
+        back = new Buffer(capacity);
+    }
+
+    /**
+     * Adds a device to the frame that reads its position and velocity, reads it once, and makes its getters
+     * read from the frame.
+     * 
+     * @param device
+     *        The device to add
+     * @return
+     *        The device's slot in the frame
+     * 
+     * @exception IllegalStateException if the frame is full
+     */
+    public int register(FrameDevice device) {
+        return register(device, POSITION | VELOCITY);
+    }
+
+    /**
+     * Adds a device to the frame, reads it once, and makes its getters read from the frame.
+     * 
+     * @param device
+     *        The device to add
+     * @param fields
+     *        The values to read each refresh, such as {@code POSITION | LIMIT_FWD}; the other values are read
+     *        from the device when asked for
+     * @return
+     *        The device's slot in the frame
+     * 
+     * @exception IllegalArgumentException if {@code fields} is empty or has unknown values
+     * @exception IllegalStateException if the frame is full
+     */
+    public synchronized int register(FrameDevice device, int fields) {
+        if (fields == 0 || (fields & ~ALL) != 0) {
+            throw new IllegalArgumentException("Illegal fields value: " + fields + "\nValue must be a combination of the SensorFrame field constants");
+        }
+        int slot = deviceCount;
+        if (slot >= devices.length) {
+            throw new IllegalStateException("Sensor frame is full: " + devices.length + " devices");
+        }
+        devices[slot] = device;
+        this.fields[slot] = fields;
+
+        // fill the slot in both buffers so the getters never see an empty slot
+        Buffer published = front;
+        published.version++;
+        VarHandle.storeStoreFence();
+        read(device, fields, slot, published);
+        published.version++;
+        read(device, fields, slot, back);
+
+        deviceCount = slot + 1;
+        device.attach(this, slot);
+        return slot;
+    }
+
+    /**
+     * Returns the values read for a device each refresh.
+     * 
+     * @param slot
+     *        The device's slot
+     */
+    public int getFields(int slot) {
+        return fields[slot];
+    }
+
+    /** Returns the number of registered devices. */
+    public int size() {
+        return deviceCount;
+    }
+
+    /**
+     * Reads every registered device into the back buffer and publishes it.
+     */
+    public synchronized void refresh() {
+        Buffer buffer = back;
+        buffer.version++;
+        VarHandle.storeStoreFence(); // keep the writes below after the odd version
+
+        int count = deviceCount;
+        for (int slot = 0; slot < count; slot++) {
+            read(devices[slot], fields[slot], slot, buffer);
+        }
+        buffer.timestamp = Timer.getFPGATimestamp();
+
+        buffer.version++;
+        back = front;
+        front = buffer;
+    }
+
+    /**
+     * Reads the registered values of one device into a buffer.
+     * 
+     * @param device
+     *        The device to read
+     * @param fields
+     *        The values to read
+     * @param slot
+     *        The device's slot
+     * @param buffer
+     *        The buffer to write to
+     */
+    private static void read(FrameDevice device, int fields, int slot, Buffer buffer) {
+        if ((fields & POSITION) != 0) {
+            buffer.position[slot] = device.readPosition();
+        }
+        if ((fields & VELOCITY) != 0) {
+            buffer.velocity[slot] = device.readVelocity();
+        }
+        if ((fields & ANALOG) != 0) {
+            buffer.analogRaw[slot] = device.readAnalogRaw();
+        }
+        if ((fields & LIMIT_FWD) != 0) {
+            buffer.limitFwd[slot] = device.readLimitFwd();
+        }
+        if ((fields & LIMIT_REV) != 0) {
+            buffer.limitRev[slot] = device.readLimitRev();
+        }
+    }
+
+    /**
+     * Starts refreshing the frame in the background. Do not also call {@link #refresh()} from the main loop.
+     * 
+     * @param period
+     *        The time between refreshes, in seconds
+     * @return
+     *        {@code false} if the period is not positive
+     */
+    public synchronized boolean start(double period) {
+        if (period <= 0) {
+            return false;
+        }
+        if (notifier == null) {
+            notifier = new Notifier(this::refresh);
+        }
+        notifier.startPeriodic(period);
+        return true;
+    }
+
+    /** Stops refreshing the frame in the background. */
+    public synchronized void stop() {
+        if (notifier != null) {
+            notifier.stop();
+        }
+    }
+
+    /** Stops refreshing and makes every device's getters read from the device again. */
+    @Override
+    public void close() {
+        Notifier closing;
+        synchronized (this) {
+            closing = notifier;
+            notifier = null;
+        }
+        // closing the notifier waits for its thread, which may be waiting on this lock in refresh()
+        if (closing != null) {
+            closing.close();
+        }
+        synchronized (this) {
+            for (int slot = 0; slot < deviceCount; slot++) {
+                devices[slot].attach(null, slot);
+            }
+        }
+    }
+
+    /** Returns the FPGA time of the last refresh, in seconds, or a negative number if the frame has not been refreshed. */
+    public double getTimestamp() {
+        while (true) {
+            Buffer buffer = front;
+            long version = buffer.version;
+            double value = buffer.timestamp;
+            if (isValid(buffer, version)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the raw position of a device's selected sensor, from the device if the frame does not read it.
+     * 
+     * @param slot
+     *        The device's slot
+     */
+    public double getPosition(int slot) {
+        if ((fields[slot] & POSITION) == 0) {
+            return devices[slot].readPosition();
+        }
+        while (true) {
+            Buffer buffer = front;
+            long version = buffer.version;
+            double value = buffer.position[slot];
+            if (isValid(buffer, version)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the raw velocity of a device's selected sensor, from the device if the frame does not read it.
+     * 
+     * @param slot
+     *        The device's slot
+     */
+    public double getVelocity(int slot) {
+        if ((fields[slot] & VELOCITY) == 0) {
+            return devices[slot].readVelocity();
+        }
+        while (true) {
+            Buffer buffer = front;
+            long version = buffer.version;
+            double value = buffer.velocity[slot];
+            if (isValid(buffer, version)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the raw analog input of a device, from the device if the frame does not read it.
+     * 
+     * @param slot
+     *        The device's slot
+     */
+    public int getAnalogRaw(int slot) {
+        if ((fields[slot] & ANALOG) == 0) {
+            return devices[slot].readAnalogRaw();
+        }
+        while (true) {
+            Buffer buffer = front;
+            long version = buffer.version;
+            int value = buffer.analogRaw[slot];
+            if (isValid(buffer, version)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the forward limit switch of a device, from the device if the frame does not read it.
+     * 
+     * @param slot
+     *        The device's slot
+     */
+    public boolean getLimitFwd(int slot) {
+        if ((fields[slot] & LIMIT_FWD) == 0) {
+            return devices[slot].readLimitFwd();
+        }
+        while (true) {
+            Buffer buffer = front;
+            long version = buffer.version;
+            boolean value = buffer.limitFwd[slot];
+            if (isValid(buffer, version)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the reverse limit switch of a device, from the device if the frame does not read it.
+     * 
+     * @param slot
+     *        The device's slot
+     */
+    public boolean getLimitRev(int slot) {
+        if ((fields[slot] & LIMIT_REV) == 0) {
+            return devices[slot].readLimitRev();
+        }
+        while (true) {
+            Buffer buffer = front;
+            long version = buffer.version;
+            boolean value = buffer.limitRev[slot];
+            if (isValid(buffer, version)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if a value read from a buffer was not torn by a refresh.
+     * 
+     * @param buffer
+     *        The buffer that was read
+     * @param version
+     *        The buffer's version before the read
+     */
+    private static boolean isValid(Buffer buffer, long version) {
+        VarHandle.acquireFence(); // keep the read before the check below
+        return (version & 1) == 0 && buffer.version == version;
+    }
+}
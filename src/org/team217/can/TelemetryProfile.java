@@ -0,0 +1,190 @@
+package org.team217.can;
+
+/**
+ * A named set of status frame periods for a motor controller.
+ * The vendor defaults stream frames that are rarely read, so choosing a profile frees CAN bandwidth for
+ * the frames that are. Each period covers a group of frames; a wrapper sets every frame in a group that
+ * its controller has.
+ * <ul>
+ * <li><b>General:</b> output, faults, and limit switches (CTRE Status 1, REV Status 0). Followers read
+ * their leader's general frame, so a leader should keep it fast.</li>
+ * <li><b>Feedback:</b> selected sensor position and velocity (CTRE Status 2, REV Status 1 and 2)</li>
+ * <li><b>Sensor:</b> raw sensor inputs such as the quadrature and pulse width inputs, the integrated sensor,
+ * and the second PID loop's sensor, along with temperature and voltage (CTRE Status 3, 8, 12, 21, current,
+ * and Status 4 on a Talon FX)</li>
+ * <li><b>Analog:</b> the analog input, such as a swerve steering encoder, which shares its frame with the
+ * temperature and battery voltage (CTRE Status 4 on a Talon SRX). A controller whose analog input is read
+ * every loop should keep it fast.</li>
+ * <li><b>Control:</b> closed-loop errors and PIDF state (CTRE Status 13 and 14)</li>
+ * <li><b>Profile:</b> closed-loop targets and the motion profile buffer status (CTRE Status 10). A
+ * {@code ProfileStreamer} reads the buffer status every cycle, so this must stay fast while streaming.</li>
+ * </ul>
+ * 
+ * @author ThunderChickens 217
+ */
+public class TelemetryProfile {
+    /** The longest period every vendor accepts, in milliseconds. */
+    public static final int MAX_PERIOD = 255;
+
+    /** Only what a match needs: fast general, feedback, analog, and profile frames, everything else as slow as possible. */
+    public static final TelemetryProfile COMPETITION_MINIMAL = new TelemetryProfile("competition-minimal", 10, 20, MAX_PERIOD, MAX_PERIOD, 10, 20);
+    /** Everything fast, for tuning and graphing closed loops. */
+    public static final TelemetryProfile TUNING = new TelemetryProfile("tuning", 10, 10, 20, 20, 10, 20);
+    /**
+     * For a controller that follows another and is never read; every frame as slow as possible.
+     * This starves the motion profile buffer status, so it can't be used on a controller running a motion profile.
+     */
+    public static final TelemetryProfile FOLLOWER = new TelemetryProfile("follower", 100, MAX_PERIOD, MAX_PERIOD, MAX_PERIOD, MAX_PERIOD, MAX_PERIOD);
+    /** Close to the vendor defaults, but with the profile frame fast enough for motion profiling. */
+    public static final TelemetryProfile DEFAULT = new TelemetryProfile("default", 10, 20, 160, 160, 10, 160);
+
+    private static final TelemetryProfile[] profiles = {COMPETITION_MINIMAL, TUNING, FOLLOWER, DEFAULT};
+
+    private final String name;
+    private final int general, feedback, sensor, control, profile, analog;
+
+    /**
+     * Creates a new telemetry profile with the profile frame at the same period as the control frames,
+     * and the analog frame at the same period as the sensor frames.
+     * 
+     * @param name
+     *        The name of the profile
+     * @param general
+     *        The period of the general frames, in milliseconds
+     * @param feedback
+     *        The period of the feedback frames, in milliseconds
+     * @param sensor
+     *        The period of the sensor frames, in milliseconds
+     * @param control
+     *        The period of the control and profile frames, in milliseconds
+     * 
+     * @exception IllegalArgumentException if a period is not from 1 to {@link #MAX_PERIOD}
+     */
+    public TelemetryProfile(String name, int general, int feedback, int sensor, int control) {
+        this(name, general, feedback, sensor, control, control);
+    }
+
+    /**
+     * Creates a new telemetry profile with the analog frame at the same period as the sensor frames.
+     * 
+     * @param name
+     *        The name of the profile
+     * @param general
+     *        The period of the general frames, in milliseconds
+     * @param feedback
+     *        The period of the feedback frames, in milliseconds
+     * @param sensor
+     *        The period of the sensor and analog frames, in milliseconds
+     * @param control
+     *        The period of the control frames, in milliseconds
+     * @param profile
+     *        The period of the profile frame, in milliseconds; at most the point period when streaming a motion profile
+     * 
+     * @exception IllegalArgumentException if a period is not from 1 to {@link #MAX_PERIOD}
+     */
+    public TelemetryProfile(String name, int general, int feedback, int sensor, int control, int profile) {
+        this(name, general, feedback, sensor, control, profile, sensor);
+    }
+
+    /**
+     * Creates a new telemetry profile.
+     * 
+     * @param name
+     *        The name of the profile
+     * @param general
+     *        The period of the general frames, in milliseconds
+     * @param feedback
+     *        The period of the feedback frames, in milliseconds
+     * @param sensor
+     *        The period of the sensor frames, in milliseconds
+     * @param control
+     *        The period of the control frames, in milliseconds
+     * @param profile
+     *        The period of the profile frame, in milliseconds; at most the point period when streaming a motion profile
+     * @param analog
+     *        The period of the analog frame, in milliseconds
+     * 
+     * @exception IllegalArgumentException if a period is not from 1 to {@link #MAX_PERIOD}
+     */
+    public TelemetryProfile(String name, int general, int feedback, int sensor, int control, int profile, int analog) {
+        this.name = name;
+        this.general = checkPeriod("general", general);
+        this.feedback = checkPeriod("feedback", feedback);
+        this.sensor = checkPeriod("sensor", sensor);
+        this.control = checkPeriod("control", control);
+        this.profile = checkPeriod("profile", profile);
+        this.analog = checkPeriod("analog", analog);
+    }
+
+    /**
+     * Returns the period if it is valid.
+     * 
+     * @param group
+     *        The name of the frame group
+     * @param period
+     *        The period, in milliseconds
+     * 
+     * @exception IllegalArgumentException if the period is not from 1 to {@link #MAX_PERIOD}
+     */
+    private static int checkPeriod(String group, int period) {
+        if (period < 1 || period > MAX_PERIOD) {
+            throw new IllegalArgumentException("Illegal " + group + " period value: " + period + "\nValue must be from 1 to " + MAX_PERIOD);
+        }
+        return period;
+    }
+
+    /**
+     * Returns the built-in profile with the given name, such as {@code "competition-minimal"}, or {@code null} if there is none.
+     * 
+     * @param name
+     *        The name of the profile
+     */
+    public static TelemetryProfile forName(String name) {
+        for (TelemetryProfile profile : profiles) {
+            if (profile.name.equals(name)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the name of the profile. */
+    public String getName() {
+        return name;
+    }
+
+    /** Returns the period of the general frames, in milliseconds. */
+    public int getGeneralPeriod() {
+        return general;
+    }
+
+    /** Returns the period of the feedback frames, in milliseconds. */
+    public int getFeedbackPeriod() {
+        return feedback;
+    }
+
+    /** Returns the period of the sensor frames, in milliseconds. */
+    public int getSensorPeriod() {
+        return sensor;
+    }
+
+    /** Returns the period of the control frames, in milliseconds. */
+    public int getControlPeriod() {
+        return control;
+    }
+
+    /** Returns the period of the profile frame, in milliseconds. */
+    public int getProfilePeriod() {
+        return profile;
+    }
+
+    /** Returns the period of the analog frame, in milliseconds. */
+    public int getAnalogPeriod() {
+        return analog;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
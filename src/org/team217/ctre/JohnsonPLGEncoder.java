@@ -1,20 +1,60 @@
 package org.team217.ctre;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import edu.wpi.first.hal.util.AllocationException;
 import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.InterruptHandlerFunction;
+import edu.wpi.first.wpilibj.RobotController;
 
 /**
  * Creates a class to manage pulses of the Johnson Electric PLG Hall Effect Sensors as a relative quadrature encoder.
  * 
  * @author ThunderChickens 217
  */
-public class JohnsonPLGEncoder {
+public class JohnsonPLGEncoder implements AutoCloseable {
+    /**
+     * How the encoder watches the Hall Effect Sensors for pulses.
+     * 
+     * @author ThunderChickens 217
+     */
+    public enum UpdateMode {
+        /** Each sensor edge fires a DIO interrupt that updates the encoder. */
+        Interrupt,
+        /** A single sampler thread shared by all sampled encoders polls the sensors. */
+        Sampled
+    }
+
+    /** The default number of edges kept for velocity estimation. */
+    public static final int DEFAULT_EDGE_CAPACITY = 64;
+
+    /** Marks an edge that has no hardware timestamp, so the FPGA time is read when it is recorded. */
+    private static final long NO_TIMESTAMP = -1;
+    /** The interrupt mask bits set by a rising and a falling edge. */
+    private static final int RISING_MASK = 0x1, FALLING_MASK = 0x100;
+
     private final DigitalInput hallSensor1, hallSensor2;
-    
+    private final UpdateMode mode;
+
+    /** Guards the last sensor states and the edge buffer, since interrupts on the two sensors can fire on different threads. */
+    private final Object lock = new Object();
     private boolean isLast1, isLast2;
-    private volatile int encoder = 0;
+    private final AtomicInteger encoder = new AtomicInteger();
+
+    /** The FPGA timestamps of the most recent edges, in microseconds, as a ring buffer. */
+    private final long[] edgeTimes;
+    /** The encoder value after each of the most recent edges. */
+    private final int[] edgeCounts;
+    /** The index the next edge will be written to. */
+    private int edgeHead = 0;
+    /** The number of edges in the buffer. */
+    private int edgeSize = 0;
+    /** The number of times both sensors changed at once, so the direction could not be decoded. */
+    private long missedEdges = 0;
+    private int velocityWindow = 4;
 
     /**
      * Manages pulses of the Johnson Electric PLG Hall Effect Sensors as a relative quadrature encoder.
+     * DIO interrupts are used if available, otherwise the encoder falls back to the shared sampler thread.
      * 
      * @param hallChannel1
      *        The DIO channel for Hall Sensor 1 (yellow)
@@ -22,24 +62,142 @@ public class JohnsonPLGEncoder {
      *        The DIO channel for Hall Sensor 2 (green)
      */
     public JohnsonPLGEncoder(int hallChannel1, int hallChannel2) {
+        this(hallChannel1, hallChannel2, UpdateMode.Interrupt);
+    }
+
+    /**
+     * Manages pulses of the Johnson Electric PLG Hall Effect Sensors as a relative quadrature encoder.
+     * 
+     * @param hallChannel1
+     *        The DIO channel for Hall Sensor 1 (yellow)
+     * @param hallChannel2
+     *        The DIO channel for Hall Sensor 2 (green)
+     * @param mode
+     *        How the encoder watches the sensors; if there are not enough DIO interrupts left
+     *        for {@link UpdateMode#Interrupt}, {@link UpdateMode#Sampled} is used instead
+     */
+    public JohnsonPLGEncoder(int hallChannel1, int hallChannel2, UpdateMode mode) {
+        this(hallChannel1, hallChannel2, mode, DEFAULT_EDGE_CAPACITY);
+    }
+
+    /**
+     * Manages pulses of the Johnson Electric PLG Hall Effect Sensors as a relative quadrature encoder.
+     * 
+     * @param hallChannel1
+     *        The DIO channel for Hall Sensor 1 (yellow)
+     * @param hallChannel2
+     *        The DIO channel for Hall Sensor 2 (green)
+     * @param mode
+     *        How the encoder watches the sensors; if there are not enough DIO interrupts left
+     *        for {@link UpdateMode#Interrupt}, {@link UpdateMode#Sampled} is used instead
+     * @param edgeCapacity
+     *        The number of timestamped edges to keep for velocity estimation
+     * 
+     * @exception IllegalArgumentException if {@code edgeCapacity} is less than 2
+     */
+    public JohnsonPLGEncoder(int hallChannel1, int hallChannel2, UpdateMode mode, int edgeCapacity) {
+        if (edgeCapacity < 2) {
+            throw new IllegalArgumentException("Illegal edgeCapacity value: " + edgeCapacity + "\nValue must be at least 2");
+        }
+        edgeTimes = new long[edgeCapacity];
+        edgeCounts = new int[edgeCapacity];
+
         hallSensor1 = new DigitalInput(hallChannel1);
         hallSensor2 = new DigitalInput(hallChannel2);
 
         isLast1 = getSensor1Raw();
         isLast2 = getSensor2Raw();
-        
+
         // We need to update this faster than the robot code will run, either
-        // use a loop in a separate thread (below) or interrupts
-        Thread update = new Thread() {
-            public void run() {
-                while (true) {
-                    Thread.onSpinWait(); // makes this thread lower priority
-                    update();
-                }
+        // use interrupts on every edge or the shared sampler thread
+        if (mode == UpdateMode.Interrupt && requestInterrupts()) {
+            this.mode = UpdateMode.Interrupt;
+        }
+        else {
+            this.mode = UpdateMode.Sampled;
+            PLGSampler.register(this);
+        }
+    }
+
+    /**
+     * Sets up both sensors to update the encoder on their rising and falling edges.
+     * 
+     * @return
+     *        {@code false} if the interrupts could not be allocated
+     */
+    private boolean requestInterrupts() {
+        try {
+            hallSensor1.requestInterrupts(new EdgeHandler(hallSensor1));
+        }
+        catch (AllocationException e) {
+            return false;
+        }
+        try {
+            hallSensor2.requestInterrupts(new EdgeHandler(hallSensor2));
+        }
+        catch (AllocationException e) {
+            hallSensor1.cancelInterrupts();
+            return false;
+        }
+
+        hallSensor1.setUpSourceEdge(true, true);
+        hallSensor2.setUpSourceEdge(true, true);
+        hallSensor1.enableInterrupts();
+        hallSensor2.enableInterrupts();
+        return true;
+    }
+
+    /**
+     * Updates the encoder on an interrupt, using the FPGA's timestamp of the edge.
+     * 
+     * @author ThunderChickens 217
+     */
+    private class EdgeHandler extends InterruptHandlerFunction<Object> {
+        private final DigitalInput sensor;
+
+        /**
+         * Creates a new edge handler.
+         * 
+         * @param sensor
+         *        The sensor whose interrupt this handles
+         */
+        EdgeHandler(DigitalInput sensor) {
+            this.sensor = sensor;
+        }
+
+        @Override
+        public void interruptFired(int interruptAssertedMask, Object param) {
+            double timestamp = 0;
+            if ((interruptAssertedMask & RISING_MASK) != 0) {
+                timestamp = sensor.readRisingTimestamp();
+            }
+            if ((interruptAssertedMask & FALLING_MASK) != 0) {
+                timestamp = Math.max(timestamp, sensor.readFallingTimestamp());
             }
-        };
-        update.setDaemon(true);
-        update.start();
+            update(timestamp > 0 ? (long)(timestamp * 1e6) : NO_TIMESTAMP);
+        }
+    }
+
+    /**
+     * Sets the pause between passes of the shared sampler thread over all sampled encoders.
+     * 
+     * @param periodNanos
+     *        The pause in nanoseconds; 0 spins without sleeping, which uses a whole core
+     * @return
+     *        {@code false} if the period is negative
+     */
+    public static boolean setSamplerPeriod(long periodNanos) {
+        return PLGSampler.setPeriod(periodNanos);
+    }
+
+    /** Returns the pause between passes of the shared sampler thread, in nanoseconds. */
+    public static long getSamplerPeriod() {
+        return PLGSampler.getPeriod();
+    }
+
+    /** Returns how the encoder is watching the sensors. */
+    public UpdateMode getMode() {
+        return mode;
     }
 
     /** Returns the raw value of Hall Effect Sensor 1. */
@@ -52,9 +210,17 @@ public class JohnsonPLGEncoder {
         return hallSensor2.get();
     }
 
+    /**
+     * Checks the sensors for an edge now instead of waiting for an interrupt or the sampler.
+     * This lets a simulation that drives the sensors faster than real time count every edge.
+     */
+    public void poll() {
+        update(NO_TIMESTAMP);
+    }
+
     /** Returns the calculated value of the encoder. */
     public int get() {
-        return encoder;
+        return encoder.get();
     }
 
     /**
@@ -64,50 +230,278 @@ public class JohnsonPLGEncoder {
      *        The new encoder value
      */
     public void set(int position) {
-        encoder = position;
+        synchronized (lock) {
+            // shift the stored edges too so the jump doesn't look like motion
+            int shift = position - encoder.getAndSet(position);
+            for (int i = 0; i < edgeCounts.length; i++) {
+                edgeCounts[i] += shift;
+            }
+        }
     }
 
     /**
-     * Updates the value of the encoder based on the pulses.
-     * This should be called continuously.
-     */
-    private void update() {
-        boolean isSame1 = isLast1 == getSensor1Raw();
-        boolean isSame2 = isLast2 == getSensor2Raw();
-        
-        // check if one sensor has changed (can't do anything if both change)
-        if (isSame1 != isSame2) {
-            // First sensor (fwd):   |‾|_|‾|_
-            // Second sensor (fwd):  _|‾|_|‾|
-            if (isSame1) {
-                // first sensor went unchanged, check where the second sensor went
-                if (getSensor1Raw() == getSensor2Raw()) {
-                    // second sensor moved towards the first (such as from low
-                    // to high while first is high), going forward, increment
-                    encoder++;
-                }
-                else {
-                    // second sensor moved away from the first (such as from high
-                    // to low while first is high), going backward, decrement
-                    encoder--;
-                }
+     * Returns the velocity from the period between the last two edges, in ticks/second.
+     * This reacts fastest, but is the noisiest estimate.
+     */
+    public double getPeriodVelocity() {
+        return getVelocity(1);
+    }
+
+    /** Returns the velocity over the velocity window, in ticks/second. */
+    public double getVelocity() {
+        return getVelocity(velocityWindow);
+    }
+
+    /**
+     * Returns the velocity from the finite difference over the last few edges, in ticks/second.
+     * Larger windows are smoother but lag more. If no edge has arrived for longer than the
+     * measured period, the estimate decays towards 0 so a stopped mechanism reads 0.
+     * 
+     * @param edges
+     *        The number of edge periods to average over, limited by the edges recorded so far
+     * 
+     * @exception IllegalArgumentException if {@code edges} is not positive
+     */
+    public double getVelocity(int edges) {
+        if (edges <= 0) {
+            throw new IllegalArgumentException("Illegal edges value: " + edges + "\nValue must be positive");
+        }
+        long now = RobotController.getFPGATime();
+
+        synchronized (lock) {
+            if (edgeSize < 2) {
+                return 0;
             }
-            else if (isSame2) {
-                // second sensor went unchanged, check where the first sensor went
-                if (getSensor1Raw() == getSensor2Raw()) {
-                    // first sensor moved towards the second (such as from high
-                    // to low while second is low), going backward, decrement
-                    encoder--;
-                }
-                else {
-                    // first sensor moved away from the second (such as from low
-                    // to high while second is low), going forward, increment
-                    encoder++;
+            edges = Math.min(edges, edgeSize - 1);
+
+            int newest = edgeIndex(0);
+            int oldest = edgeIndex(edges);
+            long dt = edgeTimes[newest] - edgeTimes[oldest];
+            if (dt <= 0) {
+                return 0;
+            }
+            double velocity = (edgeCounts[newest] - edgeCounts[oldest]) * 1e6 / dt;
+
+            // we can't be going faster than one edge in the time since the last edge
+            long sinceLast = now - edgeTimes[newest];
+            if (sinceLast > 0) {
+                double maxSpeed = 1e6 / sinceLast;
+                if (Math.abs(velocity) > maxSpeed) {
+                    velocity = Math.signum(velocity) * maxSpeed;
                 }
             }
+            return velocity;
         }
+    }
 
-        isLast1 = getSensor1Raw();
-        isLast2 = getSensor2Raw();
+    /**
+     * Sets the number of edge periods {@link #getVelocity()} averages over.
+     * 
+     * @param edges
+     *        The number of edge periods
+     * @return
+     *        {@code false} if {@code edges} is not positive or does not fit in the edge buffer
+     */
+    public boolean setVelocityWindow(int edges) {
+        if (edges <= 0 || edges >= edgeTimes.length) {
+            return false;
+        }
+        velocityWindow = edges;
+        return true;
+    }
+
+    /** Returns the number of edge periods {@link #getVelocity()} averages over. */
+    public int getVelocityWindow() {
+        return velocityWindow;
+    }
+
+    /** Returns the number of edges kept for velocity estimation. */
+    public int getEdgeCapacity() {
+        return edgeTimes.length;
+    }
+
+    /**
+     * Returns the number of times both sensors changed between updates, so the direction could not
+     * be decoded and the pulse was dropped. A growing count means the encoder is not updated often enough.
+     */
+    public long getMissedEdges() {
+        synchronized (lock) {
+            return missedEdges;
+        }
+    }
+
+    /** Resets the count of dropped pulses to 0. */
+    public void resetMissedEdges() {
+        synchronized (lock) {
+            missedEdges = 0;
+        }
+    }
+
+    /** Stops updating the encoder and frees the DIO channels. */
+    @Override
+    public void close() {
+        if (mode == UpdateMode.Sampled) {
+            PLGSampler.unregister(this);
+        }
+        hallSensor1.close();
+        hallSensor2.close();
+    }
+
+    /**
+     * Updates the value of the encoder based on the pulses.
+     * This is called on every sensor edge or by the shared sampler thread.
+     */
+    void update() {
+        update(NO_TIMESTAMP);
+    }
+
+    /**
+     * Updates the value of the encoder based on the pulses.
+     * 
+     * @param timestamp
+     *        The FPGA time of the edge, in microseconds, or {@code NO_TIMESTAMP} to read the current time if an edge is found
+     */
+    private void update(long timestamp) {
+        synchronized (lock) {
+            // read the sensors while holding the lock, since the interrupts of the two sensors run on
+            // different threads and an older reading must not be compared to a newer last state
+            boolean is1 = getSensor1Raw();
+            boolean is2 = getSensor2Raw();
+            boolean isSame1 = isLast1 == is1;
+            boolean isSame2 = isLast2 == is2;
+
+            if (isSame1 && isSame2) {
+                // no edge, nothing to record
+                return;
+            }
+
+            // check if one sensor has changed
+            if (isSame1 != isSame2) {
+                countEdge(isSame1, is1, is2);
+                recordEdge(timestamp == NO_TIMESTAMP ? RobotController.getFPGATime() : timestamp);
+            }
+            else if (!countBothEdges(is1, is2)) {
+                // both changed and we can't tell which was first, we missed a pulse somewhere
+                missedEdges++;
+            }
+
+            isLast1 = is1;
+            isLast2 = is2;
+        }
+    }
+
+    /**
+     * Counts an edge of one sensor. Must be called while holding the lock.
+     * 
+     * @param isSame1
+     *        {@code true} if the second sensor changed, {@code false} if the first sensor changed
+     * @param is1
+     *        The state of the first sensor after the edge
+     * @param is2
+     *        The state of the second sensor after the edge
+     */
+    private void countEdge(boolean isSame1, boolean is1, boolean is2) {
+        // First sensor (fwd):   |‾|_|‾|_
+        // Second sensor (fwd):  _|‾|_|‾|
+        if (isSame1) {
+            // first sensor went unchanged, check where the second sensor went
+            if (is1 == is2) {
+                // second sensor moved towards the first (such as from low
+                // to high while first is high), going forward, increment
+                encoder.incrementAndGet();
+            }
+            else {
+                // second sensor moved away from the first (such as from high
+                // to low while first is high), going backward, decrement
+                encoder.decrementAndGet();
+            }
+        }
+        else {
+            // second sensor went unchanged, check where the first sensor went
+            if (is1 == is2) {
+                // first sensor moved towards the second (such as from high
+                // to low while second is low), going backward, decrement
+                encoder.decrementAndGet();
+            }
+            else {
+                // first sensor moved away from the second (such as from low
+                // to high while second is low), going forward, increment
+                encoder.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Counts the edges of both sensors when both changed since the last update, in the order of the
+     * interrupt timestamps of the edges. This happens when two edges arrive before either interrupt is handled.
+     * Must be called while holding the lock.
+     * 
+     * @param is1
+     *        The state of the first sensor after its edge
+     * @param is2
+     *        The state of the second sensor after its edge
+     * @return
+     *        {@code false} if the order of the edges is unknown, since the encoder is sampled or the edges have the same timestamp
+     */
+    private boolean countBothEdges(boolean is1, boolean is2) {
+        if (mode != UpdateMode.Interrupt) {
+            return false;
+        }
+        long time1 = edgeTimestamp(hallSensor1, is1);
+        long time2 = edgeTimestamp(hallSensor2, is2);
+        if (time1 <= 0 || time2 <= 0 || time1 == time2) {
+            return false;
+        }
+
+        if (time1 < time2) {
+            countEdge(false, is1, isLast2);
+            recordEdge(time1);
+            countEdge(true, is1, is2);
+            recordEdge(time2);
+        }
+        else {
+            countEdge(true, isLast1, is2);
+            recordEdge(time2);
+            countEdge(false, is1, is2);
+            recordEdge(time1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the interrupt timestamp of the last edge of a sensor, in microseconds.
+     * 
+     * @param sensor
+     *        The sensor
+     * @param isHigh
+     *        {@code true} for the last rising edge, {@code false} for the last falling edge
+     */
+    private static long edgeTimestamp(DigitalInput sensor, boolean isHigh) {
+        return (long)((isHigh ? sensor.readRisingTimestamp() : sensor.readFallingTimestamp()) * 1e6);
+    }
+
+    /**
+     * Adds the current encoder value to the edge buffer. Must be called while holding the lock.
+     * 
+     * @param timestamp
+     *        The FPGA time of the edge, in microseconds
+     */
+    private void recordEdge(long timestamp) {
+        edgeTimes[edgeHead] = timestamp;
+        edgeCounts[edgeHead] = encoder.get();
+        edgeHead = (edgeHead + 1) % edgeTimes.length;
+        if (edgeSize < edgeTimes.length) {
+            edgeSize++;
+        }
+    }
+
+    /**
+     * Returns the buffer index of an edge. Must be called while holding the lock.
+     * 
+     * @param age
+     *        The number of edges before the newest edge
+     */
+    private int edgeIndex(int age) {
+        return (edgeHead - 1 - age + 2 * edgeTimes.length) % edgeTimes.length;
     }
-}
\ No newline at end of file
+}
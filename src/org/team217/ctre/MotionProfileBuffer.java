@@ -0,0 +1,75 @@
+package org.team217.ctre;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.TrajectoryPoint;
+import com.ctre.phoenix.motorcontrol.ControlMode;
+
+/**
+ * The parts of a Talon's buffered motion profile executor that a {@link ProfileStreamer} uses.
+ * The wrapped Talons already have every method; a stand-in can implement this to run a streamer without hardware.
+ * 
+ * @author ThunderChickens 217
+ */
+public interface MotionProfileBuffer {
+    /**
+     * Adds a point to the top buffer on the roboRIO.
+     * 
+     * @param point
+     *        The point to add; it is copied, so it can be reused
+     */
+    ErrorCode pushMotionProfileTrajectory(TrajectoryPoint point);
+
+    /** Returns {@code true} if the top buffer on the roboRIO is full. */
+    boolean isMotionProfileTopLevelBufferFull();
+
+    /** Moves points from the top buffer on the roboRIO to the bottom buffer on the Talon. */
+    void processMotionProfileBuffer();
+
+    /**
+     * Reads the state of both buffers and the executor.
+     * 
+     * @param status
+     *        The status to fill
+     */
+    ErrorCode getMotionProfileStatus(MotionProfileStatus status);
+
+    /**
+     * Clears the underrun flag.
+     * 
+     * @param timeoutMs
+     *        The time to wait for the Talon to acknowledge, in milliseconds, or 0 to not wait
+     */
+    ErrorCode clearMotionProfileHasUnderrun(int timeoutMs);
+
+    /** Clears both buffers. */
+    ErrorCode clearMotionProfileTrajectories();
+
+    /**
+     * Sets the base duration added to every point's duration.
+     * 
+     * @param baseTrajDurationMs
+     *        The base duration, in milliseconds
+     * @param timeoutMs
+     *        The time to wait for the Talon to acknowledge, in milliseconds, or 0 to not wait
+     */
+    ErrorCode configMotionProfileTrajectoryPeriod(int baseTrajDurationMs, int timeoutMs);
+
+    /**
+     * Sets how often points are sent to the Talon while streaming.
+     * 
+     * @param periodMs
+     *        The period, in milliseconds
+     */
+    ErrorCode changeMotionControlFramePeriod(int periodMs);
+
+    /**
+     * Sets the control mode and output.
+     * 
+     * @param mode
+     *        The control mode
+     * @param value
+     *        The output; in {@code MotionProfile} mode, a {@code SetValueMotionProfile} value
+     */
+    void set(ControlMode mode, double value);
+}
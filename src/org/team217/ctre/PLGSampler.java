@@ -0,0 +1,103 @@
+package org.team217.ctre;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * A single daemon thread that polls every sampled {@code JohnsonPLGEncoder}, so
+ * adding encoders does not add busy threads.
+ * 
+ * @author ThunderChickens 217
+ */
+final class PLGSampler {
+    private static final CopyOnWriteArrayList<JohnsonPLGEncoder> encoders = new CopyOnWriteArrayList<>();
+    private static volatile long periodNanos = 100_000;
+    /** Held for each pass over the encoders, so an encoder can't be closed in the middle of being sampled. */
+    private static final Object passLock = new Object();
+    private static Thread thread;
+
+    private PLGSampler() {}
+
+    /**
+     * Adds an encoder to the sampler, starting the sampler thread if needed.
+     * 
+     * @param encoder
+     *        The encoder to sample
+     */
+    static synchronized void register(JohnsonPLGEncoder encoder) {
+        encoders.addIfAbsent(encoder);
+
+        if (thread == null) {
+            thread = new Thread(PLGSampler::run, "JohnsonPLGEncoder sampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Removes an encoder from the sampler, waiting for any pass in progress to finish so
+     * the encoder is not sampled after this returns.
+     * 
+     * @param encoder
+     *        The encoder to stop sampling
+     */
+    static void unregister(JohnsonPLGEncoder encoder) {
+        synchronized (passLock) {
+            encoders.remove(encoder);
+        }
+    }
+
+    /**
+     * Sets the pause between passes over the encoders.
+     * 
+     * @param periodNanos
+     *        The pause in nanoseconds; 0 spins without sleeping
+     * @return
+     *        {@code false} if the period is negative
+     */
+    static boolean setPeriod(long periodNanos) {
+        if (periodNanos < 0) {
+            return false;
+        }
+        PLGSampler.periodNanos = periodNanos;
+        return true;
+    }
+
+    /** Returns the pause between passes over the encoders, in nanoseconds. */
+    static long getPeriod() {
+        return periodNanos;
+    }
+
+    /**
+     * Polls the encoders forever. An encoder that throws is reported and stops being sampled,
+     * so one broken encoder can't stop the thread that every other sampled encoder relies on.
+     */
+    private static void run() {
+        while (true) {
+            synchronized (passLock) {
+                for (JohnsonPLGEncoder encoder : encoders) {
+                    try {
+                        encoder.update();
+                    }
+                    catch (RuntimeException e) {
+                        encoders.remove(encoder);
+                        DriverStation.reportError("JohnsonPLGEncoder sampling failed, no longer sampling it: " + e, e.getStackTrace());
+                    }
+                }
+            }
+
+            long period = periodNanos;
+            if (encoders.isEmpty()) {
+                // nothing to do, don't spin
+                LockSupport.parkNanos(Math.max(period, 20_000_000));
+            }
+            else if (period > 0) {
+                LockSupport.parkNanos(period);
+            }
+            else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.team217.ctre;
 
 import com.ctre.phoenix.ErrorCode;
+import edu.wpi.first.wpilibj.RobotController;
 import org.team217.*;
 
 /**
@@ -11,6 +12,17 @@ import org.team217.*;
 public class PigeonIMU extends com.ctre.phoenix.sensors.PigeonIMU {
     protected double pitchOffset = 0;
     protected double rollOffset = 0;
+
+    /** Guards the snapshot, so a refresh on another thread can't be read half written. */
+    private final Object snapshotLock = new Object();
+    /** The yaw, pitch, and roll from the last {@link #refresh()}, reused so reading does not allocate. */
+    private final double[] ypr = new double[3];
+    /** The FPGA time of the last {@link #refresh()}, in microseconds; negative if there is no valid snapshot. */
+    private long snapshotTime = -1;
+    /** The {@link System#nanoTime()} of the last {@link #refresh()}, so checking the age of the snapshot needs no JNI call. */
+    private long snapshotNanos;
+    private volatile boolean isAutoRefresh = true;
+    private volatile long maxSnapshotAge = 5_000_000;
     
     /**
      * Constructor for creating a {@code PigeonIMU} object.
@@ -22,11 +34,94 @@ public class PigeonIMU extends com.ctre.phoenix.sensors.PigeonIMU {
         super(deviceNumber);
     }
     
+    /**
+     * Reads the yaw, pitch, and roll once into the snapshot that the getters return from.
+     * Call this once per cycle, or leave auto-refresh enabled. It is safe to call from another thread than the getters.
+     * 
+     * @return
+     *        Error Code generated by function. 0 indicates no error
+     */
+    public ErrorCode refresh() {
+        synchronized (snapshotLock) {
+            ErrorCode error = getYawPitchRoll(ypr);
+            snapshotTime = RobotController.getFPGATime();
+            snapshotNanos = System.nanoTime();
+            return error;
+        }
+    }
+
+    /**
+     * Sets if the getters should refresh the snapshot themselves when it is older than the maximum snapshot age.
+     * 
+     * @param isAutoRefresh
+     *        {@code true} if the getters should refresh the snapshot; {@code false} if only {@link #refresh()} should
+     */
+    public void setAutoRefresh(boolean isAutoRefresh) {
+        this.isAutoRefresh = isAutoRefresh;
+    }
+
+    /** Returns {@code true} if the getters refresh the snapshot when it is older than the maximum snapshot age. */
+    public boolean isAutoRefresh() {
+        return isAutoRefresh;
+    }
+
+    /**
+     * Sets how old the snapshot can get before an auto-refreshing getter reads the {@code PigeonIMU} again.
+     * Keep this below the loop period so every loop reads once.
+     * 
+     * @param seconds
+     *        The maximum snapshot age, in seconds; 0 reads on every getter call
+     * @return
+     *        {@code false} if the age is negative
+     */
+    public boolean setMaxSnapshotAge(double seconds) {
+        if (seconds < 0) {
+            return false;
+        }
+        maxSnapshotAge = (long)(seconds * 1e9);
+        return true;
+    }
+
+    /** Returns how old the snapshot can get before an auto-refreshing getter reads the {@code PigeonIMU} again, in seconds. */
+    public double getMaxSnapshotAge() {
+        return maxSnapshotAge / 1e9;
+    }
+
+    /** Returns the FPGA time of the last snapshot, in seconds, or a negative number if there is no snapshot. */
+    public double getSnapshotTimestamp() {
+        synchronized (snapshotLock) {
+            return snapshotTime < 0 ? -1 : snapshotTime / 1e6;
+        }
+    }
+
+    /** Refreshes the snapshot if auto-refresh is enabled and it is too old. Must be called while holding the snapshot lock. */
+    private void autoRefresh() {
+        if (snapshotTime < 0 || isAutoRefresh && System.nanoTime() - snapshotNanos >= maxSnapshotAge) {
+            refresh();
+        }
+    }
+
+    /**
+     * Copies the yaw, pitch, and roll angles, all from the same snapshot, with the same directions and offsets as their getters.
+     * 
+     * @param angles
+     *        The array to write the yaw, pitch, and roll angles into, in degrees
+     */
+    public void getAngles(double[] angles) {
+        synchronized (snapshotLock) {
+            autoRefresh();
+            angles[0] = -ypr[0];
+            angles[1] = -(ypr[1] - pitchOffset);
+            angles[2] = ypr[2] - rollOffset;
+        }
+    }
+
     /** Returns the yaw (horizontal) angle of the {@code PigeonIMU}. */
     public double getAngle() {
-        double[] ypr = new double[3];
-        getYawPitchRoll(ypr);
-        return -ypr[0];
+        synchronized (snapshotLock) {
+            autoRefresh();
+            return -ypr[0];
+        }
     }
     
     /**
@@ -36,9 +131,7 @@ public class PigeonIMU extends com.ctre.phoenix.sensors.PigeonIMU {
      *        {@code true} if you want to set the partial angle as the actual angle
      */
     public double getPartialAngle(boolean setAngle) {
-        double[] ypr = new double[3];
-        getYawPitchRoll(ypr);
-        double angle = -ypr[0];
+        double angle = getAngle();
         
         // Get angle within range [-180, 180]
         angle = Converter.partialAngle(angle, 360);
@@ -51,16 +144,18 @@ public class PigeonIMU extends com.ctre.phoenix.sensors.PigeonIMU {
 
     /** Returns the pitch (front and back tip) angle of the {@code PigeonIMU}. */
     public double getPitch() {
-        double[] ypr = new double[3];
-        getYawPitchRoll(ypr);
-        return -(ypr[1] - pitchOffset);
+        synchronized (snapshotLock) {
+            autoRefresh();
+            return -(ypr[1] - pitchOffset);
+        }
     }
     
     /** Returns the roll (left and right tip) angle of the {@code PigeonIMU}. */
     public double getRoll() {
-        double[] ypr = new double[3];
-        getYawPitchRoll(ypr);
-        return ypr[2] - rollOffset;
+        synchronized (snapshotLock) {
+            autoRefresh();
+            return ypr[2] - rollOffset;
+        }
     }
 
     /**
@@ -71,6 +166,9 @@ public class PigeonIMU extends com.ctre.phoenix.sensors.PigeonIMU {
      */
     @Override
     public ErrorCode setYaw(double angleDeg) {
+        synchronized (snapshotLock) {
+            snapshotTime = -1; // the snapshot no longer matches the new yaw
+        }
         return super.setYaw(-angleDeg);
     }
 
@@ -84,6 +182,9 @@ public class PigeonIMU extends com.ctre.phoenix.sensors.PigeonIMU {
      */
     @Override
     public ErrorCode setYaw(double angleDeg, int timeoutMs) {
+        synchronized (snapshotLock) {
+            snapshotTime = -1;
+        }
         return super.setYaw(angleDeg, timeoutMs);
     }
 
@@ -94,9 +195,10 @@ public class PigeonIMU extends com.ctre.phoenix.sensors.PigeonIMU {
      *        The new angle in degrees
      */
     public void setPitch(double angleDeg) {
-        double[] ypr = new double[3];
-        getYawPitchRoll(ypr);
-        pitchOffset = ypr[1] + angleDeg; // normally returns -ypr[1], so + angleDeg instead of -
+        synchronized (snapshotLock) {
+            refresh();
+            pitchOffset = ypr[1] + angleDeg; // normally returns -ypr[1], so + angleDeg instead of -
+        }
     }
     
     /**
@@ -106,9 +208,10 @@ public class PigeonIMU extends com.ctre.phoenix.sensors.PigeonIMU {
      *        The new angle in degrees
      */
     public void setRoll(double angleDeg) {
-        double[] ypr = new double[3];
-        getYawPitchRoll(ypr);
-        rollOffset = ypr[2] - angleDeg;
+        synchronized (snapshotLock) {
+            refresh();
+            rollOffset = ypr[2] - angleDeg;
+        }
     }
     
     /**
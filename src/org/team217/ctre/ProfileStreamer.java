@@ -0,0 +1,222 @@
+package org.team217.ctre;
+
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.ctre.phoenix.motion.TrajectoryPoint;
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import edu.wpi.first.wpilibj.Notifier;
+import org.team217.motion.GeometricProfiler;
+
+/**
+ * Samples a {@link GeometricProfiler} into points and streams them into a Talon's buffered motion profile
+ * executor, so the Talon follows the profile at its own 1 kHz rate instead of the main loop's rate.
+ * Points are sampled and pushed in the background as buffer space frees up, so long profiles never
+ * need to fit in the buffer at once, and nothing is allocated while streaming.
+ * The buffer status arrives in the Talon's Status 10 frame, so its telemetry profile must keep that frame fast;
+ * {@code TelemetryProfile.FOLLOWER} slows it down too much to stream with.
+ * Once the Talon reaches the last point it holds it on its own, so the background cycle stops and the motion
+ * control frame is slowed back down until the next {@link #start()}.
+ * 
+ * @author ThunderChickens 217
+ */
+public class ProfileStreamer implements AutoCloseable {
+    /** The most points pushed in one background cycle, so one cycle can't take too long. */
+    private static final int MAX_POINTS_PER_CYCLE = 64;
+    /** The motion control frame period while not streaming, in milliseconds. */
+    private static final int IDLE_FRAME_PERIOD_MS = 100;
+
+    private final MotionProfileBuffer talon;
+    private final GeometricProfiler profiler;
+    private final double scale;
+    private final int pointPeriodMs;
+    private final int pointCount;
+
+    private final GeometricProfiler.State state = new GeometricProfiler.State(0, 0);
+    private final TrajectoryPoint point = new TrajectoryPoint();
+    private final MotionProfileStatus status = new MotionProfileStatus();
+
+    private int minBufferedPoints = 5;
+    private int nextPoint = 0;
+    private SetValueMotionProfile output = SetValueMotionProfile.Disable;
+    private boolean isStreaming = false;
+    private volatile boolean isFinished = false;
+    private volatile boolean hasUnderrun = false;
+
+    private Notifier notifier;
+
+    /**
+     * Creates a new profile streamer.
+     * 
+     * @param talon
+     *        The Talon to stream to; the profile must start at the Talon's current sensor position
+     * @param profiler
+     *        The profile to follow, in units and seconds
+     * @param scale
+     *        The number of sensor units per profile unit
+     * @param pointPeriodMs
+     *        The time between points, in milliseconds
+     * 
+     * @exception IllegalArgumentException if {@code scale} is 0 or {@code pointPeriodMs} is not from 1 to 127
+     */
+    public ProfileStreamer(MotionProfileBuffer talon, GeometricProfiler profiler, double scale, int pointPeriodMs) {
+        if (scale == 0) {
+            throw new IllegalArgumentException("Illegal scale value: " + scale + "\nValue cannot be 0");
+        }
+        if (pointPeriodMs < 1 || pointPeriodMs > 127) {
+            throw new IllegalArgumentException("Illegal pointPeriodMs value: " + pointPeriodMs + "\nValue must be from 1 to 127");
+        }
+        this.talon = talon;
+        this.profiler = profiler;
+        this.scale = scale;
+        this.pointPeriodMs = pointPeriodMs;
+        pointCount = (int)Math.ceil(profiler.totalTime() * 1000 / pointPeriodMs) + 1;
+    }
+
+    /**
+     * Sets how many points must be on the Talon before it starts following the profile, so it doesn't run out right away.
+     * 
+     * @param points
+     *        The number of points
+     * @return
+     *        {@code false} if the number of points is not positive
+     */
+    public synchronized boolean setMinBufferedPoints(int points) {
+        if (points <= 0) {
+            return false;
+        }
+        minBufferedPoints = points;
+        return true;
+    }
+
+    /** Returns the number of points the profile is sampled into. */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Clears the Talon's buffers and starts streaming the profile from the beginning.
+     * The Talon starts following once enough points are buffered.
+     */
+    public synchronized void start() {
+        talon.set(ControlMode.MotionProfile, SetValueMotionProfile.Disable.value);
+        output = SetValueMotionProfile.Disable;
+        talon.clearMotionProfileTrajectories();
+        talon.clearMotionProfileHasUnderrun(0);
+        talon.configMotionProfileTrajectoryPeriod(0, 0);
+        // send points to the Talon twice as fast as it uses them
+        talon.changeMotionControlFramePeriod(Math.max(1, pointPeriodMs / 2));
+
+        nextPoint = 0;
+        isFinished = false;
+        hasUnderrun = false;
+        isStreaming = true;
+        cycle();
+
+        if (notifier == null) {
+            notifier = new Notifier(this::cycle);
+        }
+        notifier.startPeriodic(Math.max(1, pointPeriodMs / 2) / 1000.0);
+    }
+
+    /** Stops streaming and disables the Talon's output. */
+    public synchronized void stop() {
+        if (isStreaming) {
+            endStreaming();
+        }
+        talon.set(ControlMode.MotionProfile, SetValueMotionProfile.Disable.value);
+        output = SetValueMotionProfile.Disable;
+    }
+
+    /** Stops streaming, disables the Talon's output, and frees the background thread. */
+    @Override
+    public void close() {
+        Notifier closing;
+        synchronized (this) {
+            stop();
+            closing = notifier;
+            notifier = null;
+        }
+        // closing the notifier waits for its thread, which may be waiting on this lock in cycle()
+        if (closing != null) {
+            closing.close();
+        }
+    }
+
+    /** Returns {@code true} if the Talon has reached the last point and is holding it. */
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    /** Returns {@code true} if the Talon ran out of points while following the profile. */
+    public boolean hasUnderrun() {
+        return hasUnderrun;
+    }
+
+    /**
+     * Pushes the next points into the top buffer, moves them to the Talon, and updates the Talon's output.
+     * This is called in the background after {@link #start()} until the Talon holds the last point.
+     */
+    synchronized void cycle() {
+        if (!isStreaming) {
+            // stopped while the notifier was waiting on the lock
+            return;
+        }
+        for (int i = 0; i < MAX_POINTS_PER_CYCLE && nextPoint < pointCount && !talon.isMotionProfileTopLevelBufferFull(); i++) {
+            fillPoint(nextPoint);
+            talon.pushMotionProfileTrajectory(point);
+            nextPoint++;
+        }
+        talon.processMotionProfileBuffer();
+
+        talon.getMotionProfileStatus(status);
+        if (status.hasUnderrun) {
+            hasUnderrun = true;
+            talon.clearMotionProfileHasUnderrun(0);
+        }
+
+        SetValueMotionProfile next = output;
+        if (status.activePointValid && status.isLast) {
+            next = SetValueMotionProfile.Hold;
+            isFinished = true;
+        }
+        else if (output == SetValueMotionProfile.Disable && (status.btmBufferCnt >= minBufferedPoints || nextPoint == pointCount)) {
+            next = SetValueMotionProfile.Enable;
+        }
+        if (next != output) {
+            talon.set(ControlMode.MotionProfile, next.value);
+            output = next;
+        }
+        if (isFinished) {
+            // the Talon holds the last point without any more points or status
+            endStreaming();
+        }
+    }
+
+    /** Stops the background cycle and slows the motion control frame back down. Must be called while holding the lock. */
+    private void endStreaming() {
+        isStreaming = false;
+        if (notifier != null) {
+            notifier.stop();
+        }
+        talon.changeMotionControlFramePeriod(IDLE_FRAME_PERIOD_MS);
+    }
+
+    /**
+     * Samples the profile into the reusable point.
+     * 
+     * @param index
+     *        The index of the point
+     */
+    private void fillPoint(int index) {
+        boolean isLast = index == pointCount - 1;
+        double t = isLast ? profiler.totalTime() : index * pointPeriodMs / 1000.0;
+        profiler.getOutput(t, state);
+
+        point.position = state.position * scale;
+        point.velocity = state.velocity * scale / 10; // the Talon uses sensor units per 100 ms
+        point.timeDur = pointPeriodMs;
+        point.profileSlotSelect0 = 0;
+        point.zeroPos = false;
+        point.isLastPoint = isLast;
+    }
+}
@@ -1,13 +1,30 @@
 package org.team217.ctre;
 
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.ParamEnum;
 import com.ctre.phoenix.motorcontrol.*;
+import org.team217.can.*;
+import org.team217.motion.GeometricProfiler;
 
 /**
  * WPI Talon FX Class (Extended). Class supports communicating over CANbus and over ribbon-cable (CAN Talon FX).
  * 
  * @author ThunderChickens 217, Cross the Road Electronics
  */
-public class WPI_TalonFX extends com.ctre.phoenix.motorcontrol.can.WPI_TalonFX {
+public class WPI_TalonFX extends com.ctre.phoenix.motorcontrol.can.WPI_TalonFX implements FrameDevice, CommandDevice, MotionProfileBuffer {
+    /** The sensor frame the getters read from, or {@code null} to read from the device. */
+    protected SensorFrame frame;
+    protected int frameSlot;
+
+    /** The cache used to skip repeated commands, or {@code null} if every command is sent. */
+    protected OutputCache outputCache;
+
+    /** The status frame periods last applied, or {@code null} if the vendor defaults are in use. */
+    protected TelemetryProfile telemetryProfile;
+
+    /** The counts of JNI calls made by this motor controller. */
+    protected final CANStats canStats;
+
     /**
      * Constructor for creating a {@code TalonFX} motor controller for FRC.
      * 
@@ -16,16 +33,194 @@ public class WPI_TalonFX extends com.ctre.phoenix.motorcontrol.can.WPI_TalonFX {
      */
     public WPI_TalonFX(int deviceNumber) {
         super(deviceNumber);
+        canStats = CANStats.register("TalonFX " + deviceNumber);
     }
     
     /** Returns {@code true} iff forward limit switch is closed, {@code false} iff switch is open. This function works regardless if limit switch feature is enabled. */
     public boolean getLimitFwd() {
-        return getSensorCollection().isFwdLimitSwitchClosed() != 0;
+        return frame == null ? readLimitFwd() : frame.getLimitFwd(frameSlot);
     }
     
     /** Returns {@code true} iff reverse limit switch is closed, {@code false} iff switch is open. This function works regardless if limit switch feature is enabled. */
     public boolean getLimitRev() {
-        return getSensorCollection().isRevLimitSwitchClosed() != 0;
+        return frame == null ? readLimitRev() : frame.getLimitRev(frameSlot);
+    }
+
+    /** Returns the position of the selected sensor, from the sensor frame if the controller is registered with one. */
+    public double getPosition() {
+        return frame == null ? readPosition() : frame.getPosition(frameSlot);
+    }
+
+    /** Returns the velocity of the selected sensor, from the sensor frame if the controller is registered with one. */
+    public double getVelocity() {
+        return frame == null ? readVelocity() : frame.getVelocity(frameSlot);
+    }
+
+    @Override
+    public double readPosition() {
+        long start = CANStats.start();
+        double position = getSelectedSensorPosition();
+        canStats.record(CANStats.Category.Get, start);
+        return position;
+    }
+
+    @Override
+    public double readVelocity() {
+        long start = CANStats.start();
+        double velocity = getSelectedSensorVelocity();
+        canStats.record(CANStats.Category.Get, start);
+        return velocity;
+    }
+
+    /** The Talon FX has no analog input, so this always returns 0. */
+    @Override
+    public int readAnalogRaw() {
+        return 0;
+    }
+
+    @Override
+    public boolean readLimitFwd() {
+        long start = CANStats.start();
+        boolean isClosed = getSensorCollection().isFwdLimitSwitchClosed() != 0;
+        canStats.record(CANStats.Category.Get, start);
+        return isClosed;
+    }
+
+    @Override
+    public boolean readLimitRev() {
+        long start = CANStats.start();
+        boolean isClosed = getSensorCollection().isRevLimitSwitchClosed() != 0;
+        canStats.record(CANStats.Category.Get, start);
+        return isClosed;
+    }
+
+    @Override
+    public void attach(SensorFrame frame, int slot) {
+        this.frame = frame;
+        frameSlot = slot;
+    }
+
+    /**
+     * Starts skipping commands that match the last command sent, so identical setpoints don't go through JNI every cycle.
+     * Commands with a second demand are always sent, and make the next command be sent too.
+     * 
+     * @param tolerance
+     *        The largest change in value that still counts as the same command
+     * @param keepAlive
+     *        The longest time between sends of the same command, in seconds
+     */
+    public void enableOutputCache(double tolerance, double keepAlive) {
+        outputCache = new OutputCache(tolerance, keepAlive);
+    }
+
+    /** Stops skipping repeated commands. */
+    public void disableOutputCache() {
+        outputCache = null;
+    }
+
+    /** Returns the counts of JNI calls made by this motor controller. */
+    public CANStats getCANStats() {
+        return canStats;
+    }
+
+    /** Removes the counts of JNI calls from the {@code CANStats} registry and frees the motor controller. */
+    @Override
+    public void close() {
+        CANStats.unregister(canStats);
+        super.close();
+    }
+
+    /** Returns the output cache with the sent and suppressed counts, or {@code null} if it is disabled. */
+    public OutputCache getOutputCache() {
+        return outputCache;
+    }
+
+    /**
+     * Sets the appropriate output on the talon, depending on the mode.
+     * If the output cache is enabled, commands that match the last command are skipped.
+     * 
+     * @param mode
+     *        The output mode to apply
+     * @param value
+     *        The setpoint value, as described in the {@code ControlMode} docs
+     */
+    @Override
+    public void set(ControlMode mode, double value) {
+        OutputCache cache = outputCache;
+        if (cache == null || cache.shouldSend(mode, value)) {
+            long start = CANStats.start();
+            // the two-value set forwards to the four-value one, which would invalidate the cache again
+            super.set(mode, value, DemandType.Neutral, 0);
+            canStats.record(CANStats.Category.Set, start);
+        }
+        else {
+            feed(); // the command still counts for motor safety
+        }
+    }
+
+    /**
+     * Sets the appropriate output on the talon, depending on the mode, with a second demand such as an
+     * arbitrary feedforward. These commands are always sent, and the next {@link #set(ControlMode, double)} is
+     * sent even if it matches the last one, since the output cache only tracks single-value commands.
+     * 
+     * @param mode
+     *        The output mode to apply
+     * @param demand0
+     *        The setpoint value, as described in the {@code ControlMode} docs
+     * @param demand1Type
+     *        The type of the second demand
+     * @param demand1
+     *        The second demand value
+     */
+    @Override
+    public void set(ControlMode mode, double demand0, DemandType demand1Type, double demand1) {
+        invalidateOutputCache();
+        long start = CANStats.start();
+        super.set(mode, demand0, demand1Type, demand1);
+        canStats.record(CANStats.Category.Set, start);
+    }
+
+    /**
+     * Sets the motor controller to follow another motor controller.
+     * 
+     * @param masterToFollow
+     *        The motor controller to follow
+     */
+    @Override
+    public void follow(IMotorController masterToFollow) {
+        invalidateOutputCache();
+        super.follow(masterToFollow);
+    }
+
+    /** Makes sure the next command is sent, for when the output was changed without {@link #set(ControlMode, double)}. */
+    protected void invalidateOutputCache() {
+        OutputCache cache = outputCache;
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Sends a command from a {@code CANExecutor}.
+     * 
+     * @param mode
+     *        The {@code ControlMode} of the command
+     * @param value
+     *        The setpoint value, as described in the {@code ControlMode} docs
+     * 
+     * @exception IllegalArgumentException if {@code mode} is not a {@code ControlMode}
+     */
+    @Override
+    public void applyCommand(Object mode, double value) {
+        if (!(mode instanceof ControlMode)) {
+            throw new IllegalArgumentException("Illegal mode: " + mode + "\nMode must be a ControlMode");
+        }
+        set((ControlMode)mode, value);
+    }
+
+    @Override
+    public boolean isSupported(Object mode) {
+        return mode instanceof ControlMode;
     }
 
     /** Sets up the motor controller to use the integrated sensor in brake mode. */
@@ -40,10 +235,118 @@ public class WPI_TalonFX extends com.ctre.phoenix.motorcontrol.can.WPI_TalonFX {
      *        The neutral mode of the controller (coast or brake)
      */
     public void setup(NeutralMode neutralMode) {
+        invalidateOutputCache();
+        long start = CANStats.start();
         configFactoryDefault();
         configSelectedFeedbackSensor(FeedbackDevice.IntegratedSensor, 0, 0);
         setNeutralMode(neutralMode);
         setSelectedSensorPosition(0);
+        canStats.record(CANStats.Category.Config, start, 4);
         set(0);
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets up the motor controller to use the integrated sensor, waiting for the controller to acknowledge each setting.
+     * Use this with a {@code BulkConfigurator} to set up many controllers at once.
+     * 
+     * @param neutralMode
+     *        The neutral mode of the controller (coast or brake)
+     * @param timeoutMs
+     *        The time to wait for each setting to be acknowledged, in milliseconds
+     * @return
+     *        {@code true} if every setting was acknowledged without an error
+     */
+    public boolean trySetup(NeutralMode neutralMode, int timeoutMs) {
+        invalidateOutputCache();
+        long start = CANStats.start();
+        boolean isOk = configFactoryDefault(timeoutMs) == ErrorCode.OK;
+        isOk &= configSelectedFeedbackSensor(FeedbackDevice.IntegratedSensor, 0, timeoutMs) == ErrorCode.OK;
+        setNeutralMode(neutralMode);
+        isOk &= setSelectedSensorPosition(0, 0, timeoutMs) == ErrorCode.OK;
+        canStats.record(CANStats.Category.Config, start, 4);
+        set(0);
+        return isOk;
+    }
+
+    /**
+     * Reads the selected feedback sensor back from the motor controller to check that it is set up to use the integrated sensor.
+     * Use this as the verification step for {@link #trySetup(NeutralMode, int)} in a {@code BulkConfigurator}.
+     * 
+     * @param timeoutMs
+     *        The time to wait for the controller to respond, in milliseconds
+     * @return
+     *        {@code true} if the controller responded and is using the integrated sensor
+     */
+    public boolean verifySetup(int timeoutMs) {
+        long start = CANStats.start();
+        double sensor = configGetParameter(ParamEnum.eFeedbackSensorType, 0, timeoutMs);
+        boolean isOk = getLastError() == ErrorCode.OK && (int)sensor == FeedbackDevice.IntegratedSensor.value;
+        canStats.record(CANStats.Category.Config, start, 1);
+        return isOk;
+    }
+
+    /**
+     * Sets the status frame periods from a telemetry profile. Profiles can be switched at any time.
+     * 
+     * @param profile
+     *        The telemetry profile
+     * @return
+     *        {@code true} if every period was set without an error
+     */
+    public boolean setTelemetryProfile(TelemetryProfile profile) {
+        return setTelemetryProfile(profile, 0);
+    }
+
+    /**
+     * Sets the status frame periods from a telemetry profile, waiting for the controller to acknowledge each period.
+     * 
+     * @param profile
+     *        The telemetry profile
+     * @param timeoutMs
+     *        The time to wait for each period to be acknowledged, in milliseconds, or 0 to not wait
+     * @return
+     *        {@code true} if every period was set without an error
+     */
+    public boolean setTelemetryProfile(TelemetryProfile profile, int timeoutMs) {
+        telemetryProfile = profile;
+        long start = CANStats.start();
+        boolean isOk = true;
+        isOk &= setStatusFramePeriod(StatusFrameEnhanced.Status_1_General, profile.getGeneralPeriod(), timeoutMs) == ErrorCode.OK;
+        isOk &= setStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0, profile.getFeedbackPeriod(), timeoutMs) == ErrorCode.OK;
+        isOk &= setStatusFramePeriod(StatusFrameEnhanced.Status_4_AinTempVbat, profile.getSensorPeriod(), timeoutMs) == ErrorCode.OK;
+        isOk &= setStatusFramePeriod(StatusFrameEnhanced.Status_12_Feedback1, profile.getSensorPeriod(), timeoutMs) == ErrorCode.OK;
+        isOk &= setStatusFramePeriod(StatusFrameEnhanced.Status_21_FeedbackIntegrated, profile.getSensorPeriod(), timeoutMs) == ErrorCode.OK;
+        isOk &= setStatusFramePeriod(StatusFrameEnhanced.Status_Brushless_Current, profile.getSensorPeriod(), timeoutMs) == ErrorCode.OK;
+        isOk &= setStatusFramePeriod(StatusFrameEnhanced.Status_10_Targets, profile.getProfilePeriod(), timeoutMs) == ErrorCode.OK;
+        isOk &= setStatusFramePeriod(StatusFrameEnhanced.Status_13_Base_PIDF0, profile.getControlPeriod(), timeoutMs) == ErrorCode.OK;
+        isOk &= setStatusFramePeriod(StatusFrameEnhanced.Status_14_Turn_PIDF1, profile.getControlPeriod(), timeoutMs) == ErrorCode.OK;
+        canStats.record(CANStats.Category.Config, start, 9);
+        return isOk;
+    }
+
+    /** Returns the telemetry profile last applied, or {@code null} if the vendor defaults are in use. */
+    public TelemetryProfile getTelemetryProfile() {
+        return telemetryProfile;
+    }
+
+    /**
+     * Starts streaming a profile into the onboard motion profile buffer, so the motor controller follows it on its own.
+     * Close the returned streamer to stop.
+     * 
+     * @param profiler
+     *        The profile to follow, starting at the current sensor position
+     * @param scale
+     *        The number of sensor units per profile unit
+     * @param pointPeriodMs
+     *        The time between points, in milliseconds
+     * @return
+     *        The running streamer
+     * 
+     * @exception IllegalArgumentException if {@code scale} is 0 or {@code pointPeriodMs} is not from 1 to 127
+     */
+    public ProfileStreamer streamProfile(GeometricProfiler profiler, double scale, int pointPeriodMs) {
+        ProfileStreamer streamer = new ProfileStreamer(this, profiler, scale, pointPeriodMs);
+        streamer.start();
+        return streamer;
+    }
+}
@@ -0,0 +1,277 @@
+package org.team217.motion;
+
+/**
+ * Estimates feedforward constants live from voltage and motion samples by recursive least squares.
+ * The model is {@code voltage = kS * sign(velocity) + kV * velocity + kA * acceleration + kG * gravity}, where the
+ * gravity term is 1 for an elevator, the cosine of the angle for an arm, and absent otherwise.
+ * Each sample updates the estimate in constant time and memory without allocating, so the estimate can converge
+ * during a few seconds of driving instead of being fit from a whole log afterwards.
+ * 
+ * @author ThunderChickens 217
+ */
+public class FeedforwardCharacterizer {
+    /** The starting covariance; large so the first samples dominate the zero starting estimate. */
+    private static final double INITIAL_COVARIANCE = 1e4;
+    /** The largest covariance trace per constant, so no direction can grow more uncertain than the starting estimate. */
+    private static final double MAX_COVARIANCE = INITIAL_COVARIANCE;
+    /** The smoothing factor for the prediction error. */
+    private static final double ERROR_SMOOTHING = 0.05;
+
+    /**
+     * The gravity load on the mechanism.
+     * 
+     * @author ThunderChickens 217
+     */
+    public enum Gravity {
+        /** No gravity load, such as a drivetrain or flywheel. */
+        NONE,
+        /** A constant gravity load, such as an elevator. */
+        ELEVATOR,
+        /** A gravity load proportional to the cosine of the angle from horizontal, such as an arm. */
+        ARM
+    }
+
+    private final Gravity gravity;
+    /** The number of constants estimated */
+    private final int n;
+    private final double forgetting;
+
+    /** The estimate of kS, kV, kA, and kG */
+    private final double[] theta = new double[4];
+    /** The n by n covariance, row-major */
+    private final double[] covariance = new double[16];
+    /** Scratch storage for one sample's regressors and gain */
+    private final double[] phi = new double[4], gain = new double[4];
+
+    private long sampleCount;
+    private double error;
+    private double lastVelocity = Double.NaN;
+
+    /**
+     * Creates a new characterizer that weighs every sample equally.
+     * 
+     * @param gravity
+     *        The gravity load on the mechanism
+     * 
+     * @author ThunderChickens 217
+     */
+    public FeedforwardCharacterizer(Gravity gravity) {
+        this(gravity, 1);
+    }
+
+    /**
+     * Creates a new characterizer that gradually forgets old samples, so the estimate follows a mechanism that changes.
+     * 
+     * @param gravity
+     *        The gravity load on the mechanism
+     * @param forgetting
+     *        The weight kept by the past each sample, from 0 to 1; 1 never forgets, and 0.99 remembers about the last 100 samples
+     * 
+     * @exception IllegalArgumentException if {@code forgetting} is not greater than 0 and at most 1
+     * 
+     * @author ThunderChickens 217
+     */
+    public FeedforwardCharacterizer(Gravity gravity, double forgetting) {
+        if (forgetting <= 0 || forgetting > 1) {
+            throw new IllegalArgumentException("Illegal forgetting value: " + forgetting + "\nValue must be greater than 0 and at most 1");
+        }
+        this.gravity = gravity;
+        this.n = gravity == Gravity.NONE ? 3 : 4;
+        this.forgetting = forgetting;
+        reset();
+    }
+
+    /**
+     * Adds a sample from a mechanism without an arm gravity load.
+     * 
+     * @param voltage
+     *        The applied voltage, in volts
+     * @param velocity
+     *        The velocity, in units/second
+     * @param acceleration
+     *        The acceleration, in units/second^2
+     */
+    public void addSample(double voltage, double velocity, double acceleration) {
+        addSample(voltage, velocity, acceleration, 0);
+    }
+
+    /**
+     * Adds a sample.
+     * Samples taken while standing still carry nothing about kS, kV, or kA, so they are not forgotten against;
+     * otherwise the uncertainty in those constants would grow every sample until the next moving sample replaced
+     * the estimate.
+     * 
+     * @param voltage
+     *        The applied voltage, in volts
+     * @param velocity
+     *        The velocity, in units/second
+     * @param acceleration
+     *        The acceleration, in units/second^2
+     * @param angle
+     *        The arm's angle from horizontal, in radians; ignored unless the gravity load is {@link Gravity#ARM}
+     */
+    public void addSample(double voltage, double velocity, double acceleration, double angle) {
+        phi[0] = Math.signum(velocity);
+        phi[1] = velocity;
+        phi[2] = acceleration;
+        phi[3] = gravity == Gravity.ARM ? Math.cos(angle) : 1;
+        double lambda = velocity != 0 ? forgetting : 1;
+
+        // gain = P * phi / (lambda + phi' * P * phi)
+        double denominator = lambda;
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int j = 0; j < n; j++) {
+                sum += covariance[i * 4 + j] * phi[j];
+            }
+            gain[i] = sum;
+            denominator += phi[i] * sum;
+        }
+
+        double prediction = 0;
+        for (int i = 0; i < n; i++) {
+            prediction += theta[i] * phi[i];
+        }
+        double residual = voltage - prediction;
+        for (int i = 0; i < n; i++) {
+            gain[i] /= denominator;
+            theta[i] += gain[i] * residual;
+        }
+
+        // P = (P - gain * phi' * P) / lambda, kept symmetric; P * phi is gain * denominator
+        double trace = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                double value = (covariance[i * 4 + j] - gain[i] * gain[j] * denominator) / lambda;
+                covariance[i * 4 + j] = value;
+                covariance[j * 4 + i] = value;
+            }
+            trace += covariance[i * 4 + i];
+        }
+
+        // directions a long run of samples doesn't excite, such as kA while cruising, still grow; bound them
+        if (trace > n * MAX_COVARIANCE) {
+            double scale = n * MAX_COVARIANCE / trace;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    covariance[i * 4 + j] *= scale;
+                }
+            }
+        }
+
+        error += ERROR_SMOOTHING * (Math.abs(residual) - error);
+        sampleCount++;
+    }
+
+    /**
+     * Adds a sample from a mechanism without an arm gravity load, estimating the acceleration from the last velocity.
+     * The first sample after a reset only records the velocity.
+     * 
+     * @param voltage
+     *        The applied voltage, in volts
+     * @param velocity
+     *        The velocity, in units/second
+     * @param dt
+     *        The time since the last sample, in seconds
+     */
+    public void addVelocitySample(double voltage, double velocity, double dt) {
+        addVelocitySample(voltage, velocity, dt, 0);
+    }
+
+    /**
+     * Adds a sample, estimating the acceleration from the last velocity.
+     * The first sample after a reset only records the velocity.
+     * 
+     * @param voltage
+     *        The applied voltage, in volts
+     * @param velocity
+     *        The velocity, in units/second
+     * @param dt
+     *        The time since the last sample, in seconds
+     * @param angle
+     *        The arm's angle from horizontal, in radians; ignored unless the gravity load is {@link Gravity#ARM}
+     */
+    public void addVelocitySample(double voltage, double velocity, double dt, double angle) {
+        if (!Double.isNaN(lastVelocity) && dt > 0) {
+            addSample(voltage, velocity, (velocity - lastVelocity) / dt, angle);
+        }
+        lastVelocity = velocity;
+    }
+
+    /** Returns the estimated static friction voltage, in volts. */
+    public double getKs() {
+        return theta[0];
+    }
+
+    /** Returns the estimated velocity constant, in volts/(unit/second). */
+    public double getKv() {
+        return theta[1];
+    }
+
+    /** Returns the estimated acceleration constant, in volts/(unit/second^2). */
+    public double getKa() {
+        return theta[2];
+    }
+
+    /** Returns the estimated gravity voltage, in volts, or 0 if the mechanism has no gravity load. */
+    public double getKg() {
+        return n == 4 ? theta[3] : 0;
+    }
+
+    /** Returns the gravity load on the mechanism. */
+    public Gravity getGravity() {
+        return gravity;
+    }
+
+    /** Returns the number of samples the estimate is based on. */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /** Returns the smoothed absolute difference between the measured and predicted voltage, in volts. */
+    public double getError() {
+        return error;
+    }
+
+    /**
+     * Returns the feedforward voltage from the current estimate.
+     * 
+     * @param velocity
+     *        The velocity, in units/second
+     * @param acceleration
+     *        The acceleration, in units/second^2
+     * @param angle
+     *        The arm's angle from horizontal, in radians; ignored unless the gravity load is {@link Gravity#ARM}
+     */
+    public double calculate(double velocity, double acceleration, double angle) {
+        double g = gravity == Gravity.ARM ? Math.cos(angle) : 1;
+        return getKs() * Math.signum(velocity) + getKv() * velocity + getKa() * acceleration + getKg() * g;
+    }
+
+    /**
+     * Returns the feedforward voltage from the current estimate for a mechanism without an arm gravity load.
+     * 
+     * @param velocity
+     *        The velocity, in units/second
+     * @param acceleration
+     *        The acceleration, in units/second^2
+     */
+    public double calculate(double velocity, double acceleration) {
+        return calculate(velocity, acceleration, 0);
+    }
+
+    /**
+     * Resets the estimate to 0 and forgets every sample.
+     */
+    public void reset() {
+        for (int i = 0; i < 4; i++) {
+            theta[i] = 0;
+            for (int j = 0; j < 4; j++) {
+                covariance[i * 4 + j] = i == j ? INITIAL_COVARIANCE : 0;
+            }
+        }
+        sampleCount = 0;
+        error = 0;
+        lastVelocity = Double.NaN;
+    }
+}
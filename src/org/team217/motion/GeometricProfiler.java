@@ -1,6 +1,5 @@
 package org.team217.motion;
 
-import java.util.function.*;
 import org.team217.*;
 
 /**
@@ -164,7 +163,23 @@ public class GeometricProfiler {
      *        The time, in seconds
      */
     public State getOutput(double t) {
-        State result = new State(initial.velocity, initial.position);
+        return getOutput(t, new State(0, 0));
+    }
+
+    /**
+     * Calculates the target state of the profile at a given time and stores it in an existing state,
+     * so that sampling the profile every cycle does not allocate.
+     * 
+     * @param t
+     *        The time, in seconds
+     * @param result
+     *        The state to store the target state in
+     * @return
+     *        {@code result}
+     */
+    public State getOutput(double t, State result) {
+        result.velocity = initial.velocity;
+        result.position = initial.position;
         
         if (t < endAccel) {
             double c = 2 * constraints.maxAccel / (constraints.maxVel - initial.velocity); // the constant that affects the period of the cos wave
@@ -189,7 +204,10 @@ public class GeometricProfiler {
             result.position = goal.position;
         }
 
-        return direct(result); // flip the position and velocity if necessary, since we've been working in positives
+        // flip the position and velocity if necessary, since we've been working in positives
+        result.velocity *= direction;
+        result.position *= direction;
+        return result;
     }
     
     /**
@@ -214,11 +232,6 @@ public class GeometricProfiler {
             // If the initial approximate is close enough, the equation will converge and get more accurate each iteration.
             // Since it approximates zeroes, and we want s(x) = distance, we apply the recursion to s(x) - distance = 0
             double c = 2 * constraints.maxAccel / (constraints.maxVel - initial.velocity); // the constant that affects the period of the cos wave
-            final double d = distance; // Function<> can only use constants when using local variables
-            // s(t) - distance (= 0)
-            Function<Double, Double> position = t -> initial.velocity * t + (constraints.maxVel - initial.velocity) / 2 * (t - Math.sin(c * t) / c) - d;
-            // s'(t)
-            Function<Double, Double> dPosition = t -> (constraints.maxVel - initial.velocity) / 2 * (1 - Math.cos(c * t)) + initial.velocity;
             
             // Start the approximation halfway through the acceleration period
             double result = endAccel / 2; // endAccel is the acceleration time
@@ -226,7 +239,7 @@ public class GeometricProfiler {
             while (Math.abs((result - lastResult) / lastResult) > 0.001) { // loop until error is no more than 0.1%
                 lastResult = result;
                 // x_(n+1) = x_n - f(x_n)/f'(x_n)
-                result = lastResult - position.apply(lastResult) / dPosition.apply(lastResult);
+                result = lastResult - (accelPosition(lastResult, c) - distance) / accelVelocity(lastResult, c);
             }
             return result;
         }
@@ -240,15 +253,12 @@ public class GeometricProfiler {
             distance -= endFullVelDist;
             
             double c = 2 * constraints.maxAccel / (constraints.maxVel - goal.velocity);
-            final double d = distance;
-            Function<Double, Double> position = t -> goal.velocity * t + (constraints.maxVel - goal.velocity) / 2 * (t + Math.sin(c * t) / c) - d;
-            Function<Double, Double> dPosition = t -> (constraints.maxVel - goal.velocity) / 2 * (1 + Math.cos(c * t)) + goal.velocity;
             
             double result = (endDecel - endFullVel) / 2; // endDecel - endFullVel gives us the deceleration time
             double lastResult = 0;
             while (Math.abs((result - lastResult) / lastResult) > 0.001) {
                 lastResult = result;
-                result = lastResult - position.apply(lastResult) / dPosition.apply(lastResult);
+                result = lastResult - (decelPosition(lastResult, c) - distance) / decelVelocity(lastResult, c);
             }
             return endFullVel + result;
         }
@@ -258,6 +268,54 @@ public class GeometricProfiler {
         }
     }
     
+    /**
+     * Returns the distance traveled after {@code t} seconds of the acceleration phase, s(t).
+     * 
+     * @param t
+     *        The time since the start of the acceleration phase
+     * @param c
+     *        The constant that affects the period of the cos wave
+     */
+    private double accelPosition(double t, double c) {
+        return initial.velocity * t + (constraints.maxVel - initial.velocity) / 2 * (t - Math.sin(c * t) / c);
+    }
+
+    /**
+     * Returns the velocity after {@code t} seconds of the acceleration phase, s'(t).
+     * 
+     * @param t
+     *        The time since the start of the acceleration phase
+     * @param c
+     *        The constant that affects the period of the cos wave
+     */
+    private double accelVelocity(double t, double c) {
+        return (constraints.maxVel - initial.velocity) / 2 * (1 - Math.cos(c * t)) + initial.velocity;
+    }
+
+    /**
+     * Returns the distance traveled after {@code t} seconds of the deceleration phase, s(t).
+     * 
+     * @param t
+     *        The time since the start of the deceleration phase
+     * @param c
+     *        The constant that affects the period of the cos wave
+     */
+    private double decelPosition(double t, double c) {
+        return goal.velocity * t + (constraints.maxVel - goal.velocity) / 2 * (t + Math.sin(c * t) / c);
+    }
+
+    /**
+     * Returns the velocity after {@code t} seconds of the deceleration phase, s'(t).
+     * 
+     * @param t
+     *        The time since the start of the deceleration phase
+     * @param c
+     *        The constant that affects the period of the cos wave
+     */
+    private double decelVelocity(double t, double c) {
+        return (constraints.maxVel - goal.velocity) / 2 * (1 + Math.cos(c * t)) + goal.velocity;
+    }
+    
     /**
      * Returns the total time the profile takes to reach the goal.
      */
@@ -0,0 +1,268 @@
+package org.team217.motion;
+
+import org.team217.Clock;
+
+/**
+ * Finds PID gains by relay feedback.
+ * The tuner drives the mechanism with a relay, a fixed output that flips sign whenever the position crosses the target,
+ * which makes it oscillate at its ultimate period. The ultimate gain and period are measured cycle by cycle from the
+ * oscillation's peaks and turned into PID gains by a tuning {@link Rule}.
+ * Call {@link #getOutput(double)} in place of a PID in the periodic loop until {@link #isFinished()}; it never blocks
+ * and keeps a fixed amount of state however long it runs.
+ * 
+ * @author ThunderChickens 217
+ */
+public class RelayTuner {
+    /** The number of cycles ignored at the start while the oscillation settles. */
+    private static final int SETTLE_CYCLES = 2;
+
+    /**
+     * Rules for turning the ultimate gain and period into PID gains.
+     * 
+     * @author ThunderChickens 217
+     */
+    public enum Rule {
+        /** Fast, with a quarter-decay response and large overshoot. */
+        ZIEGLER_NICHOLS(0.6, 0.5, 0.125),
+        /** Slower than Ziegler-Nichols, with less overshoot and more robustness to changes in the mechanism. */
+        TYREUS_LUYBEN(0.45, 2.2, 1 / 6.3),
+        /** Fast, with stronger integral action to reject loads such as gravity. */
+        PESSEN_INTEGRAL(0.7, 0.4, 0.15),
+        /** Moderate speed with some overshoot. */
+        SOME_OVERSHOOT(0.33, 0.5, 1 / 3.0),
+        /** Slow, with little to no overshoot. */
+        NO_OVERSHOOT(0.2, 0.5, 1 / 3.0);
+
+        /** kP as a fraction of the ultimate gain, and the integral and derivative times as fractions of the ultimate period. */
+        private final double gainRatio, integralRatio, derivativeRatio;
+
+        private Rule(double gainRatio, double integralRatio, double derivativeRatio) {
+            this.gainRatio = gainRatio;
+            this.integralRatio = integralRatio;
+            this.derivativeRatio = derivativeRatio;
+        }
+    }
+
+    private final Clock clock;
+    private final double target, amplitude, hysteresis;
+    private final int cycles;
+
+    private double offset = 0;
+    private double timeout = 0;
+
+    private boolean isStarted = false;
+    private boolean isHigh;
+    private boolean isFinished = false;
+    private double startTime, lastRiseTime;
+    private double max, min;
+    private int cycleCount;
+    private double amplitudeSum, periodSum;
+    private double ultimateGain = Double.NaN, ultimatePeriod = Double.NaN;
+
+    /**
+     * Creates a new relay tuner timed by the FPGA time.
+     * 
+     * @param target
+     *        The position to oscillate around
+     * @param amplitude
+     *        The relay output, such as a duty cycle
+     * @param hysteresis
+     *        The error the position must cross before the relay flips, to keep sensor noise from flipping it
+     * @param cycles
+     *        The number of oscillations to average over
+     * 
+     * @exception IllegalArgumentException if the amplitude or cycles is not positive or the hysteresis is negative
+     * 
+     * @author ThunderChickens 217
+     */
+    public RelayTuner(double target, double amplitude, double hysteresis, int cycles) {
+        this(target, amplitude, hysteresis, cycles, Clock.FPGA);
+    }
+
+    /**
+     * Creates a new relay tuner timed by the given clock.
+     * 
+     * @param target
+     *        The position to oscillate around
+     * @param amplitude
+     *        The relay output, such as a duty cycle
+     * @param hysteresis
+     *        The error the position must cross before the relay flips, to keep sensor noise from flipping it
+     * @param cycles
+     *        The number of oscillations to average over
+     * @param clock
+     *        The clock to time the oscillations with
+     * 
+     * @exception IllegalArgumentException if the amplitude or cycles is not positive or the hysteresis is negative
+     * 
+     * @author ThunderChickens 217
+     */
+    public RelayTuner(double target, double amplitude, double hysteresis, int cycles, Clock clock) {
+        if (amplitude <= 0) {
+            throw new IllegalArgumentException("Illegal amplitude value: " + amplitude + "\nValue must be positive");
+        }
+        if (hysteresis < 0) {
+            throw new IllegalArgumentException("Illegal hysteresis value: " + hysteresis + "\nValue must be non-negative");
+        }
+        if (cycles <= 0) {
+            throw new IllegalArgumentException("Illegal cycles value: " + cycles + "\nValue must be positive");
+        }
+        this.target = target;
+        this.amplitude = amplitude;
+        this.hysteresis = hysteresis;
+        this.cycles = cycles;
+        this.clock = clock;
+    }
+
+    /**
+     * Sets a constant output added to the relay, such as the output that holds an arm against gravity.
+     * 
+     * @param offset
+     *        The constant output
+     * @return
+     *        {@code false} if the offset could not be set
+     */
+    public boolean setOffset(double offset) {
+        this.offset = offset;
+        return true;
+    }
+
+    /**
+     * Sets the longest the tuner may run before giving up.
+     * 
+     * @param timeout
+     *        The timeout, in seconds; 0 disables the timeout
+     * @return
+     *        {@code false} if the timeout is negative
+     */
+    public boolean setTimeout(double timeout) {
+        if (timeout < 0) {
+            return false;
+        }
+        this.timeout = timeout;
+        return true;
+    }
+
+    /**
+     * Returns the next relay output, or 0 once the tuner has finished.
+     * 
+     * @param position
+     *        The current position
+     */
+    public double getOutput(double position) {
+        if (isFinished) {
+            return 0;
+        }
+        double now = clock.getTime();
+        double error = target - position;
+
+        if (!isStarted) {
+            isStarted = true;
+            isHigh = error >= 0;
+            startTime = now;
+            lastRiseTime = Double.NaN;
+            max = min = position;
+        }
+        else if (timeout > 0 && now - startTime >= timeout) {
+            isFinished = true;
+            return 0;
+        }
+        max = Math.max(max, position);
+        min = Math.min(min, position);
+
+        if (isHigh && error < -hysteresis) {
+            isHigh = false;
+        }
+        else if (!isHigh && error > hysteresis) {
+            isHigh = true;
+            onRise(now);
+        }
+        return offset + (isHigh ? amplitude : -amplitude);
+    }
+
+    /** Measures the cycle that ended when the relay flipped high. */
+    private void onRise(double now) {
+        if (!Double.isNaN(lastRiseTime)) {
+            cycleCount++;
+            if (cycleCount > SETTLE_CYCLES) {
+                amplitudeSum += (max - min) / 2;
+                periodSum += now - lastRiseTime;
+
+                if (cycleCount - SETTLE_CYCLES == cycles) {
+                    double a = amplitudeSum / cycles;
+                    // describing function of a relay with hysteresis
+                    ultimateGain = 4 * amplitude / (Math.PI * Math.sqrt(Math.max(a * a - hysteresis * hysteresis, Double.MIN_NORMAL)));
+                    ultimatePeriod = periodSum / cycles;
+                    isFinished = true;
+                }
+            }
+        }
+        lastRiseTime = now;
+        max = min = target; // the next cycle's peaks are measured from here
+    }
+
+    /** Returns {@code true} if the tuner has finished, either with a result or by timing out. */
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    /** Returns {@code true} if the tuner measured the ultimate gain and period. */
+    public boolean hasResult() {
+        return !Double.isNaN(ultimatePeriod);
+    }
+
+    /** Returns the ultimate gain, or {@code NaN} if the tuner has not finished. */
+    public double getUltimateGain() {
+        return ultimateGain;
+    }
+
+    /** Returns the ultimate period, in seconds, or {@code NaN} if the tuner has not finished. */
+    public double getUltimatePeriod() {
+        return ultimatePeriod;
+    }
+
+    /**
+     * Creates a PID controller from the measured ultimate gain and period.
+     * 
+     * @param rule
+     *        The tuning rule
+     * @param period
+     *        The period between controller updates, in seconds
+     * @return
+     *        The PID controller, or {@code null} if the tuner has no result
+     */
+    public PID getPID(Rule rule, double period) {
+        if (!hasResult()) {
+            return null;
+        }
+        double kP = rule.gainRatio * ultimateGain;
+        double kI = kP / (rule.integralRatio * ultimatePeriod);
+        double kD = kP * rule.derivativeRatio * ultimatePeriod;
+        return new PID(kP, kI, kD, period);
+    }
+
+    /**
+     * Creates a PID controller from the measured ultimate gain and period, updated every 20 ms.
+     * 
+     * @param rule
+     *        The tuning rule
+     * @return
+     *        The PID controller, or {@code null} if the tuner has no result
+     */
+    public PID getPID(Rule rule) {
+        return getPID(rule, 0.02);
+    }
+
+    /**
+     * Resets the tuner so it can run again.
+     */
+    public void reset() {
+        isStarted = false;
+        isFinished = false;
+        cycleCount = 0;
+        amplitudeSum = 0;
+        periodSum = 0;
+        ultimateGain = Double.NaN;
+        ultimatePeriod = Double.NaN;
+    }
+}
@@ -1,6 +1,6 @@
 package org.team217.motion;
 
-import edu.wpi.first.wpilibj.*;
+import org.team217.Clock;
 
 /**
  * A class that runs and controls PID systems on a timer.
@@ -8,7 +8,9 @@ import edu.wpi.first.wpilibj.*;
  * @author ThunderChickens 217
  */
 public class TimedPID extends PID {
-    private Timer timer = new Timer();
+    private final Clock clock;
+    /** The time the current period started, in seconds */
+    private double periodStart;
     private double output = 0;
     
     /**
@@ -26,10 +28,36 @@ public class TimedPID extends PID {
      * @author ThunderChickens 217
      */
     public TimedPID(double kP, double kI, double kD, double period) {
+        this(kP, kI, kD, period, Clock.FPGA);
+    }
+
+    /**
+     * Creates a new PID controller managed by the given clock.
+     * 
+     * @param kP
+     *        The proportional coefficient
+     * @param kI
+     *        The integral coefficient
+     * @param kD
+     *        The derivative coefficient
+     * @param period
+     *        The period between controller updates, in seconds
+     * @param clock
+     *        The clock that decides when a period has passed, such as a {@code SteppedClock} in simulation
+     * 
+     * @author ThunderChickens 217
+     */
+    public TimedPID(double kP, double kI, double kD, double period, Clock clock) {
         super(kP, kI, kD, period);
-        timer.start();
+        this.clock = clock;
+        periodStart = clock.getTime();
     }
-    
+
+    /** Returns the clock that decides when a period has passed. */
+    public Clock getClock() {
+        return clock;
+    }
+
     /**
      * Returns the next output of the PID controller if the period has passed.
      * 
@@ -38,11 +66,13 @@ public class TimedPID extends PID {
      */
     @Override
     public double getOutput(double position) {
-        if (timer.advanceIfElapsed(getPeriod())) {
+        double now = clock.getTime();
+        if (now - periodStart >= getPeriod()) {
             output = super.getOutput(position);
+            periodStart += getPeriod();
 
-            if (timer.get() >= 2 * getPeriod()) { // if we've passed two periods, reset the timer so we don't falsely call getOutput() a second time
-                timer.reset();
+            if (now - periodStart >= 2 * getPeriod()) { // if we've passed two periods, restart the period so we don't falsely call getOutput() a second time
+                periodStart = now;
             }
         }
         return output;
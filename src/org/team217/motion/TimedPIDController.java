@@ -1,6 +1,6 @@
 package org.team217.motion;
 
-import edu.wpi.first.wpilibj.Timer;
+import org.team217.Clock;
 import edu.wpi.first.wpilibj.controller.*;
 
 /**
@@ -9,12 +9,14 @@ import edu.wpi.first.wpilibj.controller.*;
  * @author ThunderChickens 217, WPILib
  */
 public class TimedPIDController extends PIDController {
-    private Timer timer = new Timer();
+    private final Clock clock;
+    /** The time the current period started, in seconds */
+    private double periodStart;
     private double output = 0;
 
     /**
      * Allocates a timer-managed PIDController with the given constants for Kp, Ki, and Kd.
-     *
+     * 
      * @param Kp
      *        The proportional coefficient
      * @param Ki
@@ -27,23 +29,51 @@ public class TimedPIDController extends PIDController {
      * @author ThunderChickens 217, WPILib
      */
     public TimedPIDController(double Kp, double Ki, double Kd, double period) {
+        this(Kp, Ki, Kd, period, Clock.FPGA);
+    }
+
+    /**
+     * Allocates a PIDController managed by the given clock with the given constants for Kp, Ki, and Kd.
+     * 
+     * @param Kp
+     *        The proportional coefficient
+     * @param Ki
+     *        The integral coefficient
+     * @param Kd
+     *        The derivative coefficient
+     * @param period
+     *        The period between controller updates in seconds
+     * @param clock
+     *        The clock that decides when a period has passed, such as a {@code SteppedClock} in simulation
+     * 
+     * @author ThunderChickens 217, WPILib
+     */
+    public TimedPIDController(double Kp, double Ki, double Kd, double period, Clock clock) {
         super(Kp, Ki, Kd, period);
-        timer.start();
+        this.clock = clock;
+        periodStart = clock.getTime();
+    }
+
+    /** Returns the clock that decides when a period has passed. */
+    public Clock getClock() {
+        return clock;
     }
 
     /**
      * Returns the next output of the PID controller if the period has passed.
-     *
+     * 
      * @param measurement
      *        The current measurement of the process variable
      */
     @Override
     public double calculate(double measurement) {
-        if (timer.advanceIfElapsed(getPeriod())) {
+        double now = clock.getTime();
+        if (now - periodStart >= getPeriod()) {
             output = super.calculate(measurement);
+            periodStart += getPeriod();
 
-            if (timer.get() >= 2 * getPeriod()) { // if we've passed two periods, reset the timer so we don't falsely call getOutput() a second time
-                timer.reset();
+            if (now - periodStart >= 2 * getPeriod()) { // if we've passed two periods, restart the period so we don't falsely call getOutput() a second time
+                periodStart = now;
             }
         }
         return output;
@@ -51,7 +81,7 @@ public class TimedPIDController extends PIDController {
 
     /**
      * Returns the next output of the PID controller if the period has passed.
-     *
+     * 
      * @param measurement
      *        The current measurement of the process variable.
      * @param setpoint
@@ -1,13 +1,45 @@
 package org.team217.rev;
 
+import com.revrobotics.CANError;
+import com.revrobotics.CANPIDController;
+import com.revrobotics.ControlType;
+import org.team217.can.*;
+import org.team217.motion.PID;
+
 /**
  * A class that manages the {@code CANSparkMax} motor controller for FRC.
  * 
  * @author ThunderChickens 217, RevRobotics
  */
-public class CANSparkMax extends com.revrobotics.CANSparkMax {
+public class CANSparkMax extends com.revrobotics.CANSparkMax implements FrameDevice, CommandDevice {
     protected double zeroPosition = 0;
     protected int invertEnc = 1;
+
+    /** The sensor frame the getters read from, or {@code null} to read from the device. */
+    protected SensorFrame frame;
+    protected int frameSlot;
+
+    /** The cache used to skip repeated commands, or {@code null} if every command is sent. */
+    protected OutputCache outputCache;
+
+    /** The status frame periods last applied, or {@code null} if the vendor defaults are in use. */
+    protected TelemetryProfile telemetryProfile;
+
+    /** The counts of JNI calls made by this motor controller. */
+    protected final CANStats canStats;
+
+    /** The time between updates of the onboard PID controller, in seconds. */
+    private static final double ONBOARD_PERIOD = 0.001;
+
+    private CANPIDController pidController;
+    /** The onboard PID controller returned by {@link #getPIDController()}, which invalidates the output cache. */
+    private OutputPIDController outputPIDController;
+    /** The PID whose gains are mirrored by the onboard PID controller, or {@code null} if it is not in use. */
+    private PID onboardPID;
+    private ControlType onboardType;
+    private int onboardSlot;
+    /** The gains last uploaded, in native units; NaN if they must be uploaded. */
+    private double onboardP, onboardI, onboardD, onboardIZone, onboardIMax;
     
     /**
      * Constructor for creating a {@code CANSparkMax} motor controller for FRC.
@@ -21,6 +53,7 @@ public class CANSparkMax extends com.revrobotics.CANSparkMax {
      */
     public CANSparkMax(int deviceNumber, MotorType type) {
         super(deviceNumber, type);
+        canStats = CANStats.register("SparkMax " + deviceNumber);
     }
 
     /**
@@ -33,6 +66,7 @@ public class CANSparkMax extends com.revrobotics.CANSparkMax {
      */
     public CANSparkMax(int deviceNumber) {
         super(deviceNumber, MotorType.kBrushless);
+        canStats = CANStats.register("SparkMax " + deviceNumber);
     }
     
     /**
@@ -47,21 +81,423 @@ public class CANSparkMax extends com.revrobotics.CANSparkMax {
     
     /** Gets the encoder velocity, modified so {@code invertEncoder()}, {@code setEncoder()}, and {@code resetEncoder()} affect the return value. */
     public double getVelocity() {
-        return invertEnc * getEncoder().getVelocity();
+        return invertEnc * (frame == null ? readVelocity() : frame.getVelocity(frameSlot));
     }
 
     /** Gets the encoder position, modified so {@code invertEncoder()}, {@code setEncoder()}, and {@code resetEncoder()} affect the return value. */
     public double getPosition() {
-        return invertEnc * (getEncoder().getPosition() - zeroPosition);
+        return invertEnc * ((frame == null ? readPosition() : frame.getPosition(frameSlot)) - zeroPosition);
+    }
+
+    /** Gets the raw encoder position, from the sensor frame if the controller is registered with one, ignoring {@code invertEncoder()} and {@code setEncoder()}. */
+    public double getPositionRaw() {
+        return frame == null ? readPosition() : frame.getPosition(frameSlot);
+    }
+
+    /** Gets the raw encoder velocity, from the sensor frame if the controller is registered with one, ignoring {@code invertEncoder()}. */
+    public double getVelocityRaw() {
+        return frame == null ? readVelocity() : frame.getVelocity(frameSlot);
     }
 
     /** Sets the encoder value to the given position. This does not save to the motor controller and must be called each time code is deployed. */
     public void setEncoder(double position) {
-        zeroPosition = getEncoder().getPosition() - invertEnc * position;
+        zeroPosition = readPosition() - invertEnc * position;
     }
 
     /** Resets the encoder value to 0. This does not save to the motor controller and must be called each time code is deployed. */
     public void resetEncoder() {
         setEncoder(0);
     }
-}
\ No newline at end of file
+
+    /**
+     * Starts skipping speeds that match the last speed sent, so identical setpoints don't go over CAN every cycle.
+     * References set through {@link #getPIDController()} are always sent, and make the next speed be sent too.
+     * 
+     * @param tolerance
+     *        The largest change in speed that still counts as the same command
+     * @param keepAlive
+     *        The longest time between sends of the same speed, in seconds
+     */
+    public void enableOutputCache(double tolerance, double keepAlive) {
+        outputCache = new OutputCache(tolerance, keepAlive);
+    }
+
+    /** Stops skipping repeated speeds. */
+    public void disableOutputCache() {
+        outputCache = null;
+    }
+
+    /** Returns the counts of JNI calls made by this motor controller. */
+    public CANStats getCANStats() {
+        return canStats;
+    }
+
+    /** Removes the counts of JNI calls from the {@code CANStats} registry and frees the motor controller. */
+    @Override
+    public void close() {
+        CANStats.unregister(canStats);
+        super.close();
+    }
+
+    /** Returns the output cache with the sent and suppressed counts, or {@code null} if it is disabled. */
+    public OutputCache getOutputCache() {
+        return outputCache;
+    }
+
+    /**
+     * Sets the speed of the motor controller.
+     * If the output cache is enabled, speeds that match the last speed sent are skipped.
+     * 
+     * @param speed
+     *        The speed to set, from -1 to 1
+     */
+    @Override
+    public void set(double speed) {
+        OutputCache cache = outputCache;
+        if (cache == null || cache.shouldSend(ControlType.kDutyCycle, speed)) {
+            long start = CANStats.start();
+            super.set(speed);
+            canStats.record(CANStats.Category.Set, start);
+        }
+    }
+
+    /**
+     * Sets the motor controller to follow another motor controller.
+     * 
+     * @param leader
+     *        The type of motor controller to follow
+     * @param deviceID
+     *        The CAN ID of the motor controller to follow
+     * @param invert
+     *        {@code true} if the follower should be inverted from the leader
+     * @return
+     *        {@code CANError.kOk} if the follower mode was set
+     */
+    @Override
+    public CANError follow(ExternalFollower leader, int deviceID, boolean invert) {
+        invalidateOutputCache();
+        return super.follow(leader, deviceID, invert);
+    }
+
+    /**
+     * Returns the onboard PID controller. Unlike {@code getPIDController()}, the controller is only looked up once.
+     * References set through it skip {@link #invalidateOutputCache()}, so callers must check the output cache themselves.
+     */
+    protected CANPIDController getCachedPIDController() {
+        if (pidController == null) {
+            pidController = super.getPIDController();
+        }
+        return pidController;
+    }
+
+    /**
+     * Returns the onboard PID controller. Setting a reference through it bypasses the output cache,
+     * so it also makes sure the next {@link #set(double)} is sent even if it matches the last speed.
+     * The controller is only created once.
+     */
+    @Override
+    public CANPIDController getPIDController() {
+        if (outputPIDController == null) {
+            outputPIDController = new OutputPIDController();
+        }
+        return outputPIDController;
+    }
+
+    /**
+     * An onboard PID controller that makes sure the next speed is sent after every reference it sets.
+     * 
+     * @author ThunderChickens 217
+     */
+    private class OutputPIDController extends CANPIDController {
+        OutputPIDController() {
+            super(CANSparkMax.this);
+        }
+
+        @Override
+        public CANError setReference(double value, ControlType ctrl) {
+            invalidateOutputCache();
+            return super.setReference(value, ctrl);
+        }
+
+        @Override
+        public CANError setReference(double value, ControlType ctrl, int pidSlot) {
+            invalidateOutputCache();
+            return super.setReference(value, ctrl, pidSlot);
+        }
+
+        @Override
+        public CANError setReference(double value, ControlType ctrl, int pidSlot, double arbFeedforward) {
+            invalidateOutputCache();
+            return super.setReference(value, ctrl, pidSlot, arbFeedforward);
+        }
+
+        @Override
+        public CANError setReference(double value, ControlType ctrl, int pidSlot, double arbFeedforward, ArbFFUnits arbFFUnits) {
+            invalidateOutputCache();
+            return super.setReference(value, ctrl, pidSlot, arbFeedforward, arbFFUnits);
+        }
+    }
+
+    /**
+     * Sends a command from a {@code CANExecutor}. Duty cycle commands go through {@link #set(double)};
+     * any other mode sets the reference of the onboard PID controller.
+     * 
+     * @param mode
+     *        The {@code ControlType} of the command
+     * @param value
+     *        The setpoint in that mode
+     * 
+     * @exception IllegalArgumentException if {@code mode} is not a {@code ControlType}
+     */
+    @Override
+    public void applyCommand(Object mode, double value) {
+        if (mode == ControlType.kDutyCycle) {
+            set(value);
+        }
+        else if (mode instanceof ControlType) {
+            OutputCache cache = outputCache;
+            if (cache == null || cache.shouldSend(mode, value)) {
+                long start = CANStats.start();
+                getCachedPIDController().setReference(value, (ControlType)mode);
+                canStats.record(CANStats.Category.Set, start);
+            }
+        }
+        else {
+            throw new IllegalArgumentException("Illegal mode: " + mode + "\nMode must be a ControlType");
+        }
+    }
+
+    @Override
+    public boolean isSupported(Object mode) {
+        return mode instanceof ControlType;
+    }
+
+    /** Makes sure the next speed is sent, for when the output was changed without {@link #set(double)}. */
+    protected void invalidateOutputCache() {
+        OutputCache cache = outputCache;
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public double readPosition() {
+        long start = CANStats.start();
+        double position = getEncoder().getPosition();
+        canStats.record(CANStats.Category.Get, start);
+        return position;
+    }
+
+    @Override
+    public double readVelocity() {
+        long start = CANStats.start();
+        double velocity = getEncoder().getVelocity();
+        canStats.record(CANStats.Category.Get, start);
+        return velocity;
+    }
+
+    /** The frame does not read the {@code CANSparkMax} analog sensor, so this always returns 0. */
+    @Override
+    public int readAnalogRaw() {
+        return 0;
+    }
+
+    /**
+     * The frame does not read the {@code CANSparkMax} limit switches, since getting them also configures
+     * their polarity, so this always returns {@code false}.
+     */
+    @Override
+    public boolean readLimitFwd() {
+        return false;
+    }
+
+    /**
+     * The frame does not read the {@code CANSparkMax} limit switches, since getting them also configures
+     * their polarity, so this always returns {@code false}.
+     */
+    @Override
+    public boolean readLimitRev() {
+        return false;
+    }
+
+    @Override
+    public void attach(SensorFrame frame, int slot) {
+        this.frame = frame;
+        frameSlot = slot;
+    }
+
+    /**
+     * Sets the periodic frame periods from a telemetry profile. Profiles can be switched at any time.
+     * This controller only has general and feedback frames, so the sensor and control periods are not used.
+     * 
+     * @param profile
+     *        The telemetry profile
+     * @return
+     *        {@code true} if every period was set without an error
+     */
+    public boolean setTelemetryProfile(TelemetryProfile profile) {
+        telemetryProfile = profile;
+        long start = CANStats.start();
+        boolean isOk = setPeriodicFramePeriod(PeriodicFrame.kStatus0, profile.getGeneralPeriod()) == CANError.kOk;
+        isOk &= setPeriodicFramePeriod(PeriodicFrame.kStatus1, profile.getFeedbackPeriod()) == CANError.kOk;
+        isOk &= setPeriodicFramePeriod(PeriodicFrame.kStatus2, profile.getFeedbackPeriod()) == CANError.kOk;
+        canStats.record(CANStats.Category.Config, start, 3);
+        return isOk;
+    }
+
+    /** Returns the telemetry profile last applied, or {@code null} if the vendor defaults are in use. */
+    public TelemetryProfile getTelemetryProfile() {
+        return telemetryProfile;
+    }
+
+    /**
+     * Runs a PID on the motor controller instead of the roboRIO, using slot 0.
+     * The gains of {@code pid} are uploaded now, and any gains changed afterwards are uploaded by the next
+     * {@link #setOnboardTarget(double)} or {@link #syncOnboardGains()}.
+     * 
+     * @param pid
+     *        The PID whose gains to use, in the units of {@link #getPosition()} or {@link #getVelocity()} and seconds
+     * @param type
+     *        {@code ControlType.kPosition} or {@code ControlType.kVelocity}
+     * @return
+     *        {@code true} if every gain was uploaded
+     * 
+     * @exception IllegalArgumentException if {@code type} is not {@code kPosition} or {@code kVelocity}
+     */
+    public boolean enableOnboardPID(PID pid, ControlType type) {
+        return enableOnboardPID(pid, type, 0);
+    }
+
+    /**
+     * Runs a PID on the motor controller instead of the roboRIO.
+     * The gains of {@code pid} are uploaded now, and any gains changed afterwards are uploaded by the next
+     * {@link #setOnboardTarget(double)} or {@link #syncOnboardGains()}.
+     * 
+     * @param pid
+     *        The PID whose gains to use, in the units of {@link #getPosition()} or {@link #getVelocity()} and seconds
+     * @param type
+     *        {@code ControlType.kPosition} or {@code ControlType.kVelocity}
+     * @param slot
+     *        The gain slot of the onboard PID controller to use, from 0 to 3
+     * @return
+     *        {@code true} if every gain was uploaded
+     * 
+     * @exception IllegalArgumentException if {@code type} is not {@code kPosition} or {@code kVelocity}
+     */
+    public boolean enableOnboardPID(PID pid, ControlType type, int slot) {
+        if (type != ControlType.kPosition && type != ControlType.kVelocity) {
+            throw new IllegalArgumentException("Illegal type value: " + type + "\nValue must be kPosition or kVelocity");
+        }
+        onboardPID = pid;
+        onboardType = type;
+        onboardSlot = slot;
+        onboardP = onboardI = onboardD = onboardIZone = onboardIMax = Double.NaN;
+        invalidateOutputCache();
+        return syncOnboardGains();
+    }
+
+    /** Stops using the onboard PID controller. The motor keeps its last output until the next {@code set()}. */
+    public void disableOnboardPID() {
+        onboardPID = null;
+        invalidateOutputCache();
+    }
+
+    /** Returns the PID run by the onboard PID controller, or {@code null} if it is not in use. */
+    public PID getOnboardPID() {
+        return onboardPID;
+    }
+
+    /**
+     * Uploads the gains of the onboard PID that changed since they were last uploaded.
+     * Gains that fail to upload are tried again next time.
+     * 
+     * @return
+     *        {@code true} if the onboard PID controller has every current gain, or {@code false} if it is not in use
+     */
+    public boolean syncOnboardGains() {
+        PID pid = onboardPID;
+        if (pid == null) {
+            return false;
+        }
+        CANPIDController controller = getCachedPIDController();
+
+        // the onboard loop works on the raw encoder, so inverting the encoder flips the gains,
+        // and it runs every millisecond without scaling by time, so kI and kD are per update instead of per second
+        double kP = invertEnc * pid.getP();
+        double kI = invertEnc * pid.getI() * ONBOARD_PERIOD;
+        double kD = invertEnc * pid.getD() / ONBOARD_PERIOD;
+        double iZone = pid.getIntegratorRange();
+        // the PID caps the integrator's output, but the onboard limit caps the accumulated error itself,
+        // so the limit follows kI and is uploaded again whenever kI changes
+        double iMax = pid.getMaxIntegrator() == 0 || kI == 0 ? 0 : pid.getMaxIntegrator() / Math.abs(kI);
+
+        long start = CANStats.start();
+        int calls = 0;
+        if (kP != onboardP) {
+            calls++;
+            if (controller.setP(kP, onboardSlot) == CANError.kOk) {
+                onboardP = kP;
+            }
+        }
+        if (kI != onboardI) {
+            calls++;
+            if (controller.setI(kI, onboardSlot) == CANError.kOk) {
+                onboardI = kI;
+            }
+        }
+        if (kD != onboardD) {
+            calls++;
+            if (controller.setD(kD, onboardSlot) == CANError.kOk) {
+                onboardD = kD;
+            }
+        }
+        if (iZone != onboardIZone) {
+            calls++;
+            if (controller.setIZone(iZone, onboardSlot) == CANError.kOk) {
+                onboardIZone = iZone;
+            }
+        }
+        if (iMax != onboardIMax) {
+            calls++;
+            if (controller.setIMaxAccum(iMax, onboardSlot) == CANError.kOk) {
+                onboardIMax = iMax;
+            }
+        }
+        if (calls > 0) {
+            canStats.record(CANStats.Category.Config, start, calls);
+        }
+        return kP == onboardP && kI == onboardI && kD == onboardD && iZone == onboardIZone && iMax == onboardIMax;
+    }
+
+    /**
+     * Sets the target of the onboard PID controller, uploading any gains that changed first.
+     * If the output cache is enabled, targets that match the last target sent are skipped.
+     * 
+     * @param target
+     *        The target, in the units of {@link #getPosition()} or {@link #getVelocity()}
+     * @return
+     *        {@code false} if the onboard PID controller is not in use
+     */
+    public boolean setOnboardTarget(double target) {
+        PID pid = onboardPID;
+        if (pid == null) {
+            return false;
+        }
+        syncOnboardGains();
+        pid.setTarget(target);
+
+        // undo invertEncoder() and setEncoder() to get back to the raw encoder
+        double reference = invertEnc * target;
+        if (onboardType == ControlType.kPosition) {
+            reference += zeroPosition;
+        }
+
+        OutputCache cache = outputCache;
+        if (cache == null || cache.shouldSend(onboardType, reference)) {
+            long start = CANStats.start();
+            getCachedPIDController().setReference(reference, onboardType, onboardSlot);
+            canStats.record(CANStats.Category.Set, start);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,150 @@
+package org.team217.sim;
+
+/**
+ * A model of one or more identical DC motors driving an inertia through a gearbox.
+ * Each step is solved exactly for a constant voltage, so large steps stay stable.
+ * 
+ * @author ThunderChickens 217
+ */
+public class DCMotorModel implements PhysicsModel {
+    private static final double NOMINAL_VOLTAGE = 12;
+
+    /** The winding resistance, in ohms. */
+    private final double resistance;
+    /** The motor speed per volt, in radians/second/volt. */
+    private final double kV;
+    private final int motorCount;
+    private final double gearing;
+
+    /** The mechanism's velocity changes by {@code a * velocity + b * voltage} each second. */
+    private final double a, b;
+
+    /** The mechanism position, in radians. */
+    private double position = 0;
+    /** The mechanism velocity, in radians/second. */
+    private double velocity = 0;
+    private double voltage = 0;
+
+    /**
+     * Creates a new DC motor model from the motor's datasheet values at 12 volts.
+     * 
+     * @param stallTorque
+     *        The stall torque of one motor, in newton-meters
+     * @param stallCurrent
+     *        The stall current of one motor, in amps
+     * @param freeCurrent
+     *        The free current of one motor, in amps
+     * @param freeSpeed
+     *        The free speed of the motor, in rotations/minute
+     * @param motorCount
+     *        The number of motors driving the mechanism
+     * @param gearing
+     *        The gear reduction from the motors to the mechanism; greater than 1 is a reduction
+     * @param inertia
+     *        The moment of inertia of the mechanism, in kg*m^2
+     * 
+     * @exception IllegalArgumentException if a value is not positive
+     */
+    public DCMotorModel(double stallTorque, double stallCurrent, double freeCurrent, double freeSpeed, int motorCount, double gearing, double inertia) {
+        if (stallTorque <= 0 || stallCurrent <= 0 || freeSpeed <= 0 || motorCount <= 0 || gearing <= 0 || inertia <= 0) {
+            throw new IllegalArgumentException("Illegal motor model values\nValues must be positive");
+        }
+        resistance = NOMINAL_VOLTAGE / stallCurrent;
+        kV = freeSpeed * 2 * Math.PI / 60 / (NOMINAL_VOLTAGE - resistance * freeCurrent);
+        double kT = stallTorque / stallCurrent;
+        this.motorCount = motorCount;
+        this.gearing = gearing;
+
+        // inertia * acceleration = gearing * motorCount * kT * (voltage - gearing * velocity / kV) / resistance
+        b = gearing * motorCount * kT / (resistance * inertia);
+        a = -b * gearing / kV;
+    }
+
+    /**
+     * Creates a model of CIM motors.
+     * 
+     * @param motorCount
+     *        The number of motors driving the mechanism
+     * @param gearing
+     *        The gear reduction from the motors to the mechanism
+     * @param inertia
+     *        The moment of inertia of the mechanism, in kg*m^2
+     */
+    public static DCMotorModel cim(int motorCount, double gearing, double inertia) {
+        return new DCMotorModel(2.42, 133, 2.7, 5310, motorCount, gearing, inertia);
+    }
+
+    /**
+     * Creates a model of 775pro motors.
+     * 
+     * @param motorCount
+     *        The number of motors driving the mechanism
+     * @param gearing
+     *        The gear reduction from the motors to the mechanism
+     * @param inertia
+     *        The moment of inertia of the mechanism, in kg*m^2
+     */
+    public static DCMotorModel vex775Pro(int motorCount, double gearing, double inertia) {
+        return new DCMotorModel(0.71, 134, 0.7, 18730, motorCount, gearing, inertia);
+    }
+
+    /**
+     * Creates a model of Falcon 500 motors.
+     * 
+     * @param motorCount
+     *        The number of motors driving the mechanism
+     * @param gearing
+     *        The gear reduction from the motors to the mechanism
+     * @param inertia
+     *        The moment of inertia of the mechanism, in kg*m^2
+     */
+    public static DCMotorModel falcon500(int motorCount, double gearing, double inertia) {
+        return new DCMotorModel(4.69, 257, 1.5, 6380, motorCount, gearing, inertia);
+    }
+
+    /**
+     * Creates a model of NEO motors.
+     * 
+     * @param motorCount
+     *        The number of motors driving the mechanism
+     * @param gearing
+     *        The gear reduction from the motors to the mechanism
+     * @param inertia
+     *        The moment of inertia of the mechanism, in kg*m^2
+     */
+    public static DCMotorModel neo(int motorCount, double gearing, double inertia) {
+        return new DCMotorModel(2.6, 105, 1.8, 5676, motorCount, gearing, inertia);
+    }
+
+    @Override
+    public void update(double voltage, double dt) {
+        this.voltage = voltage;
+        double steady = -b * voltage / a; // the velocity the mechanism settles at
+        double decay = Math.exp(a * dt);
+
+        // exact solution of velocity' = a * velocity + b * voltage over the step
+        position += steady * dt + (velocity - steady) * (decay - 1) / a;
+        velocity = steady + (velocity - steady) * decay;
+    }
+
+    @Override
+    public double getPosition() {
+        return position / (2 * Math.PI);
+    }
+
+    @Override
+    public double getVelocity() {
+        return velocity / (2 * Math.PI);
+    }
+
+    @Override
+    public void reset(double position) {
+        this.position = position * 2 * Math.PI;
+        velocity = 0;
+    }
+
+    /** Returns the total current drawn by the motors during the last step, in amps. */
+    public double getCurrent() {
+        return motorCount * (voltage - gearing * velocity / kV) / resistance;
+    }
+}
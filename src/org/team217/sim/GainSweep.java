@@ -0,0 +1,437 @@
+package org.team217.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import org.team217.motion.*;
+
+/**
+ * Searches PID gains and acceleration limits by simulating a step response for each candidate in parallel.
+ * Every simulation runs the same {@link PID}, {@link AccelController}, and {@link MotionController} code that runs on
+ * the robot against its own copy of the plant, so simulations share nothing and the search scales with the number of cores.
+ * The controller output is a duty cycle; the plant position is in rotations and starts at 0.
+ * 
+ * @author ThunderChickens 217
+ */
+public class GainSweep {
+    private final Supplier<? extends PhysicsModel> plant;
+    private final double target;
+    private final int steps;
+    private final double period;
+
+    private double voltage = 12;
+    private double settlingBand = 0.02;
+
+    /**
+     * The gains and limits of one simulation.
+     * 
+     * @author ThunderChickens 217
+     */
+    public static class Candidate {
+        private final double kP, kI, kD;
+        private final double integratorRange, maxIntegrator;
+        private final double targetAccel, targetJerk;
+
+        /**
+         * Creates a new candidate.
+         * 
+         * @param kP
+         *        The proportional coefficient
+         * @param kI
+         *        The integral coefficient
+         * @param kD
+         *        The derivative coefficient
+         * @param integratorRange
+         *        The range of the position error for which the integrator will run; 0 disables the range
+         * @param maxIntegrator
+         *        The maximum output of the integrator; 0 disables the maximum integrator output
+         * @param targetAccel
+         *        The target acceleration of the output, in duty cycle/second; 0 disables acceleration control
+         * @param targetJerk
+         *        The target jerk of the output, in duty cycle/second^2; 0 disables jerk control
+         * 
+         * @exception IllegalArgumentException if a value is negative
+         * 
+         * @author ThunderChickens 217
+         */
+        public Candidate(double kP, double kI, double kD, double integratorRange, double maxIntegrator, double targetAccel, double targetJerk) {
+            if (kP < 0 || kI < 0 || kD < 0 || integratorRange < 0 || maxIntegrator < 0 || targetAccel < 0 || targetJerk < 0) {
+                throw new IllegalArgumentException("Illegal candidate values\nValues must be non-negative");
+            }
+            this.kP = kP;
+            this.kI = kI;
+            this.kD = kD;
+            this.integratorRange = integratorRange;
+            this.maxIntegrator = maxIntegrator;
+            this.targetAccel = targetAccel;
+            this.targetJerk = targetJerk;
+        }
+
+        /** Returns the proportional coefficient. */
+        public double getP() {
+            return kP;
+        }
+
+        /** Returns the integral coefficient. */
+        public double getI() {
+            return kI;
+        }
+
+        /** Returns the derivative coefficient. */
+        public double getD() {
+            return kD;
+        }
+
+        /** Returns the range of the position error for which the integrator will run. */
+        public double getIntegratorRange() {
+            return integratorRange;
+        }
+
+        /** Returns the maximum output of the integrator. */
+        public double getMaxIntegrator() {
+            return maxIntegrator;
+        }
+
+        /** Returns the target acceleration of the output, in duty cycle/second, or 0 if there is no acceleration control. */
+        public double getTargetAccel() {
+            return targetAccel;
+        }
+
+        /** Returns the target jerk of the output, in duty cycle/second^2, or 0 if there is no jerk control. */
+        public double getTargetJerk() {
+            return targetJerk;
+        }
+
+        /**
+         * Creates a new PID controller with the candidate's gains.
+         * 
+         * @param period
+         *        The period between controller updates, in seconds
+         */
+        public PID createPID(double period) {
+            PID pid = new PID(kP, kI, kD, period);
+            pid.setIntegratorRange(integratorRange);
+            pid.setMaxIntegrator(maxIntegrator);
+            return pid;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("kP=%g kI=%g kD=%g iZone=%g iMax=%g accel=%g jerk=%g", kP, kI, kD, integratorRange, maxIntegrator, targetAccel, targetJerk);
+        }
+    }
+
+    /**
+     * The step response of one simulation.
+     * Lower is better for every metric.
+     * 
+     * @author ThunderChickens 217
+     */
+    public static class Score {
+        private final Candidate candidate;
+        private final double riseTime, overshoot, settlingTime, effort;
+
+        private Score(Candidate candidate, double riseTime, double overshoot, double settlingTime, double effort) {
+            this.candidate = candidate;
+            this.riseTime = riseTime;
+            this.overshoot = overshoot;
+            this.settlingTime = settlingTime;
+            this.effort = effort;
+        }
+
+        /** Returns the simulated candidate. */
+        public Candidate getCandidate() {
+            return candidate;
+        }
+
+        /** Returns the time to go from 10% to 90% of the step, in seconds, or infinity if it never got there. */
+        public double getRiseTime() {
+            return riseTime;
+        }
+
+        /** Returns how far the position went past the target, as a fraction of the step. */
+        public double getOvershoot() {
+            return overshoot;
+        }
+
+        /** Returns the time after which the position stayed within the settling band, in seconds, or infinity if it never settled. */
+        public double getSettlingTime() {
+            return settlingTime;
+        }
+
+        /** Returns the integral of the squared duty cycle over the simulation, in seconds. */
+        public double getEffort() {
+            return effort;
+        }
+
+        /**
+         * Returns {@code true} if this score is no worse than another in every metric and better in at least one.
+         * 
+         * @param other
+         *        The score to compare to
+         */
+        public boolean dominates(Score other) {
+            boolean isNoWorse = riseTime <= other.riseTime && overshoot <= other.overshoot && settlingTime <= other.settlingTime && effort <= other.effort;
+            boolean isBetter = riseTime < other.riseTime || overshoot < other.overshoot || settlingTime < other.settlingTime || effort < other.effort;
+            return isNoWorse && isBetter;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("rise=%.3fs overshoot=%.1f%% settle=%.3fs effort=%.3f [%s]", riseTime, overshoot * 100, settlingTime, effort, candidate);
+        }
+    }
+
+    /**
+     * Creates a new gain sweep for a step response.
+     * 
+     * @param plant
+     *        Creates a new copy of the plant for each simulation
+     * @param target
+     *        The target position, in rotations
+     * @param duration
+     *        The length of each simulation, in seconds
+     * @param period
+     *        The period between controller updates, in seconds
+     * 
+     * @exception IllegalArgumentException if the target is 0 or the duration or period is not positive
+     * 
+     * @author ThunderChickens 217
+     */
+    public GainSweep(Supplier<? extends PhysicsModel> plant, double target, double duration, double period) {
+        if (target == 0) {
+            throw new IllegalArgumentException("Illegal target value: " + target + "\nValue must not be 0");
+        }
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Illegal duration value: " + duration + "\nValue must be positive");
+        }
+        if (period <= 0) {
+            throw new IllegalArgumentException("Illegal period value: " + period + "\nValue must be positive");
+        }
+        this.plant = plant;
+        this.target = target;
+        this.steps = (int)Math.ceil(duration / period);
+        this.period = period;
+    }
+
+    /**
+     * Sets the voltage a full duty cycle applies to the plant.
+     * 
+     * @param voltage
+     *        The battery voltage, in volts
+     * @return
+     *        {@code false} if the voltage is not positive
+     */
+    public boolean setVoltage(double voltage) {
+        if (voltage <= 0) {
+            return false;
+        }
+        this.voltage = voltage;
+        return true;
+    }
+
+    /**
+     * Sets the band around the target the position must stay within to count as settled.
+     * 
+     * @param settlingBand
+     *        The band, as a fraction of the step
+     * @return
+     *        {@code false} if the band is not positive
+     */
+    public boolean setSettlingBand(double settlingBand) {
+        if (settlingBand <= 0) {
+            return false;
+        }
+        this.settlingBand = settlingBand;
+        return true;
+    }
+
+    /**
+     * Returns every combination of the given values.
+     * 
+     * @param kP
+     *        The proportional coefficients to try
+     * @param kI
+     *        The integral coefficients to try
+     * @param kD
+     *        The derivative coefficients to try
+     * @param integratorRange
+     *        The integrator ranges to try
+     * @param maxIntegrator
+     *        The maximum integrator outputs to try
+     * @param targetAccel
+     *        The target accelerations to try, in duty cycle/second
+     * @param targetJerk
+     *        The target jerks to try, in duty cycle/second^2
+     */
+    public static List<Candidate> grid(double[] kP, double[] kI, double[] kD, double[] integratorRange, double[] maxIntegrator, double[] targetAccel, double[] targetJerk) {
+        List<Candidate> candidates = new ArrayList<>(kP.length * kI.length * kD.length * integratorRange.length * maxIntegrator.length * targetAccel.length * targetJerk.length);
+        for (double p : kP) {
+            for (double i : kI) {
+                for (double d : kD) {
+                    for (double range : integratorRange) {
+                        for (double max : maxIntegrator) {
+                            for (double accel : targetAccel) {
+                                for (double jerk : targetJerk) {
+                                    candidates.add(new Candidate(p, i, d, range, max, accel, jerk));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Simulates the step response of one candidate on the calling thread.
+     * 
+     * @param candidate
+     *        The gains and limits to simulate
+     */
+    public Score simulate(Candidate candidate) {
+        PhysicsModel model = plant.get();
+        model.reset(0);
+        PID pid = candidate.createPID(period);
+        pid.setTarget(target);
+
+        AccelController accel = null;
+        MotionController motion = null;
+        if (candidate.targetJerk > 0) {
+            motion = new MotionController(candidate.targetAccel > 0 ? candidate.targetAccel : Double.MAX_VALUE, candidate.targetJerk, 1);
+            motion.setPeriod(period);
+        }
+        else if (candidate.targetAccel > 0) {
+            accel = new AccelController(candidate.targetAccel, 1);
+            accel.setPeriod(period);
+        }
+
+        double rise10 = Double.NaN, rise90 = Double.NaN;
+        double peak = 0;
+        double lastUnsettled = 0;
+        double effort = 0;
+
+        for (int i = 1; i <= steps; i++) {
+            double output = pid.getOutput(model.getPosition());
+            if (motion != null) {
+                output = motion.getOutput(output);
+            }
+            else if (accel != null) {
+                output = accel.getOutput(output);
+            }
+            output = Math.max(-1, Math.min(1, output));
+            model.update(output * voltage, period);
+            effort += output * output * period;
+
+            double time = i * period;
+            double progress = model.getPosition() / target; // 0 at the start, 1 at the target
+            if (Double.isNaN(rise10) && progress >= 0.1) {
+                rise10 = time;
+            }
+            if (Double.isNaN(rise90) && progress >= 0.9) {
+                rise90 = time;
+            }
+            peak = Math.max(peak, progress);
+            if (Math.abs(progress - 1) > settlingBand) {
+                lastUnsettled = time;
+            }
+        }
+
+        double riseTime = Double.isNaN(rise90) ? Double.POSITIVE_INFINITY : rise90 - rise10;
+        double settlingTime = lastUnsettled >= steps * period ? Double.POSITIVE_INFINITY : lastUnsettled;
+        return new Score(candidate, riseTime, Math.max(0, peak - 1), settlingTime, effort);
+    }
+
+    /**
+     * Simulates every candidate in parallel on the common fork/join pool.
+     * 
+     * @param candidates
+     *        The candidates to simulate
+     * @return
+     *        The scores, in the same order as the candidates
+     */
+    public List<Score> run(List<Candidate> candidates) {
+        Score[] scores = new Score[candidates.size()];
+        IntStream.range(0, scores.length).parallel().forEach(i -> scores[i] = simulate(candidates.get(i)));
+        return Arrays.asList(scores);
+    }
+
+    /**
+     * Simulates every candidate in parallel on the given number of threads.
+     * 
+     * @param candidates
+     *        The candidates to simulate
+     * @param threads
+     *        The number of threads to simulate on
+     * @return
+     *        The scores, in the same order as the candidates
+     * 
+     * @exception IllegalArgumentException if {@code threads} is not positive
+     */
+    public List<Score> run(List<Candidate> candidates, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Illegal threads value: " + threads + "\nValue must be positive");
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> run(candidates)).get(); // a parallel stream started inside a pool runs on that pool
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the scores that no other score dominates, best first.
+     * 
+     * @param scores
+     *        The scores to search
+     * @param ranking
+     *        The order to rank the front in, such as by settling time
+     */
+    public static List<Score> paretoFront(List<Score> scores, Comparator<Score> ranking) {
+        List<Score> front = new ArrayList<>();
+        for (Score score : scores) {
+            boolean isDominated = false;
+            for (int i = front.size() - 1; i >= 0; i--) {
+                Score other = front.get(i);
+                if (other.dominates(score)) {
+                    isDominated = true;
+                    break;
+                }
+                if (score.dominates(other)) {
+                    front.remove(i);
+                }
+            }
+            if (!isDominated) {
+                front.add(score);
+            }
+        }
+        front.sort(ranking);
+        return front;
+    }
+
+    /**
+     * Returns the scores that no other score dominates, ranked by settling time, then effort.
+     * 
+     * @param scores
+     *        The scores to search
+     */
+    public static List<Score> paretoFront(List<Score> scores) {
+        return paretoFront(scores, Comparator.comparingDouble(Score::getSettlingTime).thenComparingDouble(Score::getEffort));
+    }
+}
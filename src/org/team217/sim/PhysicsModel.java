@@ -0,0 +1,32 @@
+package org.team217.sim;
+
+/**
+ * A model of a mechanism driven by a voltage, stepped forward in simulated time.
+ * 
+ * @author ThunderChickens 217
+ */
+public interface PhysicsModel {
+    /**
+     * Advances the model.
+     * 
+     * @param voltage
+     *        The voltage applied over the step, in volts
+     * @param dt
+     *        The length of the step, in seconds
+     */
+    void update(double voltage, double dt);
+
+    /** Returns the position of the mechanism, in rotations. */
+    double getPosition();
+
+    /** Returns the velocity of the mechanism, in rotations/second. */
+    double getVelocity();
+
+    /**
+     * Moves the mechanism to a position and stops it.
+     * 
+     * @param position
+     *        The new position, in rotations
+     */
+    void reset(double position);
+}
@@ -0,0 +1,93 @@
+package org.team217.sim;
+
+import java.util.function.DoubleSupplier;
+import edu.wpi.first.wpilibj.AnalogGyro;
+import edu.wpi.first.wpilibj.simulation.AnalogGyroSim;
+
+/**
+ * A simulated gyro that integrates a turn rate into a heading.
+ * Use {@link #getAngle()} as the heading source for anything that takes one, such as a
+ * {@code HeadingHistory}, or {@link #bind(AnalogGyro)} it to an {@code AnalogGyro} through the HAL simulation.
+ * The {@code PigeonIMU} has no simulation support in this Phoenix version, so it can only be replaced by
+ * {@link #getAngle()}.
+ * 
+ * @author ThunderChickens 217
+ */
+public class SimGyro implements SimulatedDevice {
+    private final DoubleSupplier rate;
+    private volatile double angle = 0;
+    private volatile double lastRate = 0;
+    private AnalogGyroSim gyroSim;
+
+    /**
+     * Creates a new simulated gyro whose turn rate is set with {@link #setRate(double)}.
+     */
+    public SimGyro() {
+        this(null);
+    }
+
+    /**
+     * Creates a new simulated gyro that reads its turn rate from a model, such as a drivetrain.
+     * 
+     * @param rate
+     *        The turn rate, in degrees/second
+     */
+    public SimGyro(DoubleSupplier rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Pushes the simulated heading into an {@code AnalogGyro} through the HAL simulation every step.
+     * This needs the WPILib desktop simulation libraries.
+     * 
+     * @param gyro
+     *        The gyro to drive
+     */
+    public synchronized void bind(AnalogGyro gyro) {
+        gyroSim = new AnalogGyroSim(gyro);
+        gyroSim.setAngle(angle);
+    }
+
+    /**
+     * Sets the turn rate, if the gyro was not created with a rate model.
+     * 
+     * @param degreesPerSecond
+     *        The turn rate, in degrees/second
+     */
+    public void setRate(double degreesPerSecond) {
+        lastRate = degreesPerSecond;
+    }
+
+    /** Returns the turn rate, in degrees/second. */
+    public double getRate() {
+        return lastRate;
+    }
+
+    /**
+     * Sets the heading.
+     * 
+     * @param degrees
+     *        The heading, in degrees
+     */
+    public void setAngle(double degrees) {
+        angle = degrees;
+    }
+
+    /** Returns the heading, in degrees. */
+    public double getAngle() {
+        return angle;
+    }
+
+    @Override
+    public synchronized void step(double dt) {
+        if (rate != null) {
+            lastRate = rate.getAsDouble();
+        }
+        angle += lastRate * dt;
+
+        if (gyroSim != null) {
+            gyroSim.setAngle(angle);
+            gyroSim.setRate(lastRate);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.team217.sim;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.revrobotics.ControlType;
+import edu.wpi.first.wpilibj.SpeedController;
+import org.team217.can.*;
+import org.team217.motion.PID;
+
+/**
+ * A simulated motor controller that drives a {@link PhysicsModel} instead of hardware.
+ * It reports its sensor in the same native units as the motor controller it stands in for, accepts the
+ * same commands through {@link CommandDevice}, and can be registered with a {@link SensorFrame}, so
+ * control code written against those interfaces runs unchanged on a desktop JVM.
+ * A real {@code WPI_TalonSRX} can instead be driven through the Phoenix simulation with a {@link SimTalonSRX};
+ * Phoenix 5.19 has no simulation for the Talon FX, and REV 1.5 has no way to set the Spark MAX's simulated sensor, so those are replaced by this class.
+ * 
+ * @author ThunderChickens 217
+ */
+public class SimMotor implements SpeedController, FrameDevice, CommandDevice, SimulatedDevice {
+    private final PhysicsModel model;
+    /** The sensor units per rotation. */
+    private final double positionScale;
+    /** The sensor velocity units per rotation/second. */
+    private final double velocityScale;
+
+    private double busVoltage = 12;
+    private boolean isInverted = false;
+    private volatile double output = 0;
+
+    /** The closed-loop setpoint mode, or {@code null} if the output is set directly. */
+    private Object closedLoopMode = null;
+    private double setpoint = 0;
+    private PID closedLoop;
+
+    private volatile int analogRaw = 0;
+    private volatile boolean limitFwd = false, limitRev = false;
+
+    /**
+     * Creates a new simulated motor controller.
+     * 
+     * @param model
+     *        The mechanism the motor controller drives
+     * @param positionScale
+     *        The sensor units per rotation of the mechanism
+     * @param velocityScale
+     *        The sensor velocity units per rotation/second of the mechanism
+     */
+    public SimMotor(PhysicsModel model, double positionScale, double velocityScale) {
+        this.model = model;
+        this.positionScale = positionScale;
+        this.velocityScale = velocityScale;
+    }
+
+    /**
+     * Creates a simulated {@code TalonSRX} with a quadrature encoder on the mechanism.
+     * 
+     * @param model
+     *        The mechanism the motor controller drives
+     * @param countsPerRotation
+     *        The encoder counts per rotation of the mechanism, such as 4096 for a CTRE Mag Encoder
+     */
+    public static SimMotor talonSRX(PhysicsModel model, double countsPerRotation) {
+        return new SimMotor(model, countsPerRotation, countsPerRotation / 10); // velocity is per 100 ms
+    }
+
+    /**
+     * Creates a simulated {@code TalonFX} using its integrated sensor.
+     * 
+     * @param model
+     *        The mechanism the motor controller drives
+     * @param gearing
+     *        The gear reduction from the motor to the mechanism
+     */
+    public static SimMotor talonFX(PhysicsModel model, double gearing) {
+        return new SimMotor(model, 2048 * gearing, 204.8 * gearing); // velocity is per 100 ms
+    }
+
+    /**
+     * Creates a simulated {@code CANSparkMax} using its built-in encoder.
+     * 
+     * @param model
+     *        The mechanism the motor controller drives
+     * @param gearing
+     *        The gear reduction from the motor to the mechanism
+     */
+    public static SimMotor sparkMax(PhysicsModel model, double gearing) {
+        return new SimMotor(model, gearing, 60 * gearing); // rotations and rotations/minute
+    }
+
+    /** Returns the mechanism the motor controller drives. */
+    public PhysicsModel getModel() {
+        return model;
+    }
+
+    /**
+     * Sets the battery voltage the output is scaled by.
+     * 
+     * @param voltage
+     *        The battery voltage, in volts
+     * @return
+     *        {@code false} if the voltage is negative
+     */
+    public boolean setBusVoltage(double voltage) {
+        if (voltage < 0) {
+            return false;
+        }
+        busVoltage = voltage;
+        return true;
+    }
+
+    /** Returns the battery voltage, in volts. */
+    public double getBusVoltage() {
+        return busVoltage;
+    }
+
+    /** Returns the voltage applied to the motor, in volts. */
+    public double getAppliedVoltage() {
+        return (isInverted ? -output : output) * busVoltage;
+    }
+
+    /**
+     * Sets the PID used for position and velocity commands, standing in for the motor controller's onboard closed loop.
+     * Its period should match the simulation step.
+     * 
+     * @param pid
+     *        The PID, in sensor units; its output is the duty cycle
+     */
+    public synchronized void setClosedLoop(PID pid) {
+        closedLoop = pid;
+    }
+
+    /**
+     * Sets the duty cycle of the motor controller.
+     * 
+     * @param speed
+     *        The duty cycle, from -1 to 1
+     */
+    @Override
+    public synchronized void set(double speed) {
+        closedLoopMode = null;
+        output = Math.max(-1, Math.min(1, speed));
+    }
+
+    /** Returns the duty cycle of the motor controller. */
+    @Override
+    public double get() {
+        return output;
+    }
+
+    /**
+     * Sends a command in a CTRE {@code ControlMode} or a REV {@code ControlType}.
+     * Duty cycle, voltage, and neutral commands are applied directly; position and velocity commands run the closed loop.
+     * 
+     * @param mode
+     *        The control mode
+     * @param value
+     *        The setpoint in that mode
+     * 
+     * @exception IllegalArgumentException if the mode is not supported, or is closed-loop without a closed loop set
+     */
+    @Override
+    public synchronized void applyCommand(Object mode, double value) {
+        if (mode == ControlMode.PercentOutput || mode == ControlType.kDutyCycle) {
+            set(value);
+        }
+        else if (mode == ControlType.kVoltage) {
+            set(busVoltage == 0 ? 0 : value / busVoltage);
+        }
+        else if (mode == ControlMode.Disabled) {
+            set(0);
+        }
+        else if (mode == ControlMode.Position || mode == ControlType.kPosition || mode == ControlMode.Velocity || mode == ControlType.kVelocity) {
+            if (closedLoop == null) {
+                throw new IllegalArgumentException("Illegal mode: " + mode + "\nA closed loop must be set first");
+            }
+            closedLoopMode = mode;
+            setpoint = value;
+        }
+        else {
+            throw new IllegalArgumentException("Illegal mode: " + mode + "\nMode is not supported in simulation");
+        }
+    }
+
+    @Override
+    public synchronized boolean isSupported(Object mode) {
+        if (mode == ControlMode.Position || mode == ControlType.kPosition || mode == ControlMode.Velocity || mode == ControlType.kVelocity) {
+            return closedLoop != null;
+        }
+        return mode == ControlMode.PercentOutput || mode == ControlType.kDutyCycle || mode == ControlType.kVoltage || mode == ControlMode.Disabled;
+    }
+
+    @Override
+    public synchronized void step(double dt) {
+        if (closedLoopMode != null) {
+            boolean isPosition = closedLoopMode == ControlMode.Position || closedLoopMode == ControlType.kPosition;
+            double measured = isPosition ? readPosition() : readVelocity();
+            output = Math.max(-1, Math.min(1, closedLoop.getOutput(measured, setpoint)));
+        }
+        model.update(getAppliedVoltage(), dt);
+    }
+
+    @Override
+    public synchronized void setInverted(boolean isInverted) {
+        this.isInverted = isInverted;
+    }
+
+    @Override
+    public boolean getInverted() {
+        return isInverted;
+    }
+
+    @Override
+    public void disable() {
+        set(0);
+    }
+
+    @Override
+    public void stopMotor() {
+        set(0);
+    }
+
+    /**
+     * Sets the duty cycle of the motor controller.
+     * 
+     * @param output
+     *        The duty cycle, from -1 to 1
+     */
+    public void pidWrite(double output) {
+        set(output);
+    }
+
+    /**
+     * Sets the sensor position.
+     * 
+     * @param position
+     *        The new position, in sensor units
+     */
+    public synchronized void setPosition(double position) {
+        model.reset((isInverted ? -position : position) / positionScale);
+    }
+
+    /**
+     * Sets the raw analog input.
+     * 
+     * @param analogRaw
+     *        The analog value, from 0 to 1023
+     */
+    public void setAnalogRaw(int analogRaw) {
+        this.analogRaw = analogRaw;
+    }
+
+    /**
+     * Sets the limit switches.
+     * 
+     * @param isFwdClosed
+     *        {@code true} if the forward limit switch is closed
+     * @param isRevClosed
+     *        {@code true} if the reverse limit switch is closed
+     */
+    public void setLimits(boolean isFwdClosed, boolean isRevClosed) {
+        limitFwd = isFwdClosed;
+        limitRev = isRevClosed;
+    }
+
+    /** Returns the sensor position, in sensor units. The sensor follows the motor's inversion. */
+    @Override
+    public synchronized double readPosition() {
+        double position = model.getPosition() * positionScale;
+        return isInverted ? -position : position;
+    }
+
+    /** Returns the sensor velocity, in sensor velocity units. The sensor follows the motor's inversion. */
+    @Override
+    public synchronized double readVelocity() {
+        double velocity = model.getVelocity() * velocityScale;
+        return isInverted ? -velocity : velocity;
+    }
+
+    @Override
+    public int readAnalogRaw() {
+        return analogRaw;
+    }
+
+    @Override
+    public boolean readLimitFwd() {
+        return limitFwd;
+    }
+
+    @Override
+    public boolean readLimitRev() {
+        return limitRev;
+    }
+
+    /** The simulated motor controller has no getters to redirect, so nothing changes when it is attached. */
+    @Override
+    public void attach(SensorFrame frame, int slot) {
+    }
+}
@@ -0,0 +1,115 @@
+package org.team217.sim;
+
+import com.ctre.phoenix.motorcontrol.TalonSRXSimCollection;
+import org.team217.ctre.WPI_TalonSRX;
+
+/**
+ * Drives a real {@link WPI_TalonSRX} through the Phoenix simulation from a {@link PhysicsModel}, so the
+ * wrapper itself, including its onboard closed loops and motion profiles, runs on a desktop JVM.
+ * Each step applies the Talon's simulated output voltage to the model and writes the model's position and
+ * velocity back as the quadrature sensor. The sensor is written in the direction of the output voltage, so
+ * {@code setInverted()} and {@code setSensorPhase()} on the Talon behave as they do on a robot.
+ * This needs the Phoenix and WPILib desktop simulation libraries, and the Talon only drives its output while
+ * the simulated robot is enabled. Phoenix 5.19 only simulates the Talon SRX and Victor SPX, so a
+ * {@code TalonFX} or {@code PigeonIMU} must be replaced by a {@link SimMotor} or {@link SimGyro} instead.
+ * 
+ * @author ThunderChickens 217
+ */
+public class SimTalonSRX implements SimulatedDevice {
+    private final TalonSRXSimCollection simCollection;
+    private final PhysicsModel model;
+    private final double countsPerRotation;
+
+    private double busVoltage = 12;
+    private volatile double appliedVoltage = 0;
+
+    /**
+     * Creates a new simulated Talon SRX with a quadrature encoder on the mechanism.
+     * 
+     * @param talon
+     *        The Talon to drive
+     * @param model
+     *        The mechanism the Talon drives
+     * @param countsPerRotation
+     *        The encoder counts per rotation of the mechanism, such as 4096 for a CTRE Mag Encoder
+     * 
+     * @author ThunderChickens 217
+     */
+    public SimTalonSRX(WPI_TalonSRX talon, PhysicsModel model, double countsPerRotation) {
+        this.simCollection = talon.getSimCollection();
+        this.model = model;
+        this.countsPerRotation = countsPerRotation;
+        simCollection.setBusVoltage(busVoltage);
+        writeSensor();
+    }
+
+    /** Returns the mechanism the Talon drives. */
+    public PhysicsModel getModel() {
+        return model;
+    }
+
+    /**
+     * Sets the battery voltage the Talon's output is scaled by.
+     * 
+     * @param voltage
+     *        The battery voltage, in volts
+     * @return
+     *        {@code false} if the voltage is negative
+     */
+    public synchronized boolean setBusVoltage(double voltage) {
+        if (voltage < 0) {
+            return false;
+        }
+        busVoltage = voltage;
+        simCollection.setBusVoltage(voltage);
+        return true;
+    }
+
+    /** Returns the battery voltage, in volts. */
+    public synchronized double getBusVoltage() {
+        return busVoltage;
+    }
+
+    /** Returns the voltage the Talon applied to the motor over the last step, in volts. */
+    public double getAppliedVoltage() {
+        return appliedVoltage;
+    }
+
+    /**
+     * Sets the raw analog input.
+     * 
+     * @param analogRaw
+     *        The analog value, from 0 to 1023
+     */
+    public synchronized void setAnalogRaw(int analogRaw) {
+        simCollection.setAnalogPosition(analogRaw);
+    }
+
+    /**
+     * Sets the limit switches.
+     * 
+     * @param isFwdClosed
+     *        {@code true} if the forward limit switch is closed
+     * @param isRevClosed
+     *        {@code true} if the reverse limit switch is closed
+     */
+    public synchronized void setLimits(boolean isFwdClosed, boolean isRevClosed) {
+        simCollection.setLimitFwd(isFwdClosed);
+        simCollection.setLimitRev(isRevClosed);
+    }
+
+    @Override
+    public synchronized void step(double dt) {
+        simCollection.setBusVoltage(busVoltage);
+        double voltage = simCollection.getMotorOutputLeadVoltage();
+        model.update(voltage, dt);
+        appliedVoltage = voltage;
+        writeSensor();
+    }
+
+    /** Writes the model's position and velocity to the Talon's quadrature sensor. */
+    private void writeSensor() {
+        simCollection.setQuadratureRawPosition((int)Math.round(model.getPosition() * countsPerRotation));
+        simCollection.setQuadratureVelocity((int)Math.round(model.getVelocity() * countsPerRotation / 10)); // per 100 ms
+    }
+}
@@ -0,0 +1,17 @@
+package org.team217.sim;
+
+/**
+ * A simulated device that a {@link Simulation} steps forward in time.
+ * 
+ * @author ThunderChickens 217
+ */
+@FunctionalInterface
+public interface SimulatedDevice {
+    /**
+     * Advances the device.
+     * 
+     * @param dt
+     *        The length of the step, in seconds
+     */
+    void step(double dt);
+}
@@ -0,0 +1,103 @@
+package org.team217.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import org.team217.Clock;
+
+/**
+ * Steps a set of simulated devices forward in simulated time, as fast as the JVM can run them.
+ * Devices are stepped in the order they were added, so add the ones that produce values, such as motors,
+ * before the ones that read them, such as gyros and encoders.
+ * The simulation is also a {@link Clock}, so timed components such as a {@code TimedPID} can follow simulated time.
+ * 
+ * @author ThunderChickens 217
+ */
+public class Simulation implements Clock {
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+    private double time = 0;
+    private boolean isHALTiming = false;
+
+    /**
+     * Adds a device to the simulation.
+     * 
+     * @param device
+     *        The device to add
+     */
+    public synchronized void add(SimulatedDevice device) {
+        devices.add(device);
+    }
+
+    /**
+     * Makes the HAL clock, and with it the FPGA time, follow the simulation instead of the wall clock.
+     * This needs the WPILib desktop simulation libraries.
+     * 
+     * @param isHALTiming
+     *        {@code true} if the HAL clock should follow the simulation
+     */
+    public synchronized void setHALTiming(boolean isHALTiming) {
+        if (isHALTiming) {
+            SimHooks.pauseTiming();
+        }
+        else if (this.isHALTiming) {
+            SimHooks.resumeTiming();
+        }
+        this.isHALTiming = isHALTiming;
+    }
+
+    /** Returns the simulated time since the simulation started, in seconds. */
+    @Override
+    public synchronized double getTime() {
+        return time;
+    }
+
+    /**
+     * Advances every device by one step.
+     * 
+     * @param dt
+     *        The length of the step, in seconds
+     * 
+     * @exception IllegalArgumentException if {@code dt} is not positive
+     */
+    public synchronized void step(double dt) {
+        if (dt <= 0) {
+            throw new IllegalArgumentException("Illegal dt value: " + dt + "\nValue must be positive");
+        }
+        for (SimulatedDevice device : devices) {
+            device.step(dt);
+        }
+        time += dt;
+        if (isHALTiming) {
+            SimHooks.stepTiming(dt);
+        }
+    }
+
+    /**
+     * Runs a control loop against the simulation, stepping the devices between each run of the loop.
+     * 
+     * @param duration
+     *        The simulated time to run for, in seconds
+     * @param dt
+     *        The length of each physics step, in seconds
+     * @param loop
+     *        The control loop, such as the robot's periodic code
+     * @param loopPeriod
+     *        The simulated time between runs of the loop, in seconds; rounded to a whole number of steps
+     * 
+     * @exception IllegalArgumentException if {@code dt} is not positive
+     */
+    public void run(double duration, double dt, Runnable loop, double loopPeriod) {
+        if (dt <= 0) {
+            throw new IllegalArgumentException("Illegal dt value: " + dt + "\nValue must be positive");
+        }
+        long steps = Math.round(duration / dt);
+        long stepsPerLoop = Math.max(1, Math.round(loopPeriod / dt));
+
+        for (long i = 0; i < steps; i++) {
+            if (i % stepsPerLoop == 0) {
+                loop.run();
+            }
+            step(dt);
+        }
+    }
+}
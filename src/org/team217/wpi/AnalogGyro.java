@@ -1,6 +1,9 @@
 package org.team217.wpi;
 
 import edu.wpi.first.wpilibj.AnalogInput;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
 
 /**
  * AnalogGyro Class (Extended). This class is for gyro sensors that connect to an analog input.
@@ -8,7 +11,26 @@ import edu.wpi.first.wpilibj.AnalogInput;
  * @author ThunderChickens 217, WPILib
  */
 public class AnalogGyro extends edu.wpi.first.wpilibj.AnalogGyro {
-    protected int offset = 0;
+    protected double offset = 0;
+
+    /** The latest drift-compensated angle from the sampler, without the offset. */
+    private volatile double cachedAngle = 0;
+    /** The FPGA time of the latest sample, in seconds. */
+    private volatile double cachedTime = -1;
+
+    private Notifier notifier;
+    private boolean isSampling = false;
+    /** The estimated drift, in degrees/second. */
+    private double driftRate = 0;
+    /** The total drift removed from the angle since the last reset, in degrees. */
+    private double driftCorrection = 0;
+    private double lastSampleTime = -1;
+
+    private double calibrationWindow = 5;
+    private double maxDriftRate = 0.5;
+    /** The start of the current disabled calibration window; negative if there is none. */
+    private double windowStartTime = -1;
+    private double windowStartAngle = 0;
 
     /**
      * Gyro constructor using the channel number.
@@ -37,10 +59,150 @@ public class AnalogGyro extends edu.wpi.first.wpilibj.AnalogGyro {
         super(channel);
     }
 
+    /**
+     * Starts sampling the gyro in the background, so {@link #getAngle()} only reads the cached angle.
+     * While the robot is disabled, the sampler also recalibrates the drift compensation.
+     * 
+     * @param period
+     *        The time between samples, in seconds
+     * @return
+     *        {@code false} if the period is not positive
+     */
+    public synchronized boolean startSampling(double period) {
+        if (period <= 0) {
+            return false;
+        }
+        if (notifier == null) {
+            notifier = new Notifier(this::sample);
+        }
+        isSampling = true;
+        sample(); // make sure the cache is valid before the first period
+        notifier.startPeriodic(period);
+        return true;
+    }
+
+    /** Stops sampling the gyro in the background. {@link #getAngle()} reads the gyro directly again. */
+    public synchronized void stopSampling() {
+        if (notifier != null) {
+            notifier.stop();
+        }
+        isSampling = false;
+        cachedTime = -1;
+    }
+
+    /**
+     * Sets how long the robot must be disabled to recalibrate the drift compensation.
+     * 
+     * @param seconds
+     *        The calibration window, in seconds
+     * @return
+     *        {@code false} if the window is not positive
+     */
+    public synchronized boolean setCalibrationWindow(double seconds) {
+        if (seconds <= 0) {
+            return false;
+        }
+        calibrationWindow = seconds;
+        return true;
+    }
+
+    /**
+     * Sets the largest drift the calibration will accept. A larger change while disabled means the robot
+     * was moved, so the window is thrown away.
+     * 
+     * @param degreesPerSecond
+     *        The maximum drift, in degrees/second
+     * @return
+     *        {@code false} if the maximum drift is negative
+     */
+    public synchronized boolean setMaxDriftRate(double degreesPerSecond) {
+        if (degreesPerSecond < 0) {
+            return false;
+        }
+        maxDriftRate = degreesPerSecond;
+        return true;
+    }
+
+    /**
+     * Sets the drift compensation.
+     * 
+     * @param degreesPerSecond
+     *        The drift to remove from the angle, in degrees/second
+     */
+    public synchronized void setDriftRate(double degreesPerSecond) {
+        driftRate = degreesPerSecond;
+    }
+
+    /** Returns the drift being removed from the angle, in degrees/second. */
+    public synchronized double getDriftRate() {
+        return driftRate;
+    }
+
+    /** Returns the FPGA time of the cached angle, in seconds, or a negative number if the gyro is not being sampled. */
+    public double getSampleTimestamp() {
+        return cachedTime;
+    }
+
+    /**
+     * Reads the gyro, applies the drift compensation, and publishes the angle.
+     * While disabled, this also recalibrates the drift compensation.
+     */
+    private synchronized void sample() {
+        if (!isSampling) {
+            // stopped while the notifier was waiting on the lock
+            return;
+        }
+        double now = Timer.getFPGATimestamp();
+        double raw = super.getAngle();
+
+        if (lastSampleTime >= 0) {
+            driftCorrection += driftRate * (now - lastSampleTime);
+        }
+        lastSampleTime = now;
+
+        if (DriverStation.getInstance().isDisabled()) {
+            if (windowStartTime < 0) {
+                windowStartTime = now;
+                windowStartAngle = raw;
+            }
+            else if (now - windowStartTime >= calibrationWindow) {
+                double measured = (raw - windowStartAngle) / (now - windowStartTime);
+                if (Math.abs(measured) <= maxDriftRate) {
+                    driftRate = measured;
+                }
+                windowStartTime = now;
+                windowStartAngle = raw;
+            }
+        }
+        else {
+            windowStartTime = -1;
+        }
+
+        cachedAngle = raw - driftCorrection;
+        cachedTime = now;
+    }
+
     /** Return the actual angle in degrees that the robot is currently facing. */
     @Override
     public double getAngle() {
-        return getAngle() + offset;
+        if (cachedTime < 0) {
+            // not sampling, read the gyro directly
+            return super.getAngle() + offset;
+        }
+        return cachedAngle + offset;
+    }
+
+    /** Resets the gyro to a heading of zero. */
+    @Override
+    public void reset() {
+        super.reset();
+        synchronized (this) {
+            driftCorrection = 0;
+            windowStartTime = -1;
+            if (cachedTime >= 0) {
+                cachedAngle = 0;
+            }
+        }
     }
 
     /**
@@ -49,8 +211,25 @@ public class AnalogGyro extends edu.wpi.first.wpilibj.AnalogGyro {
      * @param offset
      *        The offset angle to set as the current gyro angle
      */
-    public void set(int offset) {
+    public void set(double offset) {
         reset();
         this.offset = offset;
     }
-}
\ No newline at end of file
+
+    /** Stops sampling and frees the gyro. */
+    @Override
+    public void close() {
+        Notifier closing;
+        synchronized (this) {
+            closing = notifier;
+            notifier = null;
+            isSampling = false;
+            cachedTime = -1;
+        }
+        // closing the notifier waits for its thread, which may be waiting on this lock in sample()
+        if (closing != null) {
+            closing.close();
+        }
+        super.close();
+    }
+}
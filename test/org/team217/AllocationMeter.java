@@ -0,0 +1,91 @@
+package org.team217;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated per invocation of an operation on the current thread,
+ * using the HotSpot thread allocation counters.
+ * 
+ * @author ThunderChickens 217
+ */
+public class AllocationMeter {
+    private final com.sun.management.ThreadMXBean threads;
+    private final int warmup, iterations, rounds;
+
+    /**
+     * Creates a new allocation meter with a default amount of warm-up and measurement.
+     * 
+     * @author ThunderChickens 217
+     */
+    public AllocationMeter() {
+        this(50_000, 100_000, 5);
+    }
+
+    /**
+     * Creates a new allocation meter.
+     * 
+     * @param warmup
+     *        The number of invocations to run before measuring, so the operation is JIT-compiled
+     * @param iterations
+     *        The number of invocations per measurement round
+     * @param rounds
+     *        The number of measurement rounds; the lowest round is reported
+     * 
+     * @exception IllegalArgumentException if {@code iterations} or {@code rounds} is not positive or {@code warmup} is negative
+     * @exception UnsupportedOperationException if the JVM does not support thread allocation counters
+     * 
+     * @author ThunderChickens 217
+     */
+    public AllocationMeter(int warmup, int iterations, int rounds) {
+        if (warmup < 0 || iterations <= 0 || rounds <= 0) {
+            throw new IllegalArgumentException("Illegal warmup/iterations/rounds value: " + warmup + "/" + iterations + "/" + rounds
+                + "\nWarmup cannot be negative and iterations and rounds must be positive");
+        }
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            throw new UnsupportedOperationException("Thread allocation counters are not supported by this JVM");
+        }
+        threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException("Thread allocation counters are not supported by this JVM");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Returns the average number of bytes allocated by one invocation of the operation after warm-up.
+     * 
+     * @param operation
+     *        The operation to measure
+     */
+    public double bytesPerInvocation(Runnable operation) {
+        for (int i = 0; i < warmup; i++) {
+            operation.run();
+        }
+
+        // reading the counter can allocate on its own, so measure that overhead and take it off
+        long overhead = Long.MAX_VALUE;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long before = allocated();
+            overhead = Math.min(overhead, allocated() - before);
+
+            long start = allocated();
+            for (int i = 0; i < iterations; i++) {
+                operation.run();
+            }
+            // the lowest round is the one least affected by JIT compilation or deoptimization
+            best = Math.min(best, allocated() - start);
+        }
+
+        return Math.max(0, best - overhead) / (double)iterations;
+    }
+
+    /** Returns the number of bytes allocated by the current thread so far. */
+    private long allocated() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,178 @@
+package org.team217;
+
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import edu.wpi.first.hal.HAL;
+import org.team217.ctre.*;
+import org.team217.motion.*;
+import org.team217.rev.CANSparkMax;
+
+/**
+ * Tests that the steady-state hot paths do not allocate after JIT warm-up.
+ * The hardware wrapper getters run against the desktop simulation libraries, so a missing native library fails the test.
+ * 
+ * @author ThunderChickens 217
+ */
+public class AllocationTest {
+    /** The allowed measurement noise, in bytes per invocation. */
+    private static final double TOLERANCE = 0.5;
+
+    /** Keeps results alive so the JIT cannot remove the operations. */
+    private static double sink;
+
+    private static AllocationMeter meter;
+    /** The hot paths that allocated more than allowed in the current test. */
+    private final StringBuilder failures = new StringBuilder();
+
+    @BeforeClass
+    public static void initialize() {
+        assertTrue(HAL.initialize(500, 0));
+        meter = new AllocationMeter();
+    }
+
+    @Test
+    public void motionDoesNotAllocate() {
+        PID pid = new PID(0.8, 0.05, 0.01);
+        pid.setIntegratorRange(5);
+        pid.setMaxIntegrator(0.3);
+        check("PID.getOutput", 0, () -> sink = pid.getOutput(sink % 10, 10));
+
+        AccelController accel = new AccelController(2, 1);
+        check("AccelController.getOutput", 0, () -> sink = accel.getOutput(sink > 0 ? -1 : 1));
+
+        MotionController motion = new MotionController(2, 5, 1);
+        check("MotionController.getOutput", 0, () -> sink = motion.getOutput(sink > 0 ? -1 : 1));
+
+        SimpleMotionProfiler simple = new SimpleMotionProfiler(new PID(0.8, 0, 0), new AccelController(2, 1));
+        check("SimpleMotionProfiler.getOutput", 0, () -> sink = simple.getOutput(sink, 10));
+
+        MotionProfiler profiler = new MotionProfiler(new PID(0.8, 0, 0), new MotionController(2, 5, 1));
+        check("MotionProfiler.getOutput", 0, () -> sink = profiler.getOutput(sink, 10));
+
+        GeometricProfiler geometric = new GeometricProfiler(new GeometricProfiler.Constraints(3, 2), new GeometricProfiler.State(0, -10));
+        GeometricProfiler.State state = new GeometricProfiler.State(0, 0);
+        double totalTime = geometric.totalTime();
+        check("GeometricProfiler.getOutput", 0, () -> sink = geometric.getOutput((sink + 0.37) % totalTime, state).position);
+        check("GeometricProfiler.timeLeftUntil", 0, () -> sink = geometric.timeLeftUntil(-(sink * 7.1 % 10)));
+
+        FeedforwardCharacterizer characterizer = new FeedforwardCharacterizer(FeedforwardCharacterizer.Gravity.ARM, 0.99);
+        check("FeedforwardCharacterizer.addSample", 0, () -> {
+            characterizer.addSample(sink % 12, sink % 3 - 1.5, sink % 5 - 2.5, sink % 1.5);
+            sink += characterizer.getKv() * 1e-9 + 0.37;
+        });
+        assertPassed();
+    }
+
+    @Test
+    public void mathDoesNotAllocate() {
+        check("Converter.partialAngle", 0, () -> sink = Converter.partialAngle(sink + 1234.5, 360));
+        check("Num.distance(x, y)", 0, () -> sink = Num.distance(sink % 3, 4));
+        check("Num.distance(x, y, z)", 0, () -> sink = Num.distance(sink % 3, 4, 5));
+
+        double[] values = new double[16];
+        check("Num.deadband(double[])", 0, () -> {
+            values[(int)sink & 15] = sink % 2 - 1;
+            Num.deadband(values, 0, values.length, 0.1);
+            sink += values[3] + 1;
+        });
+
+        KalmanFilter filter = new KalmanFilter(3);
+        double[] jacobian = {1, 0, -0.01, 0, 1, 0.02, 0, 0, 1};
+        double[] processNoise = {1e-4, 0, 0, 0, 1e-4, 0, 0, 0, 1e-2};
+        double[] observation = {0.6, 0.8, 0};
+        check("KalmanFilter.predict", 0, () -> {
+            filter.predict(jacobian, processNoise);
+            sink = filter.getCovariance(0, 0);
+        });
+        check("KalmanFilter.update", 0, () -> {
+            filter.predict(processNoise);
+            filter.update(observation, sink % 3, 0.05);
+            filter.updateAngle(2, sink * 100 % 360, 4, 360);
+            sink = filter.getState(0) + 0.37;
+        });
+
+        SteppedClock clock = new SteppedClock();
+        DriveOdometry odometry = new DriveOdometry(() -> sink % 50, () -> sink % 50 + 1, () -> sink % 360, 200, clock);
+        double[] pose = new double[3];
+        check("DriveOdometry.sample", 0, () -> {
+            clock.step(0.005);
+            odometry.sample();
+            sink += 0.37;
+        });
+        check("DriveOdometry.getPose", 0, () -> {
+            odometry.getPose(clock.getTime() - sink % 0.9, pose);
+            sink += pose[0] * 1e-9 + 0.37;
+        });
+
+        SwerveKinematics swerve = new SwerveKinematics(new double[] {0.3, 0.3, -0.3, -0.3}, new double[] {0.3, -0.3, 0.3, -0.3});
+        double[] speeds = new double[4], angles = new double[4], currentAngles = {500, 0, -300, 200}, chassis = new double[3];
+        check("SwerveKinematics.toModuleStates", 0, () -> {
+            swerve.toModuleStates(sink % 3, 1, sink % 2, 1024, speeds, angles);
+            SwerveKinematics.optimize(speeds, angles, currentAngles, 1024);
+            SwerveKinematics.desaturate(speeds, 2);
+            sink += speeds[0] * 1e-9 + 0.37;
+        });
+        check("SwerveKinematics.toChassisSpeeds", 0, () -> {
+            swerve.toChassisSpeeds(speeds, currentAngles, 1024, chassis);
+            sink += chassis[2] * 1e-9 + 0.37;
+        });
+        assertPassed();
+    }
+
+    @Test
+    public void hardwareGettersDoNotAllocate() {
+        PigeonIMU pigeon = new PigeonIMU(0);
+        double[] angles = new double[3];
+        check("PigeonIMU.getAngle", 0, () -> sink = pigeon.getAngle());
+        check("PigeonIMU.getPitch", 0, () -> sink = pigeon.getPitch());
+        check("PigeonIMU.getRoll", 0, () -> sink = pigeon.getRoll());
+        check("PigeonIMU.getAngles", 0, () -> {
+            pigeon.getAngles(angles);
+            sink = angles[0];
+        });
+
+        WPI_TalonSRX talon = new WPI_TalonSRX(0);
+        check("WPI_TalonSRX.getAnalogEncoder", 0, () -> sink = talon.getAnalogEncoder());
+        check("WPI_TalonSRX.getSwerveAnalog", 0, () -> sink = talon.getSwerveAnalog());
+        check("WPI_TalonSRX.getLimitFwd", 0, () -> sink = talon.getLimitFwd() ? 1 : 0);
+        talon.close();
+
+        WPI_TalonFX falcon = new WPI_TalonFX(1);
+        check("WPI_TalonFX.getLimitFwd", 0, () -> sink = falcon.getLimitFwd() ? 1 : 0);
+        falcon.close();
+
+        CANSparkMax spark = new CANSparkMax(2);
+        check("CANSparkMax.getPosition", 0, () -> sink = spark.getPosition());
+        check("CANSparkMax.getVelocity", 0, () -> sink = spark.getVelocity());
+        spark.close();
+        assertPassed();
+    }
+
+    /**
+     * Measures an operation and records a failure if it allocates more than its budget.
+     * 
+     * @param name
+     *        The name of the operation
+     * @param budget
+     *        The number of bytes the operation is allowed to allocate per invocation
+     * @param operation
+     *        The operation to measure
+     */
+    private void check(String name, double budget, Runnable operation) {
+        double bytes = meter.bytesPerInvocation(operation);
+        boolean isPassing = bytes <= budget + TOLERANCE;
+        if (!isPassing) {
+            failures.append(String.format("%n%s allocated %.2f B/op (budget %.0f)", name, bytes, budget));
+        }
+        System.out.printf("%-5s %-36s %8.2f B/op (budget %.0f)%n", isPassing ? "ok" : "FAIL", name, bytes, budget);
+    }
+
+    /** Fails the test if any hot path checked in it allocated more than its budget. */
+    private void assertPassed() {
+        if (failures.length() > 0) {
+            fail("Hot paths allocated more than allowed:" + failures);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.team217;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests {@code DriveOdometry} integration, corrections, and pose lookups, sampling by hand on a stepped clock.
+ * 
+ * @author ThunderChickens 217
+ */
+public class DriveOdometryTest {
+    private final SteppedClock clock = new SteppedClock();
+    /** The left distance, right distance, and gyro heading the odometry reads */
+    private double left = 0, right = 0, gyro = 0;
+    private final double[] pose = new double[3];
+
+    /**
+     * Creates an odometry that reads this test's sensors and clock.
+     * 
+     * @param capacity
+     *        The number of poses to keep
+     */
+    private DriveOdometry odometry(int capacity) {
+        return new DriveOdometry(() -> left, () -> right, () -> gyro, capacity, clock);
+    }
+
+    /**
+     * Drives straight ahead and samples once per step, a tenth of a second apart.
+     * 
+     * @param odometry
+     *        The odometry to sample
+     * @param steps
+     *        The number of steps
+     * @param distance
+     *        The distance each side travels per step
+     */
+    private void driveStraight(DriveOdometry odometry, int steps, double distance) {
+        for (int i = 0; i < steps; i++) {
+            clock.step(0.1);
+            left += distance;
+            right += distance;
+            odometry.sample();
+        }
+    }
+
+    /**
+     * Asserts that the odometry's pose at a time matches.
+     * 
+     * @param odometry
+     *        The odometry to look the pose up in
+     * @param timestamp
+     *        The time to look up, in seconds
+     * @param x
+     *        The expected x position
+     * @param y
+     *        The expected y position
+     * @param heading
+     *        The expected heading, in degrees
+     */
+    private void assertPose(DriveOdometry odometry, double timestamp, double x, double y, double heading) {
+        assertTrue(odometry.getPose(timestamp, pose));
+        assertEquals(x, pose[0], 1e-9);
+        assertEquals(y, pose[1], 1e-9);
+        assertEquals(heading, pose[2], 1e-9);
+    }
+
+    @Test
+    public void hasNoPoseBeforeSampling() {
+        assertFalse(odometry(4).getPose(pose));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTinyCapacity() {
+        odometry(1);
+    }
+
+    @Test
+    public void integratesAndInterpolates() {
+        DriveOdometry odometry = odometry(16);
+        odometry.sample(); // the baseline at time 0
+        driveStraight(odometry, 4, 0.5);
+
+        assertTrue(odometry.getPose(pose));
+        assertEquals(2, pose[0], 1e-9);
+        assertPose(odometry, 0.25, 1.25, 0, 0);
+
+        // times outside the history return the oldest or newest pose
+        assertPose(odometry, -1, 0, 0, 0);
+        assertPose(odometry, 5, 2, 0, 0);
+    }
+
+    @Test
+    public void tracksCircle() {
+        DriveOdometry odometry = odometry(8);
+        odometry.sample();
+
+        // a full turn counterclockwise around a circle of radius 2, in 1000 steps
+        double radius = 2, trackWidth = 0.6;
+        for (int i = 1; i <= 1000; i++) {
+            double turned = 2 * Math.PI * i / 1000;
+            clock.step(0.005);
+            left = (radius - trackWidth / 2) * turned;
+            right = (radius + trackWidth / 2) * turned;
+            gyro = Converter.partialAngle(Math.toDegrees(turned), 360); // the gyro wraps at 180
+            odometry.sample();
+
+            if (i == 250) {
+                assertTrue(odometry.getPose(pose));
+                assertEquals(radius, pose[0], 1e-4);
+                assertEquals(radius, pose[1], 1e-4);
+                assertEquals(90, pose[2], 1e-9);
+            }
+        }
+
+        // back where it started, with the heading counted past a full turn
+        assertTrue(odometry.getPose(pose));
+        assertEquals(0, pose[0], 1e-4);
+        assertEquals(0, pose[1], 1e-4);
+        assertEquals(360, pose[2], 1e-9);
+    }
+
+    @Test
+    public void interpolatesHeadingAcrossWraparound() {
+        DriveOdometry odometry = odometry(4);
+        gyro = 178;
+        odometry.sample();
+        clock.step(0.1);
+        gyro = -178; // four degrees further counterclockwise
+        odometry.sample();
+
+        assertPose(odometry, 0.05, 0, 0, 180);
+        assertPose(odometry, 0.1, 0, 0, 182);
+    }
+
+    @Test
+    public void keepsOnlyNewestPoses() {
+        DriveOdometry odometry = odometry(4);
+        odometry.sample();
+        driveStraight(odometry, 9, 1);
+
+        assertEquals(4, odometry.getCapacity());
+        // the samples at 0.6 to 0.9 seconds remain
+        assertPose(odometry, 0, 6, 0, 0);
+        assertPose(odometry, 0.65, 6.5, 0, 0);
+        assertFalse(odometry.correct(0.55, 0, 0));
+    }
+
+    @Test
+    public void resetsPoseAndHeading() {
+        DriveOdometry odometry = odometry(8);
+        gyro = 30;
+        odometry.sample();
+        driveStraight(odometry, 3, 1);
+
+        odometry.reset(1, 2, 90);
+        assertFalse(odometry.getPose(pose));
+
+        // the sample after a reset is the new baseline; the gyro still reads 30
+        clock.step(0.1);
+        left += 5;
+        right += 5;
+        odometry.sample();
+        assertPose(odometry, clock.getTime(), 1, 2, 90);
+
+        driveStraight(odometry, 1, 1);
+        assertPose(odometry, clock.getTime(), 1, 3, 90);
+    }
+
+    @Test
+    public void correctsPositionAndCarriesItForward() {
+        DriveOdometry odometry = odometry(32);
+        odometry.sample();
+        driveStraight(odometry, 10, 1);
+
+        // a measurement from 0.45 seconds, when the odometry thought it was at (4.5, 0)
+        assertTrue(odometry.correct(0.45, 5, -1));
+        assertPose(odometry, 0.45, 5, -1, 0);
+        assertPose(odometry, 0.3, 3, 0, 0);
+        assertPose(odometry, 0.7, 7.5, -1, 0);
+        assertPose(odometry, 1, 10.5, -1, 0);
+
+        // new samples continue from the corrected pose
+        driveStraight(odometry, 1, 1);
+        assertPose(odometry, clock.getTime(), 11.5, -1, 0);
+    }
+
+    @Test
+    public void correctsHeadingByTurningNewerPoses() {
+        DriveOdometry odometry = odometry(32);
+        odometry.sample();
+        driveStraight(odometry, 10, 1);
+
+        // the drive was really facing left from 0.5 seconds on, so the last 5 units went along y
+        assertTrue(odometry.correct(0.5, 5, 0, 90, 1));
+        assertPose(odometry, 0.5, 5, 0, 90);
+        assertPose(odometry, 0.4, 4, 0, 0);
+        assertPose(odometry, 1, 5, 5, 90);
+
+        // the gyro still reads 0, so the heading offset keeps the correction
+        driveStraight(odometry, 1, 1);
+        assertPose(odometry, clock.getTime(), 5, 6, 90);
+    }
+
+    @Test
+    public void correctsPartway() {
+        DriveOdometry odometry = odometry(32);
+        odometry.sample();
+        driveStraight(odometry, 4, 1);
+
+        assertTrue(odometry.correct(0.4, 6, 2, Double.NaN, 0.5));
+        assertPose(odometry, 0.4, 5, 1, 0);
+        assertFalse(odometry.correct(0.4, 6, 2, Double.NaN, 1.5));
+        assertFalse(odometry.correct(0.4, 6, 2, Double.NaN, -0.1));
+        assertPose(odometry, 0.4, 5, 1, 0);
+    }
+}
@@ -0,0 +1,117 @@
+package org.team217;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+/**
+ * Tests the {@code HeadingHistory} ring buffer and interpolation with synthetic headings.
+ * 
+ * @author ThunderChickens 217
+ */
+public class HeadingHistoryTest {
+    /**
+     * Creates a history that is only filled through {@code add}.
+     * 
+     * @param capacity
+     *        The number of samples to keep
+     */
+    private static HeadingHistory history(int capacity) {
+        return new HeadingHistory(() -> 0, capacity);
+    }
+
+    @Test
+    public void isEmptyUntilSampled() {
+        HeadingHistory history = history(4);
+        assertTrue(Double.isNaN(history.getLatest()));
+        assertTrue(Double.isNaN(history.getHeading(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTinyCapacity() {
+        history(1);
+    }
+
+    @Test
+    public void interpolatesBetweenSamples() {
+        HeadingHistory history = history(8);
+        history.add(1.0, 10);
+        history.add(1.02, 14);
+        history.add(1.04, 13);
+        history.add(1.1, -5);
+
+        assertEquals(12, history.getHeading(1.01), 1e-9);
+        assertEquals(14, history.getHeading(1.02), 1e-9);
+        assertEquals(13.5, history.getHeading(1.03), 1e-9);
+        assertEquals(4, history.getHeading(1.07), 1e-9);
+
+        // times outside the history return the oldest or newest heading
+        assertEquals(10, history.getHeading(0.5), 0);
+        assertEquals(-5, history.getHeading(2), 0);
+        assertEquals(-5, history.getLatest(), 0);
+    }
+
+    @Test
+    public void keepsOnlyNewestSamples() {
+        HeadingHistory history = history(5);
+        assertEquals(5, history.getCapacity());
+
+        // a heading turning at 90 degrees/second, sampled every 20 ms, wrapping the buffer several times
+        for (int i = 0; i < 23; i++) {
+            history.add(i * 0.02, i * 0.02 * 90);
+        }
+
+        // only the samples from 0.36 to 0.44 seconds remain
+        assertEquals(0.36 * 90, history.getHeading(0), 1e-9);
+        assertEquals(0.44 * 90, history.getLatest(), 1e-9);
+        for (double t = 0.36; t <= 0.44; t += 0.005) {
+            assertEquals(t * 90, history.getHeading(t), 1e-9);
+        }
+    }
+
+    @Test
+    public void clearRemovesSamples() {
+        HeadingHistory history = history(4);
+        history.add(0, 1);
+        history.add(1, 2);
+        history.clear();
+        assertTrue(Double.isNaN(history.getLatest()));
+
+        history.add(2, 3);
+        assertEquals(3, history.getHeading(0), 0);
+        assertEquals(3, history.getLatest(), 0);
+    }
+
+    @Test
+    public void neverReadsHalfWrittenSamples() throws InterruptedException {
+        HeadingHistory history = history(16);
+        AtomicBoolean isRunning = new AtomicBoolean(true);
+
+        // the heading is twice the time, so every interpolated heading is exactly twice the time asked for
+        Thread writer = new Thread(() -> {
+            for (long t = 0; isRunning.get(); t++) {
+                history.add(t, 2 * t);
+            }
+        });
+        history.add(-1, -2);
+        writer.start();
+
+        String error = null;
+        long end = System.nanoTime() + 200_000_000;
+        while (System.nanoTime() < end && error == null) {
+            double latest = history.getLatest();
+            double t = latest / 2 - 7.5;
+            double heading = history.getHeading(t);
+            // a time that has left the history returns the oldest heading, which is a newer sample
+            boolean isInterpolated = Math.abs(heading - 2 * t) < 1e-9;
+            boolean isOldest = heading > 2 * t && heading % 2 == 0;
+            if (!isInterpolated && !isOldest) {
+                error = "Torn read at " + t + ": " + heading;
+            }
+        }
+        isRunning.set(false);
+        writer.join();
+        assertNull(error);
+    }
+}
@@ -0,0 +1,154 @@
+package org.team217;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@code KalmanFilter} steps against hand-computed results.
+ * 
+ * @author ThunderChickens 217
+ */
+public class KalmanFilterTest {
+    /** A constant-velocity model with a step of 1 second */
+    private static final double[] TRANSITION = {1, 1, 0, 1};
+    private static final double[] PROCESS_NOISE = {0.5, 0, 0, 0.25};
+
+    /**
+     * Creates a position and velocity filter at position 0 and velocity 1, with variances of 1 and 2.
+     */
+    private static KalmanFilter positionVelocity() {
+        KalmanFilter filter = new KalmanFilter(2);
+        filter.setState(1, 1);
+        assertTrue(filter.setVariance(0, 1));
+        assertTrue(filter.setVariance(1, 2));
+        return filter;
+    }
+
+    /**
+     * Asserts the covariance of a 2 state filter.
+     * 
+     * @param filter
+     *        The filter to check
+     * @param p00
+     *        The expected variance of the first state
+     * @param p01
+     *        The expected covariance of the states
+     * @param p11
+     *        The expected variance of the second state
+     */
+    private static void assertCovariance(KalmanFilter filter, double p00, double p01, double p11) {
+        assertEquals(p00, filter.getCovariance(0, 0), 1e-12);
+        assertEquals(p01, filter.getCovariance(0, 1), 1e-12);
+        assertEquals(p01, filter.getCovariance(1, 0), 1e-12);
+        assertEquals(p11, filter.getCovariance(1, 1), 1e-12);
+    }
+
+    @Test
+    public void predicts() {
+        KalmanFilter filter = positionVelocity();
+        filter.predict(TRANSITION, PROCESS_NOISE);
+
+        // x = F * x = [1, 1]; P = F * P * F' + Q = [[3, 2], [2, 2]] + Q
+        assertEquals(1, filter.getState(0), 1e-12);
+        assertEquals(1, filter.getState(1), 1e-12);
+        assertCovariance(filter, 3.5, 2, 2.25);
+    }
+
+    @Test
+    public void updatesPosition() {
+        KalmanFilter filter = positionVelocity();
+        filter.predict(TRANSITION, PROCESS_NOISE);
+        assertTrue(filter.update(0, 2, 0.5));
+
+        // S = 3.5 + 0.5 = 4; K = [3.5, 2] / 4; innovation 2 - 1 = 1
+        assertArrayEquals(new double[] {1.875, 1.5}, filter.getState(new double[2]), 1e-12);
+        // P = P - P * H' * H * P / S
+        assertCovariance(filter, 3.5 - 3.5 * 3.5 / 4, 2 - 3.5 * 2 / 4, 2.25 - 2 * 2 / 4);
+    }
+
+    @Test
+    public void updatesObservationRow() {
+        KalmanFilter direct = positionVelocity(), row = positionVelocity();
+        direct.predict(TRANSITION, PROCESS_NOISE);
+        row.predict(TRANSITION, PROCESS_NOISE);
+        assertTrue(direct.update(0, 2, 0.5));
+        assertTrue(row.update(new double[] {1, 0}, 2, 0.5));
+        assertEquals(direct.getState(0), row.getState(0), 1e-12);
+        assertEquals(direct.getState(1), row.getState(1), 1e-12);
+        assertCovariance(row, direct.getCovariance(0, 0), direct.getCovariance(0, 1), direct.getCovariance(1, 1));
+
+        // a measurement of position + velocity: H = [1, 1], prediction 2, S = 3.5 + 2 * 2 + 2.25 + 1 = 10.75
+        KalmanFilter sum = positionVelocity();
+        sum.predict(TRANSITION, PROCESS_NOISE);
+        assertTrue(sum.update(new double[] {1, 1}, 4.15, 1));
+        double s = 10.75, k0 = 5.5 / s, k1 = 4.25 / s;
+        assertEquals(1 + k0 * 2.15, sum.getState(0), 1e-12);
+        assertEquals(1 + k1 * 2.15, sum.getState(1), 1e-12);
+        assertCovariance(sum, 3.5 - 5.5 * 5.5 / s, 2 - 5.5 * 4.25 / s, 2.25 - 4.25 * 4.25 / s);
+    }
+
+    @Test
+    public void predictsCovarianceOnly() {
+        KalmanFilter filter = positionVelocity();
+        filter.predictCovariance(TRANSITION, PROCESS_NOISE);
+        assertEquals(0, filter.getState(0), 0);
+        assertEquals(1, filter.getState(1), 0);
+        assertCovariance(filter, 3.5, 2, 2.25);
+
+        filter.predict(PROCESS_NOISE);
+        assertCovariance(filter, 4, 2, 2.5);
+    }
+
+    @Test
+    public void updatesAngleAcrossWraparound() {
+        KalmanFilter filter = new KalmanFilter(1);
+        filter.setState(0, 170);
+        filter.setVariance(0, 1);
+
+        // -170 is 20 degrees counterclockwise of 170, not 340 degrees clockwise
+        assertTrue(filter.updateAngle(0, -170, 1, 360));
+        assertEquals(180, filter.getState(0), 1e-12);
+        assertEquals(0.5, filter.getCovariance(0, 0), 1e-12);
+
+        filter.setState(0, -175);
+        assertTrue(filter.updateAngle(0, 178, 0.5, 360));
+        assertEquals(-178.5, filter.getState(0), 1e-12);
+    }
+
+    @Test
+    public void gatesOutliers() {
+        KalmanFilter filter = new KalmanFilter(1);
+        filter.setVariance(0, 3);
+        assertTrue(filter.setOutlierGate(2));
+
+        // S = 3 + 1 = 4, so the gate is 2 standard deviations of 2
+        assertFalse(filter.update(0, 4.5, 1));
+        assertEquals(0, filter.getState(0), 0);
+        assertEquals(3, filter.getCovariance(0, 0), 0);
+
+        assertTrue(filter.update(0, 3.5, 1));
+        assertEquals(3.5 * 0.75, filter.getState(0), 1e-12);
+
+        assertTrue(filter.setOutlierGate(0));
+        filter.setState(0, 0);
+        assertTrue(filter.update(0, 1000, 1));
+    }
+
+    @Test
+    public void rejectsBadArguments() {
+        KalmanFilter filter = new KalmanFilter(2);
+        assertFalse(filter.setVariance(0, -1));
+        assertFalse(filter.setOutlierGate(-1));
+        assertFalse(filter.update(0, 1, -1));
+        assertFalse(filter.update(new double[] {1, 0}, 1, -1));
+
+        // a zero covariance and a zero measurement variance leave nothing to weigh
+        assertFalse(filter.update(0, 1, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoStates() {
+        new KalmanFilter(0);
+    }
+}
@@ -0,0 +1,145 @@
+package org.team217;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@code SwerveKinematics} conversions, module optimization, and desaturation.
+ * 
+ * @author ThunderChickens 217
+ */
+public class SwerveKinematicsTest {
+    private static final double UNITS_PER_REV = 1024;
+
+    /** A square drive with modules 0.3 from the center each way: front left, front right, back left, back right. */
+    private static final SwerveKinematics SQUARE = new SwerveKinematics(
+        new double[] {0.3, 0.3, -0.3, -0.3}, new double[] {0.3, -0.3, 0.3, -0.3});
+
+    @Test
+    public void drivesStraight() {
+        double[] speeds = new double[4], angles = new double[4];
+        SQUARE.toModuleStates(0, 1.5, 0, UNITS_PER_REV, speeds, angles);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1.5, speeds[i], 1e-9);
+            assertEquals(256, angles[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void turnsInPlace() {
+        double[] speeds = new double[4], angles = new double[4];
+        SQUARE.toModuleStates(0, 0, 2, UNITS_PER_REV, speeds, angles);
+
+        // each module is 0.3 * sqrt(2) from the center and points along the circle, counterclockwise
+        double[] expectedAngles = {384, 128, -384, -128};
+        for (int i = 0; i < 4; i++) {
+            assertEquals(2 * 0.3 * Math.sqrt(2), speeds[i], 1e-9);
+            assertEquals(expectedAngles[i], angles[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void roundTripsChassisSpeeds() {
+        double[][] motions = {{1, 0, 0}, {0, -2, 0}, {0, 0, 3}, {1.2, -0.7, 1.5}, {-2.5, 0.4, -4}};
+        assertRoundTrips(SQUARE, motions);
+
+        // three modules around a center of rotation that is not their centroid
+        SwerveKinematics offset = new SwerveKinematics(new double[] {0.5, -0.2, -0.3}, new double[] {0.1, 0.4, -0.35});
+        assertRoundTrips(offset, motions);
+    }
+
+    /**
+     * Asserts that converting each motion to module states and back gives the same motion.
+     * 
+     * @param kinematics
+     *        The kinematics to convert with
+     * @param motions
+     *        The forward speed, leftward speed, and turn rate of each motion
+     */
+    private static void assertRoundTrips(SwerveKinematics kinematics, double[][] motions) {
+        int count = kinematics.getModuleCount();
+        double[] speeds = new double[count], angles = new double[count], out = new double[3];
+        for (double[] motion : motions) {
+            kinematics.toModuleStates(motion[0], motion[1], motion[2], UNITS_PER_REV, speeds, angles);
+            for (double angle : angles) {
+                assertTrue(Math.abs(angle) <= UNITS_PER_REV / 2);
+            }
+            kinematics.toChassisSpeeds(speeds, angles, UNITS_PER_REV, out);
+            assertArrayEquals(motion, out, 1e-9);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsModulesInOnePlace() {
+        new SwerveKinematics(new double[] {0.3, 0.3}, new double[] {0.1, 0.1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMismatchedPositions() {
+        new SwerveKinematics(new double[] {0.3, -0.3}, new double[] {0.1});
+    }
+
+    @Test
+    public void desaturatesFastestModule() {
+        double[] speeds = {1, 2, -4, 3};
+        assertEquals(0.5, SwerveKinematics.desaturate(speeds, 2), 1e-12);
+        assertArrayEquals(new double[] {0.5, 1, -2, 1.5}, speeds, 1e-12);
+
+        double[] slow = {1, -2, 0.5};
+        assertEquals(1, SwerveKinematics.desaturate(slow, 2), 0);
+        assertArrayEquals(new double[] {1, -2, 0.5}, slow, 0);
+    }
+
+    @Test
+    public void optimizeTurnsAcrossWraparound() {
+        assertOptimized(1, 500, -500, 1, -500);
+        assertOptimized(1, -500, 400, 1, 400);
+
+        // +512 and -512 are the same angle, so the module does not turn
+        assertOptimized(1, -512, 512, 1, -512);
+        assertOptimized(1, 512, -512, 1, 512);
+        assertOptimized(1, 512, 512, 1, 512);
+    }
+
+    @Test
+    public void optimizeReversesBeyondQuarterTurn() {
+        assertOptimized(2, 0, 300, -2, -212);
+        assertOptimized(2, 0, -300, -2, 212);
+        assertOptimized(2, 450, -300, -2, 212);
+        assertOptimized(2, -512, 0, -2, -512);
+        assertOptimized(-1, 100, 511, 1, -1);
+
+        // exactly a quarter turn is not reversed
+        assertOptimized(2, 0, 256, 2, 256);
+        assertOptimized(2, 500, -268, 2, -268);
+    }
+
+    @Test
+    public void optimizeHoldsStoppedModules() {
+        assertOptimized(0, 300, -100, 0, 300);
+        assertOptimized(0, 600, 0, 0, -424);
+    }
+
+    /**
+     * Asserts the result of optimizing one module.
+     * 
+     * @param speed
+     *        The target speed
+     * @param current
+     *        The current angle
+     * @param target
+     *        The target angle
+     * @param expectedSpeed
+     *        The expected speed after optimizing
+     * @param expectedAngle
+     *        The expected angle after optimizing
+     */
+    private static void assertOptimized(double speed, double current, double target, double expectedSpeed, double expectedAngle) {
+        double[] speeds = {speed}, angles = {target};
+        SwerveKinematics.optimize(speeds, angles, new double[] {current}, UNITS_PER_REV);
+        assertEquals(expectedSpeed, speeds[0], 1e-12);
+        assertEquals(expectedAngle, angles[0], 1e-9);
+        assertTrue(Math.abs(angles[0]) <= UNITS_PER_REV / 2);
+    }
+}
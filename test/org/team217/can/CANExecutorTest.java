@@ -0,0 +1,197 @@
+package org.team217.can;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Tests the {@code CANExecutor} handoff of commands and its task budget, driving the cycles directly.
+ * 
+ * @author ThunderChickens 217
+ */
+public class CANExecutorTest {
+    @Test
+    public void sendsOnlyPublishedCommands() {
+        CANExecutor executor = new CANExecutor(2);
+        FakeDevice device1 = new FakeDevice(), device2 = new FakeDevice();
+        int slot1 = executor.register(device1);
+        int slot2 = executor.register(device2);
+
+        executor.set(slot1, "mode", 0.5);
+        executor.cycle();
+        assertEquals(0, device1.commands);
+
+        executor.publish();
+        executor.cycle();
+        assertEquals(1, device1.commands);
+        assertEquals(0.5, device1.value, 0);
+        assertEquals(0, device2.commands);
+
+        // staged but not published, so the last published command is sent again
+        executor.set(slot1, "mode", 0.7);
+        executor.set(slot2, "mode", 0.2);
+        executor.cycle();
+        assertEquals(0.5, device1.value, 0);
+        assertEquals(0, device2.commands);
+
+        executor.publish();
+        executor.set(slot1, null, 0);
+        executor.publish();
+        executor.cycle();
+        assertEquals(2, device1.commands);
+        assertEquals(0.2, device2.value, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnregisteredSlot() {
+        CANExecutor executor = new CANExecutor(4);
+        executor.register(new FakeDevice());
+        executor.set(1, "mode", 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeSlot() {
+        CANExecutor executor = new CANExecutor(4);
+        executor.register(new FakeDevice());
+        executor.set(-1, "mode", 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsupportedMode() {
+        CANExecutor executor = new CANExecutor(4);
+        int slot = executor.register(new FakeDevice());
+        executor.set(slot, 5, 0);
+    }
+
+    @Test
+    public void neverSendsHalfPublishedCommands() throws InterruptedException {
+        int deviceCount = 8;
+        CANExecutor executor = new CANExecutor(deviceCount);
+        FakeDevice[] devices = new FakeDevice[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            devices[i] = new FakeDevice();
+            executor.register(devices[i]);
+        }
+
+        AtomicBoolean isRunning = new AtomicBoolean(true);
+        AtomicInteger cycles = new AtomicInteger();
+        String[] error = {null};
+        Thread thread = new Thread(() -> {
+            double last = 0;
+            while (isRunning.get()) {
+                executor.cycle();
+                cycles.incrementAndGet();
+                // every device in a cycle must get the same publish, and publishes must never go backwards
+                double value = devices[0].value;
+                for (FakeDevice device : devices) {
+                    if (device.value != value) {
+                        error[0] = "Mixed publishes in one cycle: " + value + " and " + device.value;
+                    }
+                }
+                if (value < last) {
+                    error[0] = "Publish went backwards: " + last + " to " + value;
+                }
+                last = value;
+            }
+        });
+        thread.start();
+
+        long end = System.nanoTime() + 200_000_000;
+        for (int publish = 1; System.nanoTime() < end || cycles.get() < 1000; publish++) {
+            for (int slot = 0; slot < deviceCount; slot++) {
+                executor.set(slot, "mode", publish);
+            }
+            executor.publish();
+        }
+        isRunning.set(false);
+        thread.join();
+        assertNull(error[0]);
+    }
+
+    @Test
+    public void longTaskIsPaidBackByLaterCycles() {
+        CANExecutor executor = new CANExecutor(1);
+        FakeDevice device = new FakeDevice();
+        executor.register(device);
+        executor.set(0, "mode", 1);
+        executor.publish();
+        assertTrue(executor.setTaskBudget(0.002));
+
+        AtomicInteger tasksRun = new AtomicInteger();
+        executor.execute(() -> {
+            sleep(10);
+            tasksRun.incrementAndGet();
+        });
+        executor.execute(tasksRun::incrementAndGet);
+
+        executor.cycle();
+        assertEquals(1, tasksRun.get());
+
+        // the next cycles still send commands but start no tasks until the overrun is paid back
+        executor.cycle();
+        executor.cycle();
+        assertEquals(1, tasksRun.get());
+        assertEquals(3, device.commands);
+
+        int cycles = 0;
+        while (tasksRun.get() < 2) {
+            assertTrue("the second task never ran", ++cycles < 100);
+            executor.cycle();
+        }
+    }
+
+    @Test
+    public void startsTasksOnlyWhileBudgetLasts() {
+        CANExecutor executor = new CANExecutor(1);
+        assertFalse(executor.setTaskBudget(0));
+        assertTrue(executor.setTaskBudget(0.1));
+
+        AtomicInteger tasksRun = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                sleep(30);
+                tasksRun.incrementAndGet();
+            });
+        }
+        executor.cycle();
+        assertTrue(tasksRun.get() >= 1 && tasksRun.get() <= 4);
+    }
+
+    /**
+     * Sleeps, failing the test if interrupted.
+     * 
+     * @param millis
+     *        The time to sleep, in milliseconds
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * A device that records the commands sent to it. It only supports {@code String} modes.
+     * 
+     * @author ThunderChickens 217
+     */
+    private static class FakeDevice implements CommandDevice {
+        volatile int commands = 0;
+        volatile double value = 0;
+
+        @Override
+        public void applyCommand(Object mode, double value) {
+            this.value = value;
+            commands++;
+        }
+
+        @Override
+        public boolean isSupported(Object mode) {
+            return mode instanceof String;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.team217.can;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.team217.SteppedClock;
+
+/**
+ * Tests the {@code OutputCache} with a stepped clock.
+ * 
+ * @author ThunderChickens 217
+ */
+public class OutputCacheTest {
+    private final SteppedClock clock = new SteppedClock();
+    private final OutputCache cache = new OutputCache(0.01, 0.1, clock);
+
+    @Test
+    public void skipsCommandsWithinTolerance() {
+        assertTrue(cache.shouldSend("mode", 0.5));
+        assertFalse(cache.shouldSend("mode", 0.5));
+        assertFalse(cache.shouldSend("mode", 0.505));
+        assertTrue(cache.shouldSend("mode", 0.52));
+
+        // the tolerance is from the last value sent, not the last value asked for
+        assertFalse(cache.shouldSend("mode", 0.529));
+        assertFalse(cache.shouldSend("mode", 0.511));
+        assertEquals(2, cache.getSentCount());
+        assertEquals(4, cache.getSuppressedCount());
+    }
+
+    @Test
+    public void sendsOtherModes() {
+        assertTrue(cache.shouldSend("percent", 0.5));
+        assertTrue(cache.shouldSend("velocity", 0.5));
+        assertTrue(cache.shouldSend("percent", 0.5));
+    }
+
+    @Test
+    public void resendsAfterKeepAlive() {
+        assertTrue(cache.shouldSend("mode", 0.5));
+        clock.step(0.09);
+        assertFalse(cache.shouldSend("mode", 0.5));
+        clock.step(0.02);
+        assertTrue(cache.shouldSend("mode", 0.5));
+
+        // the keep-alive restarts from the resend
+        clock.step(0.05);
+        assertFalse(cache.shouldSend("mode", 0.5));
+    }
+
+    @Test
+    public void sendsAfterInvalidate() {
+        assertTrue(cache.shouldSend("mode", 0.5));
+        cache.invalidate();
+        assertTrue(cache.shouldSend("mode", 0.5));
+        assertFalse(cache.shouldSend("mode", 0.5));
+    }
+
+    @Test
+    public void rejectsIllegalSettings() {
+        assertFalse(cache.setTolerance(-1));
+        assertEquals(0.01, cache.getTolerance(), 0);
+        assertFalse(cache.setKeepAlive(0));
+        assertEquals(0.1, cache.getKeepAlive(), 0);
+
+        cache.shouldSend("mode", 0.5);
+        cache.shouldSend("mode", 0.5);
+        cache.resetCounts();
+        assertEquals(0, cache.getSentCount());
+        assertEquals(0, cache.getSuppressedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveKeepAlive() {
+        new OutputCache(0, 0);
+    }
+}
@@ -0,0 +1,127 @@
+package org.team217.can;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests that the {@code SensorFrame} reads only the values each device registered.
+ * 
+ * @author ThunderChickens 217
+ */
+public class SensorFrameTest {
+    @Test
+    public void readsOnlyRegisteredFields() {
+        SensorFrame frame = new SensorFrame(2);
+        FakeDevice device = new FakeDevice();
+        int slot = frame.register(device, SensorFrame.POSITION | SensorFrame.LIMIT_FWD);
+
+        // once for each buffer
+        assertEquals(2, device.positionReads);
+        assertEquals(2, device.limitFwdReads);
+        assertEquals(0, device.velocityReads + device.analogReads + device.limitRevReads);
+
+        device.position = 12.5;
+        device.isLimitFwd = true;
+        frame.refresh();
+        frame.refresh();
+        assertEquals(4, device.positionReads);
+        assertEquals(4, device.limitFwdReads);
+        assertEquals(0, device.velocityReads + device.analogReads + device.limitRevReads);
+
+        assertEquals(12.5, frame.getPosition(slot), 0);
+        assertTrue(frame.getLimitFwd(slot));
+        assertEquals(4, device.positionReads);
+    }
+
+    @Test
+    public void readsOtherFieldsFromTheDevice() {
+        SensorFrame frame = new SensorFrame(1);
+        FakeDevice device = new FakeDevice();
+        int slot = frame.register(device, SensorFrame.POSITION);
+
+        device.velocity = -3;
+        device.analog = 512;
+        device.isLimitRev = true;
+        assertEquals(-3, frame.getVelocity(slot), 0);
+        assertEquals(512, frame.getAnalogRaw(slot));
+        assertTrue(frame.getLimitRev(slot));
+        assertEquals(1, device.velocityReads);
+        assertEquals(1, device.analogReads);
+        assertEquals(1, device.limitRevReads);
+
+        // the frame value stays until the next refresh
+        device.position = 7;
+        assertEquals(0, frame.getPosition(slot), 0);
+        frame.refresh();
+        assertEquals(7, frame.getPosition(slot), 0);
+    }
+
+    @Test
+    public void registersPositionAndVelocityByDefault() {
+        SensorFrame frame = new SensorFrame(1);
+        FakeDevice device = new FakeDevice();
+        int slot = frame.register(device);
+
+        assertEquals(SensorFrame.POSITION | SensorFrame.VELOCITY, frame.getFields(slot));
+        frame.refresh();
+        assertEquals(3, device.positionReads);
+        assertEquals(3, device.velocityReads);
+        assertEquals(0, device.analogReads + device.limitFwdReads + device.limitRevReads);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoFields() {
+        new SensorFrame(1).register(new FakeDevice(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownFields() {
+        new SensorFrame(1).register(new FakeDevice(), SensorFrame.ALL + 1);
+    }
+
+    /**
+     * A device that counts the reads of each value.
+     * 
+     * @author ThunderChickens 217
+     */
+    private static class FakeDevice implements FrameDevice {
+        double position = 0, velocity = 0;
+        int analog = 0;
+        boolean isLimitFwd = false, isLimitRev = false;
+        int positionReads = 0, velocityReads = 0, analogReads = 0, limitFwdReads = 0, limitRevReads = 0;
+
+        @Override
+        public double readPosition() {
+            positionReads++;
+            return position;
+        }
+
+        @Override
+        public double readVelocity() {
+            velocityReads++;
+            return velocity;
+        }
+
+        @Override
+        public int readAnalogRaw() {
+            analogReads++;
+            return analog;
+        }
+
+        @Override
+        public boolean readLimitFwd() {
+            limitFwdReads++;
+            return isLimitFwd;
+        }
+
+        @Override
+        public boolean readLimitRev() {
+            limitRevReads++;
+            return isLimitRev;
+        }
+
+        @Override
+        public void attach(SensorFrame frame, int slot) {}
+    }
+}
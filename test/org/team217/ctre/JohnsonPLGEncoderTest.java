@@ -0,0 +1,250 @@
+package org.team217.ctre;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.DIOSim;
+
+/**
+ * Tests the {@code JohnsonPLGEncoder} and its shared sampler thread against the HAL simulation.
+ * 
+ * @author ThunderChickens 217
+ */
+public class JohnsonPLGEncoderTest {
+    /** How long to wait for the sampler thread to see an edge, in milliseconds. */
+    private static final long TIMEOUT = 2000;
+
+    /**
+     * The updates of the {@code CountingEncoder}, kept outside of it since the sampler can update
+     * an encoder before a subclass constructor has initialized its fields.
+     */
+    private static final AtomicInteger updates = new AtomicInteger(), updatesAfterClose = new AtomicInteger();
+    private static volatile boolean isCountingClosed = false;
+
+    @BeforeClass
+    public static void initialize() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    @Test
+    public void pollCountsEachEdge() {
+        try (JohnsonPLGEncoder encoder = new JohnsonPLGEncoder(0, 1, JohnsonPLGEncoder.UpdateMode.Sampled)) {
+            DIOSim sensor1 = new DIOSim(0), sensor2 = new DIOSim(1);
+            sensor1.setValue(false);
+            sensor2.setValue(false);
+            encoder.poll();
+            encoder.set(0);
+
+            // forward is sensor 1 leading sensor 2
+            stepForward(sensor1, sensor2, encoder::poll);
+            assertEquals(4, encoder.get());
+
+            // backward is the same sequence in reverse
+            sensor2.setValue(true);
+            encoder.poll();
+            sensor1.setValue(true);
+            encoder.poll();
+            assertEquals(2, encoder.get());
+        }
+    }
+
+    @Test
+    public void interruptsCountEachEdge() {
+        try (JohnsonPLGEncoder encoder = new JohnsonPLGEncoder(8, 9)) {
+            assertEquals(JohnsonPLGEncoder.UpdateMode.Interrupt, encoder.getMode());
+            DIOSim sensor1 = new DIOSim(8), sensor2 = new DIOSim(9);
+            sensor1.setValue(false);
+            sensor2.setValue(false);
+            awaitQuiet();
+            encoder.set(0);
+
+            int[] expected = {0};
+            stepForward(sensor1, sensor2, () -> await(encoder::get, ++expected[0]));
+            assertEquals(4, encoder.get());
+
+            sensor2.setValue(true);
+            await(encoder::get, 3);
+            sensor1.setValue(true);
+            await(encoder::get, 2);
+            assertEquals(0, encoder.getMissedEdges());
+        }
+    }
+
+    @Test
+    public void interruptsCountEdgesCloseTogether() {
+        try (JohnsonPLGEncoder encoder = new JohnsonPLGEncoder(10, 11)) {
+            DIOSim sensor1 = new DIOSim(10), sensor2 = new DIOSim(11);
+            sensor1.setValue(false);
+            sensor2.setValue(false);
+            awaitQuiet();
+            encoder.set(0);
+            encoder.resetMissedEdges();
+
+            // each pair of edges arrives before the interrupt threads are likely to have run, so one
+            // handler can find both sensors changed, or the handlers can run out of order
+            for (int cycle = 1; cycle <= 25; cycle++) {
+                sensor1.setValue(true);
+                pause();
+                sensor2.setValue(true);
+                await(encoder::get, 4 * cycle - 2);
+                sensor1.setValue(false);
+                pause();
+                sensor2.setValue(false);
+                await(encoder::get, 4 * cycle);
+            }
+            awaitQuiet();
+            assertEquals(100, encoder.get());
+            assertEquals(0, encoder.getMissedEdges());
+        }
+    }
+
+    @Test
+    public void samplerSurvivesFailingEncoder() throws InterruptedException {
+        try (JohnsonPLGEncoder broken = new FailingEncoder(2, 3);
+             JohnsonPLGEncoder encoder = new JohnsonPLGEncoder(4, 5, JohnsonPLGEncoder.UpdateMode.Sampled)) {
+            DIOSim sensor1 = new DIOSim(4), sensor2 = new DIOSim(5);
+            sensor1.setValue(false);
+            sensor2.setValue(false);
+            encoder.poll();
+            encoder.set(0);
+
+            // let the sampler hit the failing encoder before the working one has anything to count
+            Thread.sleep(50);
+
+            int[] expected = {0};
+            stepForward(sensor1, sensor2, () -> await(encoder::get, ++expected[0]));
+            assertEquals(4, encoder.get());
+        }
+    }
+
+    @Test
+    public void closeWaitsForSamplerPass() throws InterruptedException {
+        CountingEncoder encoder = new CountingEncoder(6, 7);
+        awaitAtLeast(updates::get, 100);
+        encoder.close();
+
+        Thread.sleep(50);
+        assertEquals(0, updatesAfterClose.get());
+    }
+
+    /**
+     * Steps two simulated sensors through one full forward quadrature cycle.
+     * 
+     * @param sensor1
+     *        The simulated Hall Sensor 1
+     * @param sensor2
+     *        The simulated Hall Sensor 2
+     * @param afterEdge
+     *        Run after every edge
+     */
+    private static void stepForward(DIOSim sensor1, DIOSim sensor2, Runnable afterEdge) {
+        sensor1.setValue(true);
+        afterEdge.run();
+        sensor2.setValue(true);
+        afterEdge.run();
+        sensor1.setValue(false);
+        afterEdge.run();
+        sensor2.setValue(false);
+        afterEdge.run();
+    }
+
+    /**
+     * Waits until a value is the expected value, failing after the timeout.
+     * 
+     * @param value
+     *        The value to watch
+     * @param expected
+     *        The value to wait for
+     */
+    private static void await(IntSupplier value, int expected) {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (value.getAsInt() != expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + expected + ", got " + value.getAsInt());
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Waits until a value is at least the expected value, failing after the timeout.
+     * 
+     * @param value
+     *        The value to watch
+     * @param expected
+     *        The value to wait for
+     */
+    private static void awaitAtLeast(IntSupplier value, int expected) {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (value.getAsInt() < expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + expected + ", got " + value.getAsInt());
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Gives the interrupt threads time to handle every edge so far. */
+    private static void awaitQuiet() {
+        try {
+            Thread.sleep(50);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Waits a few microseconds, so two edges get different timestamps but are still close together. */
+    private static void pause() {
+        long end = System.nanoTime() + 20_000;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * A sampled encoder that throws every time the sampler updates it.
+     * 
+     * @author ThunderChickens 217
+     */
+    private static class FailingEncoder extends JohnsonPLGEncoder {
+        FailingEncoder(int hallChannel1, int hallChannel2) {
+            super(hallChannel1, hallChannel2, UpdateMode.Sampled);
+        }
+
+        @Override
+        void update() {
+            throw new IllegalStateException("simulated encoder failure");
+        }
+    }
+
+    /**
+     * A sampled encoder that counts its updates, and the updates that happen after it is closed.
+     * 
+     * @author ThunderChickens 217
+     */
+    private static class CountingEncoder extends JohnsonPLGEncoder {
+        CountingEncoder(int hallChannel1, int hallChannel2) {
+            super(hallChannel1, hallChannel2, UpdateMode.Sampled);
+        }
+
+        @Override
+        void update() {
+            if (isCountingClosed) {
+                updatesAfterClose.incrementAndGet();
+            }
+            super.update();
+            updates.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            isCountingClosed = true;
+        }
+    }
+}
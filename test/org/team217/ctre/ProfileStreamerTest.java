@@ -0,0 +1,222 @@
+package org.team217.ctre;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.ctre.phoenix.motion.TrajectoryPoint;
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import org.team217.motion.GeometricProfiler;
+
+/**
+ * Tests the {@code ProfileStreamer} against a stand-in for a Talon's motion profile buffers.
+ * Simulated time is paused, so the streamer's notifier never runs and each test drives the cycles itself.
+ * 
+ * @author ThunderChickens 217
+ */
+public class ProfileStreamerTest {
+    private static final int POINT_PERIOD_MS = 10;
+
+    @BeforeClass
+    public static void initialize() {
+        assertTrue(HAL.initialize(500, 0));
+        SimHooks.pauseTiming();
+    }
+
+    @AfterClass
+    public static void resume() {
+        SimHooks.resumeTiming();
+    }
+
+    @Test
+    public void streamsEveryPointThenHolds() {
+        FakeTalon talon = new FakeTalon();
+        try (ProfileStreamer streamer = new ProfileStreamer(talon, newProfiler(), 100, POINT_PERIOD_MS)) {
+            streamer.start();
+            assertEquals(POINT_PERIOD_MS / 2, talon.framePeriod);
+            // the first cycle fills the buffers, so the Talon is enabled right away
+            assertEquals(SetValueMotionProfile.Enable.value, talon.output);
+
+            int cycles = 0;
+            while (!streamer.isFinished()) {
+                assertTrue("streamer never finished", ++cycles < 10 * streamer.getPointCount());
+                talon.execute(1);
+                streamer.cycle();
+            }
+
+            assertEquals(SetValueMotionProfile.Hold.value, talon.output);
+            assertEquals(streamer.getPointCount(), talon.executed.size());
+            assertEquals(200, talon.executed.get(talon.executed.size() - 1), 1e-9);
+            assertFalse(streamer.hasUnderrun());
+
+            // once holding, the background cycle is stopped and the control frame is slowed back down
+            assertTrue(talon.framePeriod > POINT_PERIOD_MS);
+            int calls = talon.statusReads;
+            streamer.cycle();
+            assertEquals(calls, talon.statusReads);
+
+            streamer.stop();
+            assertEquals(SetValueMotionProfile.Disable.value, talon.output);
+        }
+    }
+
+    @Test
+    public void waitsForMinBufferedPoints() {
+        FakeTalon talon = new FakeTalon();
+        talon.bottomCapacity = 3;
+        try (ProfileStreamer streamer = new ProfileStreamer(talon, newProfiler(), 100, POINT_PERIOD_MS)) {
+            assertTrue(streamer.setMinBufferedPoints(4));
+            streamer.start();
+            assertEquals(SetValueMotionProfile.Disable.value, talon.output);
+
+            talon.bottomCapacity = 4;
+            streamer.cycle();
+            assertEquals(SetValueMotionProfile.Enable.value, talon.output);
+        }
+    }
+
+    @Test
+    public void reportsAndClearsUnderrun() {
+        FakeTalon talon = new FakeTalon();
+        try (ProfileStreamer streamer = new ProfileStreamer(talon, newProfiler(), 100, POINT_PERIOD_MS)) {
+            streamer.start();
+            talon.isProcessing = false;
+
+            // the Talon runs through its buffer while no new points arrive
+            talon.execute(talon.bottom.size() + 1);
+            assertTrue(talon.isUnderrun);
+            streamer.cycle();
+            assertTrue(streamer.hasUnderrun());
+            assertFalse(talon.isUnderrun);
+            assertFalse(streamer.isFinished());
+
+            // streaming picks back up and still finishes the profile
+            talon.isProcessing = true;
+            int cycles = 0;
+            while (!streamer.isFinished()) {
+                assertTrue("streamer never finished", ++cycles < 10 * streamer.getPointCount());
+                streamer.cycle();
+                talon.execute(1);
+            }
+            assertEquals(SetValueMotionProfile.Hold.value, talon.output);
+        }
+    }
+
+    /** Returns a profile from 0 to 2 units. */
+    private static GeometricProfiler newProfiler() {
+        return new GeometricProfiler(new GeometricProfiler.Constraints(3, 6), new GeometricProfiler.State(0, 2));
+    }
+
+    /**
+     * A stand-in for a Talon's top and bottom motion profile buffers and executor.
+     * 
+     * @author ThunderChickens 217
+     */
+    private static class FakeTalon implements MotionProfileBuffer {
+        final ArrayDeque<TrajectoryPoint> top = new ArrayDeque<>(), bottom = new ArrayDeque<>();
+        final List<Double> executed = new ArrayList<>();
+        int topCapacity = 16, bottomCapacity = 128;
+        boolean isProcessing = true, isUnderrun = false;
+        TrajectoryPoint active;
+        int output = SetValueMotionProfile.Disable.value;
+        int framePeriod = 0, statusReads = 0;
+
+        /**
+         * Runs the executor for a number of points, if it is enabled.
+         * 
+         * @param points
+         *        The number of points
+         */
+        void execute(int points) {
+            if (output != SetValueMotionProfile.Enable.value) {
+                return;
+            }
+            for (int i = 0; i < points; i++) {
+                if (active != null && active.isLastPoint) {
+                    return;
+                }
+                if (bottom.isEmpty()) {
+                    isUnderrun = true;
+                    return;
+                }
+                active = bottom.poll();
+                executed.add(active.position);
+            }
+        }
+
+        @Override
+        public ErrorCode pushMotionProfileTrajectory(TrajectoryPoint point) {
+            TrajectoryPoint copy = new TrajectoryPoint();
+            copy.position = point.position;
+            copy.velocity = point.velocity;
+            copy.timeDur = point.timeDur;
+            copy.isLastPoint = point.isLastPoint;
+            top.add(copy);
+            return ErrorCode.OK;
+        }
+
+        @Override
+        public boolean isMotionProfileTopLevelBufferFull() {
+            return top.size() >= topCapacity;
+        }
+
+        @Override
+        public void processMotionProfileBuffer() {
+            while (isProcessing && !top.isEmpty() && bottom.size() < bottomCapacity) {
+                bottom.add(top.poll());
+            }
+        }
+
+        @Override
+        public ErrorCode getMotionProfileStatus(MotionProfileStatus status) {
+            statusReads++;
+            status.topBufferCnt = top.size();
+            status.btmBufferCnt = bottom.size();
+            status.hasUnderrun = isUnderrun;
+            status.activePointValid = active != null;
+            status.isLast = active != null && active.isLastPoint;
+            return ErrorCode.OK;
+        }
+
+        @Override
+        public ErrorCode clearMotionProfileHasUnderrun(int timeoutMs) {
+            isUnderrun = false;
+            return ErrorCode.OK;
+        }
+
+        @Override
+        public ErrorCode clearMotionProfileTrajectories() {
+            top.clear();
+            bottom.clear();
+            active = null;
+            return ErrorCode.OK;
+        }
+
+        @Override
+        public ErrorCode configMotionProfileTrajectoryPeriod(int baseTrajDurationMs, int timeoutMs) {
+            return ErrorCode.OK;
+        }
+
+        @Override
+        public ErrorCode changeMotionControlFramePeriod(int periodMs) {
+            framePeriod = periodMs;
+            return ErrorCode.OK;
+        }
+
+        @Override
+        public void set(ControlMode mode, double value) {
+            if (mode == ControlMode.MotionProfile) {
+                output = (int)value;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.team217.motion;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests that the {@code FeedforwardCharacterizer} recovers the constants of a simulated mechanism.
+ * 
+ * @author ThunderChickens 217
+ */
+public class FeedforwardCharacterizerTest {
+    private static final double KS = 0.4, KV = 2.1, KA = 0.3, KG = 0.8, DT = 0.005;
+
+    /**
+     * Feeds samples of a simulated elevator moving back and forth, with the exact voltage it needs.
+     * 
+     * @param characterizer
+     *        The characterizer to feed
+     * @param start
+     *        The time of the first sample, in seconds
+     * @param duration
+     *        The time to feed samples for, in seconds
+     * @param voltageError
+     *        The error added to each voltage, in volts
+     */
+    private static void drive(FeedforwardCharacterizer characterizer, double start, double duration, double voltageError) {
+        for (double t = start; t < start + duration; t += DT) {
+            double velocity = 0.5 + 1.5 * Math.sin(3 * t) + Math.sin(7.1 * t);
+            double acceleration = 4.5 * Math.cos(3 * t) + 7.1 * Math.cos(7.1 * t);
+            characterizer.addSample(voltage(velocity, acceleration) + voltageError, velocity, acceleration);
+        }
+    }
+
+    /**
+     * Returns the voltage the simulated elevator needs.
+     * 
+     * @param velocity
+     *        The velocity, in units/second
+     * @param acceleration
+     *        The acceleration, in units/second^2
+     */
+    private static double voltage(double velocity, double acceleration) {
+        return KS * Math.signum(velocity) + KV * velocity + KA * acceleration + KG;
+    }
+
+    /**
+     * Asserts that a characterizer's estimate matches the simulated elevator.
+     * 
+     * @param characterizer
+     *        The characterizer to check
+     * @param delta
+     *        The largest allowed difference in each constant
+     */
+    private static void assertConstants(FeedforwardCharacterizer characterizer, double delta) {
+        assertEquals(KS, characterizer.getKs(), delta);
+        assertEquals(KV, characterizer.getKv(), delta);
+        assertEquals(KA, characterizer.getKa(), delta);
+        assertEquals(KG, characterizer.getKg(), delta);
+    }
+
+    @Test
+    public void recoversConstants() {
+        FeedforwardCharacterizer characterizer = new FeedforwardCharacterizer(FeedforwardCharacterizer.Gravity.ELEVATOR);
+        drive(characterizer, 0, 5, 0);
+        assertConstants(characterizer, 1e-3);
+        assertEquals(0, characterizer.getError(), 1e-3);
+        assertEquals(voltage(1.2, -3), characterizer.calculate(1.2, -3), 1e-3);
+    }
+
+    @Test
+    public void recoversConstantsWhileForgetting() {
+        FeedforwardCharacterizer characterizer = new FeedforwardCharacterizer(FeedforwardCharacterizer.Gravity.ELEVATOR, 0.99);
+        drive(characterizer, 0, 5, 0);
+        assertConstants(characterizer, 1e-3);
+    }
+
+    @Test
+    public void recoversArmConstants() {
+        FeedforwardCharacterizer characterizer = new FeedforwardCharacterizer(FeedforwardCharacterizer.Gravity.ARM);
+        for (double t = 0; t < 5; t += DT) {
+            double velocity = 0.5 + 1.5 * Math.sin(3 * t) + Math.sin(7.1 * t);
+            double acceleration = 4.5 * Math.cos(3 * t) + 7.1 * Math.cos(7.1 * t);
+            double angle = Math.sin(0.9 * t);
+            double voltage = KS * Math.signum(velocity) + KV * velocity + KA * acceleration + KG * Math.cos(angle);
+            characterizer.addSample(voltage, velocity, acceleration, angle);
+        }
+        assertConstants(characterizer, 1e-3);
+    }
+
+    @Test
+    public void idleDoesNotWindUpWhileForgetting() {
+        FeedforwardCharacterizer characterizer = new FeedforwardCharacterizer(FeedforwardCharacterizer.Gravity.ELEVATOR, 0.99);
+        drive(characterizer, 0, 5, 0);
+
+        // ten seconds holding still only says how much voltage holds the elevator up
+        for (int i = 0; i < 2000; i++) {
+            characterizer.addSample(KG, 0, 0);
+        }
+        assertConstants(characterizer, 1e-3);
+
+        // a few slightly wrong samples after the pause must not throw the estimate away
+        drive(characterizer, 5, 0.05, 0.2);
+        assertConstants(characterizer, 0.1);
+    }
+}
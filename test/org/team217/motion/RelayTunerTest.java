@@ -0,0 +1,141 @@
+package org.team217.motion;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.team217.SteppedClock;
+
+/**
+ * Tests the {@code RelayTuner} measurements on synthetic oscillations and a simulated plant, on a stepped clock.
+ * 
+ * @author ThunderChickens 217
+ */
+public class RelayTunerTest {
+    private static final double DT = 0.001;
+
+    private final SteppedClock clock = new SteppedClock();
+
+    @Test
+    public void flipsPastHysteresis() {
+        RelayTuner tuner = new RelayTuner(10, 0.4, 0.5, 3, clock);
+        assertTrue(tuner.setOffset(0.1));
+
+        assertEquals(0.5, tuner.getOutput(9), 1e-12);
+        // past the target, but within the hysteresis
+        assertEquals(0.5, tuner.getOutput(10.4), 1e-12);
+        assertEquals(-0.3, tuner.getOutput(10.6), 1e-12);
+        assertEquals(-0.3, tuner.getOutput(9.6), 1e-12);
+        assertEquals(0.5, tuner.getOutput(9.4), 1e-12);
+    }
+
+    @Test
+    public void measuresSyntheticOscillation() {
+        double amplitude = 2, period = 0.5, relay = 0.3, hysteresis = 0.1;
+        RelayTuner tuner = new RelayTuner(5, relay, hysteresis, 3, clock);
+
+        // the position follows a sine whatever the relay does, so the oscillation is known exactly
+        int steps = 0;
+        while (!tuner.isFinished()) {
+            assertTrue("the tuner never finished", ++steps < 10 / DT);
+            double output = tuner.getOutput(5 + amplitude * Math.sin(2 * Math.PI * clock.getTime() / period));
+            assertEquals(relay, Math.abs(output), 1e-12);
+            clock.step(DT);
+        }
+
+        assertTrue(tuner.hasResult());
+        assertEquals(period, tuner.getUltimatePeriod(), 2 * DT);
+        double expectedGain = 4 * relay / (Math.PI * Math.sqrt(amplitude * amplitude - hysteresis * hysteresis));
+        assertEquals(expectedGain, tuner.getUltimateGain(), expectedGain * 1e-4);
+        // two settling cycles, three measured cycles, and the first rise
+        assertEquals(2.75, clock.getTime(), period / 2);
+        assertEquals(0, tuner.getOutput(5), 0);
+    }
+
+    @Test
+    public void tunesThirdOrderLag() {
+        // G(s) = 2 / (s + 1)^3 has a phase of -180 degrees at sqrt(3) rad/s, where its gain is 2 / 8
+        double plantGain = 2, ultimateGain = 8 / plantGain, ultimatePeriod = 2 * Math.PI / Math.sqrt(3);
+        // the plant starts at rest away from the target, so the first swing is already near full size;
+        // the offset holds the plant at the target, so the relay swings it evenly to both sides
+        RelayTuner tuner = new RelayTuner(1, 1, 0, 4, clock);
+        assertTrue(tuner.setOffset(1 / plantGain));
+
+        double x1 = 0, x2 = 0, x3 = 0;
+        int steps = 0;
+        while (!tuner.isFinished()) {
+            assertTrue("the tuner never finished", ++steps < 100 / DT);
+            double output = tuner.getOutput(x3);
+            x1 += (plantGain * output - x1) * DT;
+            x2 += (x1 - x2) * DT;
+            x3 += (x2 - x3) * DT;
+            clock.step(DT);
+        }
+
+        // the relay method ignores the harmonics of the square wave, so it is only close to the exact values
+        assertTrue(tuner.hasResult());
+        assertEquals(ultimatePeriod, tuner.getUltimatePeriod(), ultimatePeriod * 0.03);
+        assertEquals(ultimateGain, tuner.getUltimateGain(), ultimateGain * 0.05);
+
+        PID pid = tuner.getPID(RelayTuner.Rule.ZIEGLER_NICHOLS, 0.01);
+        double kU = tuner.getUltimateGain(), pU = tuner.getUltimatePeriod();
+        assertEquals(0.6 * kU, pid.getP(), 1e-9);
+        assertEquals(0.6 * kU / (0.5 * pU), pid.getI(), 1e-9);
+        assertEquals(0.6 * kU * 0.125 * pU, pid.getD(), 1e-9);
+        assertEquals(0.01, pid.getPeriod(), 0);
+    }
+
+    @Test
+    public void givesUpAfterTimeout() {
+        RelayTuner tuner = new RelayTuner(1, 0.5, 0, 3, clock);
+        assertFalse(tuner.setTimeout(-1));
+        assertTrue(tuner.setTimeout(2));
+
+        // a mechanism that never moves never oscillates
+        while (clock.getTime() < 1.99) {
+            assertEquals(0.5, tuner.getOutput(0), 0);
+            clock.step(0.02);
+        }
+        clock.step(0.02);
+        assertEquals(0, tuner.getOutput(0), 0);
+        assertTrue(tuner.isFinished());
+        assertFalse(tuner.hasResult());
+        assertNull(tuner.getPID(RelayTuner.Rule.NO_OVERSHOOT));
+    }
+
+    @Test
+    public void runsAgainAfterReset() {
+        RelayTuner tuner = new RelayTuner(0, 1, 0, 1, clock);
+        for (int i = 0; !tuner.isFinished(); i++) {
+            assertTrue("the tuner never finished", i < 10 / DT);
+            tuner.getOutput(Math.sin(2 * Math.PI * clock.getTime()));
+            clock.step(DT);
+        }
+        assertEquals(1, tuner.getUltimatePeriod(), 2 * DT);
+
+        tuner.reset();
+        assertFalse(tuner.isFinished());
+        assertTrue(Double.isNaN(tuner.getUltimateGain()));
+        for (int i = 0; !tuner.isFinished(); i++) {
+            assertTrue("the tuner never finished", i < 10 / DT);
+            tuner.getOutput(3 * Math.sin(2 * Math.PI * clock.getTime() / 0.25));
+            clock.step(DT);
+        }
+        assertEquals(0.25, tuner.getUltimatePeriod(), 2 * DT);
+        assertEquals(4 / (Math.PI * 3), tuner.getUltimateGain(), 1e-4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroAmplitude() {
+        new RelayTuner(0, 0, 0, 3, clock);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeHysteresis() {
+        new RelayTuner(0, 1, -0.1, 3, clock);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroCycles() {
+        new RelayTuner(0, 1, 0, 0, clock);
+    }
+}
@@ -0,0 +1,102 @@
+package org.team217.sim;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@code DCMotorModel} against the motor's datasheet values.
+ * 
+ * @author ThunderChickens 217
+ */
+public class DCMotorModelTest {
+    /** NEO datasheet values at 12 volts. */
+    private static final double STALL_CURRENT = 105, FREE_CURRENT = 1.8, FREE_SPEED = 5676;
+
+    /**
+     * Returns the speed a model settles at with 12 volts, in rotations/second. The model has no friction, so this
+     * is a little faster than the datasheet free speed, which is measured while drawing the free current.
+     * 
+     * @param gearing
+     *        The gear reduction from the motor to the mechanism
+     */
+    private static double steadySpeed(double gearing) {
+        double resistance = 12 / STALL_CURRENT;
+        return FREE_SPEED / 60 * 12 / (12 - resistance * FREE_CURRENT) / gearing;
+    }
+
+    @Test
+    public void reachesFreeSpeed() {
+        DCMotorModel model = DCMotorModel.neo(1, 1, 0.001);
+        run(model, 12, 5, 0.02);
+        assertEquals(steadySpeed(1), model.getVelocity(), 1e-6);
+        assertEquals(FREE_SPEED / 60, model.getVelocity(), FREE_SPEED / 60 * 0.02);
+
+        // at free speed the motors only draw the current the missing friction would have
+        assertEquals(0, model.getCurrent(), 1e-3);
+
+        run(model, -12, 5, 0.02);
+        assertEquals(-steadySpeed(1), model.getVelocity(), 1e-6);
+    }
+
+    @Test
+    public void gearingAndVoltageScaleSpeed() {
+        DCMotorModel geared = DCMotorModel.neo(2, 10, 0.01);
+        run(geared, 6, 10, 0.02);
+        assertEquals(steadySpeed(10) / 2, geared.getVelocity(), 1e-6);
+
+        // more motors accelerate faster but settle at the same speed
+        DCMotorModel one = DCMotorModel.neo(1, 10, 0.01), two = DCMotorModel.neo(2, 10, 0.01);
+        run(one, 12, 0.05, 0.01);
+        run(two, 12, 0.05, 0.01);
+        assertTrue(two.getVelocity() > one.getVelocity());
+    }
+
+    @Test
+    public void drawsStallCurrentFromRest() {
+        DCMotorModel model = DCMotorModel.neo(2, 1, 0.01);
+        model.update(12, 0);
+        assertEquals(2 * STALL_CURRENT, model.getCurrent(), 1e-9);
+    }
+
+    @Test
+    public void largeStepsMatchSmallSteps() {
+        DCMotorModel coarse = DCMotorModel.cim(1, 5, 0.05), fine = DCMotorModel.cim(1, 5, 0.05);
+        run(coarse, 9, 1, 0.1);
+        run(fine, 9, 1, 0.0001);
+        assertEquals(fine.getVelocity(), coarse.getVelocity(), 1e-6);
+        assertEquals(fine.getPosition(), coarse.getPosition(), 1e-6);
+    }
+
+    @Test
+    public void resetStopsAtPosition() {
+        DCMotorModel model = DCMotorModel.falcon500(1, 1, 0.001);
+        run(model, 12, 1, 0.02);
+        model.reset(3.5);
+        assertEquals(3.5, model.getPosition(), 1e-12);
+        assertEquals(0, model.getVelocity(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveInertia() {
+        DCMotorModel.neo(1, 1, 0);
+    }
+
+    /**
+     * Runs a model at a constant voltage.
+     * 
+     * @param model
+     *        The model
+     * @param voltage
+     *        The voltage, in volts
+     * @param time
+     *        The time to run for, in seconds
+     * @param dt
+     *        The step length, in seconds
+     */
+    private static void run(DCMotorModel model, double voltage, double time, double dt) {
+        for (int i = 0; i < Math.round(time / dt); i++) {
+            model.update(voltage, dt);
+        }
+    }
+}
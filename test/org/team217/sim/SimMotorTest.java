@@ -0,0 +1,95 @@
+package org.team217.sim;
+
+import static org.junit.Assert.*;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.revrobotics.ControlType;
+import org.junit.Test;
+import org.team217.motion.PID;
+
+/**
+ * Tests the {@code SimMotor} and {@code SimGyro} on their own, without the HAL simulation.
+ * 
+ * @author ThunderChickens 217
+ */
+public class SimMotorTest {
+    @Test
+    public void reportsNativeUnits() {
+        DCMotorModel model = DCMotorModel.neo(1, 1, 0.001);
+        SimMotor talon = SimMotor.talonSRX(model, 4096);
+        model.reset(2);
+        assertEquals(8192, talon.readPosition(), 1e-9);
+
+        SimMotor spark = SimMotor.sparkMax(model, 10);
+        assertEquals(20, spark.readPosition(), 1e-9);
+
+        talon.set(1);
+        talon.step(5);
+        assertEquals(model.getVelocity() * 409.6, talon.readVelocity(), 1e-9);
+        assertEquals(model.getVelocity() * 600, spark.readVelocity(), 1e-9);
+    }
+
+    @Test
+    public void sensorFollowsInversion() {
+        DCMotorModel model = DCMotorModel.neo(1, 1, 0.001);
+        SimMotor motor = SimMotor.talonSRX(model, 4096);
+        motor.setInverted(true);
+        motor.set(0.5);
+        assertEquals(-6, motor.getAppliedVoltage(), 1e-12);
+
+        motor.step(0.1);
+        assertTrue(model.getVelocity() < 0);
+        assertTrue(motor.readVelocity() > 0);
+
+        motor.setPosition(1000);
+        assertEquals(1000, motor.readPosition(), 1e-9);
+    }
+
+    @Test
+    public void appliesCommands() {
+        SimMotor motor = SimMotor.sparkMax(DCMotorModel.neo(1, 1, 0.001), 1);
+        motor.setBusVoltage(10);
+        motor.applyCommand(ControlType.kVoltage, 5);
+        assertEquals(0.5, motor.get(), 1e-12);
+        motor.applyCommand(ControlMode.PercentOutput, 2);
+        assertEquals(1, motor.get(), 0);
+        assertFalse(motor.isSupported(ControlType.kVelocity));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsClosedLoopWithoutPID() {
+        SimMotor motor = SimMotor.talonSRX(DCMotorModel.neo(1, 1, 0.001), 4096);
+        motor.applyCommand(ControlMode.Position, 100);
+    }
+
+    @Test
+    public void closedLoopReachesPosition() {
+        DCMotorModel model = DCMotorModel.neo(1, 50, 0.01);
+        SimMotor motor = SimMotor.talonSRX(model, 4096);
+        motor.setClosedLoop(new PID(0.002, 0, 0.0001, 0.005));
+        assertTrue(motor.isSupported(ControlMode.Position));
+
+        motor.applyCommand(ControlMode.Position, 4096);
+        for (int i = 0; i < 1000; i++) {
+            motor.step(0.005);
+        }
+        assertEquals(4096, motor.readPosition(), 50);
+    }
+
+    @Test
+    public void gyroIntegratesRate() {
+        SimGyro gyro = new SimGyro();
+        gyro.setRate(90);
+        for (int i = 0; i < 50; i++) {
+            gyro.step(0.02);
+        }
+        assertEquals(90, gyro.getAngle(), 1e-9);
+
+        double[] rate = {-45};
+        SimGyro modelled = new SimGyro(() -> rate[0]);
+        modelled.setAngle(10);
+        modelled.step(2);
+        assertEquals(-80, modelled.getAngle(), 1e-9);
+        assertEquals(-45, modelled.getRate(), 0);
+    }
+}
@@ -0,0 +1,59 @@
+package org.team217.sim;
+
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import edu.wpi.first.hal.HAL;
+import org.team217.ctre.JohnsonPLGEncoder;
+
+/**
+ * Tests that a {@code JohnsonPLGEncoder} driven by a {@code SimPLGEncoder} counts the simulated position exactly.
+ * 
+ * @author ThunderChickens 217
+ */
+public class SimPLGEncoderTest {
+    private static final double COUNTS_PER_ROTATION = 7;
+
+    @BeforeClass
+    public static void initialize() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    @Test
+    public void sampledEncoderFollowsPosition() throws InterruptedException {
+        roundTrip(12, 13, JohnsonPLGEncoder.UpdateMode.Sampled);
+    }
+
+    @Test
+    public void interruptEncoderFollowsPosition() throws InterruptedException {
+        roundTrip(14, 15, JohnsonPLGEncoder.UpdateMode.Interrupt);
+    }
+
+    /**
+     * Moves a simulated shaft back and forth in large jumps and checks the encoder after each one.
+     * 
+     * @param hallChannel1
+     *        The DIO channel for Hall Sensor 1
+     * @param hallChannel2
+     *        The DIO channel for Hall Sensor 2
+     * @param mode
+     *        How the encoder watches the sensors
+     */
+    private static void roundTrip(int hallChannel1, int hallChannel2, JohnsonPLGEncoder.UpdateMode mode) throws InterruptedException {
+        double[] position = {1.3};
+        try (JohnsonPLGEncoder encoder = new JohnsonPLGEncoder(hallChannel1, hallChannel2, mode)) {
+            SimPLGEncoder sim = new SimPLGEncoder(encoder, hallChannel1, hallChannel2, () -> position[0], COUNTS_PER_ROTATION);
+            assertEquals(9, encoder.get());
+
+            for (double next : new double[] {25.6, 3.05, -4.9, 0, 100}) {
+                position[0] = next;
+                sim.step(0.02);
+                // let any interrupts still queued from the edges run; they must not count the edges again
+                Thread.sleep(20);
+                assertEquals((int)Math.floor(next * COUNTS_PER_ROTATION), encoder.get());
+            }
+            assertEquals(0, encoder.getMissedEdges());
+        }
+    }
+}